@@ -0,0 +1,139 @@
+package dbms.bench;
+
+import dbms.Relation;
+import dbms.RowStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic generator of synthetic relations for the benchmarks.
+ * Row i of a relation is a function of the seed and of i only: the first field is the key "k" + i,
+ * the others hold one of cardinality values "v0" ... "v(cardinality-1)".
+ * Relations covering overlapping ranges of rows therefore share the rows of the overlap,
+ * and two runs with the same parameters always produce the same data.
+ */
+public class DataGenerator {
+    private final long seed;
+
+    public DataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Function to build the names of the fields of a generated relation
+     * @param key the name of the key field
+     * @param prefix the prefix of the other fields, followed by their number
+     * @param fields the total number of fields, key included
+     * @return the field names
+     */
+    public static String[] fields(String key, String prefix, int fields) {
+        String[] names = new String[fields];
+        names[0] = key;
+        for(int i = 1; i < fields; i++) names[i] = prefix + i;
+        return names;
+    }
+
+    /**
+     * Function to generate a row
+     * @param position the number of the row
+     * @param fields the number of fields
+     * @param cardinality the number of distinct values of the non-key fields
+     * @return the row
+     */
+    public String[] row(long position, int fields, int cardinality) {
+        String[] row = new String[fields];
+        row[0] = "k" + position;
+        for(int f = 1; f < fields; f++) {
+            row[f] = "v" + Math.floorMod(mix(seed + position * 0x9E3779B97F4A7C15L + f), cardinality);
+        }
+        return row;
+    }
+
+    /**
+     * Function to generate the rows in [from, to)
+     * @param from the first row
+     * @param to the row after the last one
+     * @param fields the number of fields
+     * @param cardinality the number of distinct values of the non-key fields
+     * @return the rows
+     */
+    public List<String[]> rows(long from, long to, int fields, int cardinality) {
+        List<String[]> rows = new ArrayList<>((int) (to - from));
+        for(long i = from; i < to; i++) rows.add(row(i, fields, cardinality));
+        return rows;
+    }
+
+    /**
+     * Function to generate an in-memory relation with the rows in [from, to)
+     * @param name the name of the relation
+     * @param fieldNames the names of the fields
+     * @param from the first row
+     * @param to the row after the last one
+     * @param cardinality the number of distinct values of the non-key fields
+     * @param layout the storage layout of the relation
+     * @return the relation
+     * @throws Exception if the rows cannot be inserted
+     */
+    public Relation relation(String name, String[] fieldNames, long from, long to, int cardinality, RowStore.Layout layout) throws Exception {
+        Relation relation = new Relation(name, fieldNames, layout);
+        relation.insert(rows(from, to, fieldNames.length, cardinality), false);
+        relation.commit();
+        return relation;
+    }
+
+    /**
+     * Function to generate a relation and save it in the data folder, replacing its files
+     * @param name the name of the relation
+     * @param fieldNames the names of the fields
+     * @param rows the number of rows
+     * @param cardinality the number of distinct values of the non-key fields
+     * @param format the storage format of the file
+     * @return the saved relation
+     * @throws Exception if the rows cannot be inserted
+     */
+    public Relation save(String name, String[] fieldNames, long rows, int cardinality, Relation.Format format) throws Exception {
+        delete(name);
+        new File("data").mkdirs();
+
+        Relation relation = relation(name, fieldNames, 0, rows, cardinality, RowStore.Layout.ROWS);
+        relation.setFormat(format);
+        relation.save();
+        return relation;
+    }
+
+    /**
+     * Function to remove the files of a generated relation from the data folder
+     * @param name the name of the relation
+     */
+    public static void delete(String name) {
+        for(String extension : new String[]{".csv", ".bin", ".log", ".idx"}) {
+            new File("data", name + extension).delete();
+        }
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Function to write generated relations from the command line, for the benchmarks run by hand:
+     * DataGenerator name rows fields cardinality [seed] [CSV|BINARY]
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 4) {
+            System.err.println("usage: DataGenerator name rows fields cardinality [seed] [CSV|BINARY]");
+            System.exit(1);
+        }
+
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        Relation.Format format = args.length > 5 ? Relation.Format.valueOf(args[5].toUpperCase()) : Relation.Format.CSV;
+        Relation relation = new DataGenerator(seed).save(args[0], fields("id", "f", Integer.parseInt(args[2])),
+                Long.parseLong(args[1]), Integer.parseInt(args[3]), format);
+        System.out.println("data/" + args[0] + format.getExtension() + ": " + relation.size() + " rows");
+    }
+}
@@ -0,0 +1,167 @@
+package dbms.bench;
+
+import dbms.Relation;
+import dbms.RowStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the operators of Relation on generated relations:
+ * a(id, a1, a2, a3) with rows rows and dim(rid, a1, b2) with cardinality rows, so that joining them
+ * on a1 or on a2 = b2 gives about rows rows; b holds the rows of a from rows/2 to 3*rows/2,
+ * so that union and difference find half of the rows in common.
+ * The files of the load and save benchmarks are written in the data folder of the working directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Data {
+        @Param({"100000"})
+        public int rows;
+
+        @Param({"1000"})
+        public int cardinality;
+
+        @Param({"ROWS", "COLUMNS"})
+        public RowStore.Layout layout;
+
+        @Param({"42"})
+        public long seed;
+
+        public Relation a;
+        public Relation b;
+        public Relation dim;
+        public List<String[]> newRows;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            DataGenerator generator = new DataGenerator(seed);
+            a = generator.relation("a", DataGenerator.fields("id", "a", 4), 0, rows, cardinality, layout);
+            b = generator.relation("b", DataGenerator.fields("id", "a", 4), rows / 2, rows + rows / 2, cardinality, layout);
+            dim = generator.relation("dim", new String[]{"rid", "a1", "b2"}, 0, cardinality, cardinality, layout);
+            newRows = generator.rows(rows, 2L * rows, 4, cardinality);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Files {
+        @Param({"100000"})
+        public int rows;
+
+        @Param({"1000"})
+        public int cardinality;
+
+        @Param({"CSV", "BINARY"})
+        public Relation.Format format;
+
+        public Relation relation;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            DataGenerator generator = new DataGenerator(42);
+            String[] fields = DataGenerator.fields("id", "a", 4);
+            generator.save("bench_load", fields, rows, cardinality, format);
+
+            relation = generator.relation("bench_save", fields, 0, rows, cardinality, RowStore.Layout.ROWS);
+            relation.setFormat(format);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            DataGenerator.delete("bench_load");
+            DataGenerator.delete("bench_save");
+        }
+    }
+
+    @Benchmark
+    public Relation load(Files files) {
+        return Relation.load("bench_load");
+    }
+
+    @Benchmark
+    public Relation loadPruned(Files files) {
+        return Relation.load("bench_load", Set.of("a1"));
+    }
+
+    @Benchmark
+    public Relation save(Files files) {
+        files.relation.save();
+        return files.relation;
+    }
+
+    @Benchmark
+    public Relation insert(Data data) throws Exception {
+        Relation relation = new Relation("insert", data.a.getFieldNames(), data.layout);
+        relation.insert(data.newRows, false);
+        relation.commit();
+        return relation;
+    }
+
+    @Benchmark
+    public Relation insertRows(Data data) throws Exception {
+        Relation relation = new Relation("insert", data.a.getFieldNames(), data.layout);
+        for(String[] row : data.newRows) relation.insert(row);
+        relation.commit();
+        return relation;
+    }
+
+    @Benchmark
+    public Relation selection(Data data) {
+        return data.a.selection("a1 = 'v7'");
+    }
+
+    @Benchmark
+    public Relation selectionNotEqual(Data data) {
+        return data.a.selection("a1 <> a2");
+    }
+
+    @Benchmark
+    public Relation projection(Data data) {
+        return data.a.projection(new String[]{"a1", "a2"});
+    }
+
+    @Benchmark
+    public Relation join(Data data) throws Exception {
+        return data.a.join(data.dim, "a2 = b2");
+    }
+
+    @Benchmark
+    public Relation naturalJoin(Data data) throws Exception {
+        return data.a.naturalJoin(data.dim);
+    }
+
+    @Benchmark
+    public Relation difference(Data data) {
+        return data.a.difference(data.b);
+    }
+
+    @Benchmark
+    public Relation union(Data data) throws Exception {
+        return data.a.union(data.b);
+    }
+
+    @Benchmark
+    public String toString(Data data) {
+        return data.a.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package dbms.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comparison of two runs of the benchmarks, saved as CSV by JMH (-rf csv -rff file.csv):
+ * ResultDiff old.csv new.csv [threshold %]
+ * Prints the change of every benchmark present in both runs and exits with status 1
+ * if any of them got slower by more than the threshold (10% by default).
+ */
+public class ResultDiff {
+
+    private record Result(String mode, double score, String unit) {}
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("usage: ResultDiff old.csv new.csv [threshold %]");
+            System.exit(2);
+        }
+
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Result> before = read(Path.of(args[0]));
+        Map<String, Result> after = read(Path.of(args[1]));
+
+        int regressions = 0;
+        for(Map.Entry<String, Result> entry : after.entrySet()) {
+            Result old = before.get(entry.getKey());
+            if(old == null) continue;
+            Result now = entry.getValue();
+
+            // positive change = slower, whatever the mode
+            double change = (now.score - old.score) / old.score * 100;
+            if(now.mode.equals("thrpt")) change = -change;
+
+            String mark = "";
+            if(change > threshold) {
+                mark = "  REGRESSION";
+                regressions++;
+            } else if(change < -threshold) {
+                mark = "  improvement";
+            }
+            System.out.printf("%-80s %12.3f -> %12.3f %-6s %+7.1f%%%s%n", entry.getKey(), old.score, now.score, now.unit, change, mark);
+        }
+
+        for(String key : before.keySet()) {
+            if(!after.containsKey(key)) System.out.println(key + ": missing in " + args[1]);
+        }
+
+        System.out.println(regressions + " regressions over " + threshold + "%");
+        if(regressions > 0) System.exit(1);
+    }
+
+    /**
+     * Function to read a CSV file written by JMH
+     * @param file the file
+     * @return the results by benchmark and parameters, in the order of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static Map<String, Result> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Map<String, Result> results = new LinkedHashMap<>();
+        if(lines.isEmpty()) return results;
+
+        List<String> header = split(lines.get(0));
+        for(String line : lines.subList(1, lines.size())) {
+            if(line.isBlank()) continue;
+            List<String> values = split(line);
+
+            // the benchmark with the values of its parameters
+            StringBuilder key = new StringBuilder(values.get(0).replace("dbms.bench.", ""));
+            for(int i = 7; i < header.size() && i < values.size(); i++) {
+                if(!values.get(i).isEmpty()) key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(values.get(i));
+            }
+
+            results.put(key.toString(), new Result(values.get(1), Double.parseDouble(values.get(4)), values.get(6)));
+        }
+
+        return results;
+    }
+
+    private static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for(int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(c == '"') {
+                quoted = !quoted;
+            } else if(c == ',' && !quoted) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+
+        return values;
+    }
+}
@@ -0,0 +1,98 @@
+package dbms.bench;
+
+import dbms.Catalog;
+import dbms.Relation;
+import dbms.commands.Command;
+import dbms.commands.Select;
+import dbms.commands.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmarks of SELECT statements, from the text of the statement to the written result,
+ * on the generated relations bench_a(id, a1, a2, a3) and bench_dim(rid, a1, b2) saved in the data folder
+ * of the working directory (see RelationBenchmark). The relations stay cached in the catalog,
+ * as they would in a running session.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelectBenchmark {
+    private static final String[] QUERIES = {
+            "SELECT * FROM bench_a WHERE a1 = 'v7'",
+            "SELECT id, a2 FROM bench_a WHERE a1 = 'v7' AND a2 <> 'v3'",
+            "SELECT * FROM bench_a JOIN bench_dim ON a2 = b2 WHERE a3 = 'v7'",
+            "SELECT id FROM bench_a LIMIT 10"
+    };
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int cardinality;
+
+    @Param({"0", "1", "2", "3"})
+    public int query;
+
+    private String statement;
+    private final Writer out = Writer.nullWriter();
+    private final Session session = new Session();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        DataGenerator generator = new DataGenerator(42);
+        generator.save("bench_a", DataGenerator.fields("id", "a", 4), rows, cardinality, Relation.Format.CSV);
+        generator.save("bench_dim", new String[]{"rid", "a1", "b2"}, cardinality, cardinality, Relation.Format.CSV);
+        Catalog.clear();
+        statement = QUERIES[query];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataGenerator.delete("bench_a");
+        DataGenerator.delete("bench_dim");
+    }
+
+    /**
+     * Parsing (through the statement cache, as the shell does), planning and execution
+     */
+    @Benchmark
+    public Writer select() throws Exception {
+        Command.parse(statement, session).run(out);
+        return out;
+    }
+
+    /**
+     * Parsing and planning without the statement cache, and execution
+     */
+    @Benchmark
+    public Writer selectUncached() throws Exception {
+        new Select(statement).run(out);
+        return out;
+    }
+
+    /**
+     * Parsing only, without the statement cache
+     */
+    @Benchmark
+    public Select parse() throws Exception {
+        return new Select(statement);
+    }
+}
@@ -1,18 +1,39 @@
+import dbms.Metrics;
+import dbms.Server;
 import dbms.commands.Command;
+import dbms.commands.Session;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        Metrics.register();
+
+        // java Main --server [port or socket path] serves local clients instead of the console
+        if(args.length >= 1 && args[0].equals("--server")) {
+            Server server = Server.open(args.length > 1 ? args[1] : "5432");
+            System.out.println("listening on " + server.getAddress());
+            server.serve();
+            return;
+        }
+
+        Session session = new Session();
         Scanner kbd = new Scanner(System.in);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
         while(true) {
-            System.out.print("Sql> ");
+            out.write("Sql> ");
+            out.flush();
             String command = kbd.nextLine();
             try {
-                System.out.println(Command.parse(command).execute());
+                Command.parse(command, session).run(out);
             } catch (Exception ex) {
-                System.out.println(ex.getMessage());
+                out.write(ex.getMessage() + "\n");
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package dbms;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregate function of a SELECT field list: COUNT(*), COUNT(field), SUM(field), MIN(field), MAX(field) or AVG(field).
+ * There are no null values, so COUNT(field) counts the rows as COUNT(*) does.
+ * SUM and AVG need a numeric field; MIN and MAX compare the values as the type of the field.
+ */
+public class Aggregate {
+    private static final Pattern PATTERN = Pattern.compile("(?i)^(count|sum|min|max|avg)\\((\\*|[^()*]+)\\)$");
+
+    public enum Function {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private final Function function;
+    private final String field; // null for COUNT(*)
+
+    private Aggregate(Function function, String field) {
+        this.function = function;
+        this.field = field;
+    }
+
+    /**
+     * Function to parse a field of a SELECT list
+     * @param text the field, without spaces
+     * @return the aggregate, or null if the field is not an aggregate
+     * @throws Exception if the aggregate is not valid
+     */
+    public static Aggregate parse(String text) throws Exception {
+        Matcher matcher = PATTERN.matcher(text.trim());
+        if(!matcher.matches()) {
+            if(text.contains("(")) throw new Exception("select: invalid aggregate " + text);
+            return null;
+        }
+
+        Function function = Function.valueOf(matcher.group(1).toUpperCase());
+        String field = matcher.group(2).trim();
+        if(field.equals("*")) {
+            if(function != Function.COUNT) throw new Exception("select: " + function + "(*) is not valid, only COUNT(*)");
+            return new Aggregate(function, null);
+        }
+        return new Aggregate(function, field);
+    }
+
+    /**
+     * @param text a field of a SELECT list or of ORDER BY
+     * @return the name of the aggregate if the text is one (the function in upper case), the text otherwise
+     */
+    public static String canonical(String text) {
+        try {
+            Aggregate aggregate = parse(text);
+            return aggregate == null ? text : aggregate.getName();
+        } catch (Exception ex) {
+            return text;
+        }
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * @return the aggregated field, or null for COUNT(*)
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return the name of the field of the result, as FUNCTION(field)
+     */
+    public String getName() {
+        return function + "(" + (field == null ? "*" : field) + ")";
+    }
+
+    /**
+     * Function to get the type of the result
+     * @param type the type of the aggregated field (ignored by COUNT)
+     * @return the type of the result
+     * @throws Exception if the function needs a numeric field and the field is not
+     */
+    public FieldType resultType(FieldType type) throws Exception {
+        return switch(function) {
+            case COUNT -> FieldType.LONG;
+            case MIN, MAX -> type;
+            case SUM, AVG -> {
+                if(!type.isNumeric()) throw new Exception("select: " + function + " needs a numeric field, " + field + " is " + type);
+                yield function == Function.AVG || type == FieldType.DOUBLE ? FieldType.DOUBLE : FieldType.LONG;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,220 @@
+package dbms;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Condition compiled into a kernel testing a batch of rows of a relation at a time (vectorized selection).
+ * The result of a batch is a selection bitmap with one bit for each row: a kernel clears the bits of the rows
+ * that do not satisfy its condition, so the kernels of a conjunction are applied one after the other on the same
+ * bitmap (AND), and the words already zero are not tested again.
+ * The kernels on the columns are tight loops over the primitive arrays of the store, without calls or branches
+ * for each row, that the JIT can unroll; the bits of a word are built with shifts and ORs.
+ */
+@FunctionalInterface
+public interface BatchFilter {
+    /**
+     * Rows tested together, the bitmap of a batch is BATCH / 64 words
+     */
+    int BATCH = 1024;
+
+    /**
+     * Function to test a batch of rows
+     * @param from the position of the first row of the batch
+     * @param count the number of rows of the batch, at most BATCH
+     * @param bitmap the selection of the batch: bit i of word i / 64 is the row from + i, only the rows
+     *               with their bit set are tested, the bits of the rows not satisfying the condition are cleared
+     */
+    void filter(int from, int count, long[] bitmap);
+
+    /**
+     * @return a kernel testing the rows one by one, for the conditions without a primitive representation
+     */
+    static BatchFilter of(IntPredicate test) {
+        return (from, count, bitmap) -> {
+            for(int w = 0; w < (count + 63) >>> 6; w++) {
+                long word = bitmap[w];
+                long bits = word;
+                while(bits != 0) {
+                    int b = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if(!test.test(from + (w << 6) + b)) word &= ~(1L << b);
+                }
+                bitmap[w] = word;
+            }
+        };
+    }
+
+    /**
+     * @return a kernel keeping the rows whose INT value is between low and high (outside for negate)
+     */
+    static BatchFilter ints(int[] values, long low, long high, boolean negate) {
+        long span = high - low;
+        return (from, count, bitmap) -> {
+            for(int w = 0; w < (count + 63) >>> 6; w++) {
+                if(bitmap[w] == 0) continue;
+
+                int base = from + (w << 6);
+                int n = Math.min(64, count - (w << 6));
+                long bits = 0;
+                for(int b = 0; b < n; b++) {
+                    // low <= v <= high as a single unsigned comparison
+                    bits |= (Long.compareUnsigned(values[base + b] - low, span) <= 0 ? 1L : 0L) << b;
+                }
+                bitmap[w] &= negate ? ~bits : bits;
+            }
+        };
+    }
+
+    /**
+     * @return a kernel keeping the rows whose LONG value is between low and high (outside for negate)
+     */
+    static BatchFilter longs(long[] values, long low, long high, boolean negate) {
+        long span = high - low;
+        return (from, count, bitmap) -> {
+            for(int w = 0; w < (count + 63) >>> 6; w++) {
+                if(bitmap[w] == 0) continue;
+
+                int base = from + (w << 6);
+                int n = Math.min(64, count - (w << 6));
+                long bits = 0;
+                for(int b = 0; b < n; b++) {
+                    bits |= (Long.compareUnsigned(values[base + b] - low, span) <= 0 ? 1L : 0L) << b;
+                }
+                bitmap[w] &= negate ? ~bits : bits;
+            }
+        };
+    }
+
+    /**
+     * @return a kernel keeping the rows whose DOUBLE value is between low and high (outside for negate)
+     */
+    static BatchFilter doubles(double[] values, double low, double high, boolean negate) {
+        return (from, count, bitmap) -> {
+            for(int w = 0; w < (count + 63) >>> 6; w++) {
+                if(bitmap[w] == 0) continue;
+
+                int base = from + (w << 6);
+                int n = Math.min(64, count - (w << 6));
+                long bits = 0;
+                for(int b = 0; b < n; b++) {
+                    double v = values[base + b];
+                    bits |= (v >= low & v <= high ? 1L : 0L) << b;
+                }
+                bitmap[w] &= negate ? ~bits : bits;
+            }
+        };
+    }
+
+    /**
+     * @return a kernel keeping the rows whose dictionary code is the given one (is not, when equal is false)
+     */
+    static BatchFilter codes(int[] codes, int code, boolean equal) {
+        return (from, count, bitmap) -> {
+            for(int w = 0; w < (count + 63) >>> 6; w++) {
+                if(bitmap[w] == 0) continue;
+
+                int base = from + (w << 6);
+                int n = Math.min(64, count - (w << 6));
+                long bits = 0;
+                for(int b = 0; b < n; b++) {
+                    bits |= (codes[base + b] == code ? 1L : 0L) << b;
+                }
+                bitmap[w] &= equal ? bits : ~bits;
+            }
+        };
+    }
+
+    /**
+     * @return a kernel keeping the rows whose dictionary code has a true result, computed once for each distinct value
+     */
+    static BatchFilter codeTable(int[] codes, boolean[] results) {
+        return (from, count, bitmap) -> {
+            for(int w = 0; w < (count + 63) >>> 6; w++) {
+                if(bitmap[w] == 0) continue;
+
+                int base = from + (w << 6);
+                int n = Math.min(64, count - (w << 6));
+                long bits = 0;
+                for(int b = 0; b < n; b++) {
+                    bits |= (results[codes[base + b]] ? 1L : 0L) << b;
+                }
+                bitmap[w] &= bits;
+            }
+        };
+    }
+
+    /**
+     * @param codes the codes of the first field
+     * @param otherCodes the codes of the second field
+     * @param translation for each code of the second field, the code of the same value in the first one
+     * @return a kernel keeping the rows where two dictionary encoded fields are equal (are not, when equal is false)
+     */
+    static BatchFilter codePairs(int[] codes, int[] otherCodes, int[] translation, boolean equal) {
+        return (from, count, bitmap) -> {
+            for(int w = 0; w < (count + 63) >>> 6; w++) {
+                if(bitmap[w] == 0) continue;
+
+                int base = from + (w << 6);
+                int n = Math.min(64, count - (w << 6));
+                long bits = 0;
+                for(int b = 0; b < n; b++) {
+                    bits |= (codes[base + b] == translation[otherCodes[base + b]] ? 1L : 0L) << b;
+                }
+                bitmap[w] &= equal ? bits : ~bits;
+            }
+        };
+    }
+
+    /**
+     * @return a kernel for the conjunction of some conditions, ANDing their bitmaps
+     */
+    static BatchFilter and(List<BatchFilter> filters) {
+        if(filters.size() == 1) return filters.getFirst();
+
+        BatchFilter[] all = filters.toArray(new BatchFilter[] {});
+        return (from, count, bitmap) -> {
+            for(BatchFilter filter : all) filter.filter(from, count, bitmap);
+        };
+    }
+
+    /**
+     * Function to set the bits of the rows of a batch, the first step of its selection
+     * @param bitmap the bitmap of the batch
+     * @param count the number of rows of the batch
+     */
+    static void selectAll(long[] bitmap, int count) {
+        Arrays.fill(bitmap, 0);
+        Arrays.fill(bitmap, 0, count >>> 6, -1L);
+        if((count & 63) != 0) bitmap[count >>> 6] = (1L << (count & 63)) - 1;
+    }
+
+    /**
+     * Function to find the rows of a range satisfying the condition, a batch at a time
+     * @param from the first position (included)
+     * @param to the last position (excluded)
+     * @return the positions, in increasing order
+     */
+    default int[] select(int from, int to) {
+        long[] bitmap = new long[BATCH / 64];
+        int[] positions = new int[Math.min(to - from, BATCH)];
+        int found = 0;
+
+        for(int start = from; start < to; start += BATCH) {
+            int count = Math.min(BATCH, to - start);
+            selectAll(bitmap, count);
+            filter(start, count, bitmap);
+
+            for(int w = 0; w < bitmap.length; w++) {
+                long word = bitmap[w];
+                if(found + Long.bitCount(word) > positions.length) positions = Arrays.copyOf(positions, Math.max(positions.length * 2, found + 64));
+                while(word != 0) {
+                    positions[found++] = start + (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+        }
+        return Arrays.copyOf(positions, found);
+    }
+}
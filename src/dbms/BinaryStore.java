@@ -0,0 +1,118 @@
+package dbms;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Row layout over a binary table file mapped in memory: the rows of the file are not decoded when the
+ * relation is loaded, each one is decoded from the mapped file (through the directory of the file) when it is read.
+ * The rows inserted after the load are kept in a RowListStore appended to the ones of the file.
+ * The set of the rows of the file, needed for the duplicate checks, is built by the first check.
+ * <p>
+ * The file must not be modified while it is mapped: relations are saved to a new file that replaces it.
+ * </p>
+ */
+public class BinaryStore extends RowStore {
+    /**
+     * Rows of the file, shared by a store and its snapshots
+     */
+    private static class Base {
+        public final BinaryTable table;
+        public final int[] fields; // the fields of the file loaded, null for all
+        public final int rows;
+        public volatile HashMap<List<String>, Integer> rowSet = null;
+
+        public Base(BinaryTable table, int[] fields) {
+            this.table = table;
+            this.fields = fields;
+            this.rows = table.size();
+        }
+
+        public String[] get(int index) {
+            return fields == null ? table.readRow(index) : table.readRow(index, fields);
+        }
+
+        public HashMap<List<String>, Integer> getRowSet() {
+            HashMap<List<String>, Integer> set = rowSet;
+            if(set != null) return set;
+
+            synchronized(this) {
+                if(rowSet == null) {
+                    HashMap<List<String>, Integer> built = new HashMap<>();
+                    for(int i = 0; i < rows; i++) built.put(Arrays.asList(get(i)), i);
+                    rowSet = built;
+                }
+                return rowSet;
+            }
+        }
+    }
+
+    private final Base base;
+    private final RowStore tail;
+
+    /**
+     * @param table the mapped file
+     * @param fields the indexes in the file of the fields of the relation, in increasing order, null for all
+     */
+    public BinaryStore(BinaryTable table, int[] fields) {
+        this(new Base(table, fields), new RowListStore());
+    }
+
+    private BinaryStore(Base base, RowStore tail) {
+        this.base = base;
+        this.tail = tail;
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.ROWS;
+    }
+
+    @Override
+    public int size() {
+        return base.rows + tail.size();
+    }
+
+    @Override
+    public String[] get(int index) {
+        return index < base.rows ? base.get(index) : tail.get(index - base.rows);
+    }
+
+    @Override
+    public String get(int index, int field) {
+        if(index >= base.rows) return tail.get(index - base.rows, field);
+        return base.table.readField(index, base.fields == null ? field : base.fields[field]);
+    }
+
+    @Override
+    public void add(String[] row) {
+        tail.add(row);
+    }
+
+    @Override
+    public void commit() {
+        tail.commit();
+    }
+
+    @Override
+    public RowStore snapshot() {
+        return new BinaryStore(base, tail.snapshot());
+    }
+
+    @Override
+    public RowStore view() {
+        return new BinaryStore(base, tail.view());
+    }
+
+    @Override
+    public boolean contains(String[] row) {
+        return base.getRowSet().containsKey(Arrays.asList(row)) || tail.contains(row);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        // the rows of the file are outside the heap, only their set once built is not
+        return tail.estimatedBytes() + (base.rowSet == null ? 0 : 150L * base.rows);
+    }
+}
@@ -0,0 +1,184 @@
+package dbms;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary, memory-mapped storage format for a relation (data/name.bin).
+ *
+ * Layout (big endian):
+ * <pre>
+ * int magic, int version
+ * int field count, for each field: short length + UTF-8 bytes of the name
+ * int row count
+ * long[row count] offset of every row from the start of the file (the directory)
+ * rows: for each field int length + UTF-8 bytes of the value
+ * </pre>
+ * Thanks to the directory any row can be read directly from the mapped file, without parsing the ones before it.
+ * The reads use absolute positions of the buffer only, so they can be made from several threads.
+ */
+public class BinaryTable {
+    private static final int MAGIC = 0x44424D53; // "DBMS"
+    private static final int VERSION = 1;
+
+    private final MappedByteBuffer buffer;
+    private final String[] field_names;
+    private final int rows;
+    private final int directoryOffset;
+
+    private BinaryTable(MappedByteBuffer buffer, String[] field_names, int rows, int directoryOffset) {
+        this.buffer = buffer;
+        this.field_names = field_names;
+        this.rows = rows;
+        this.directoryOffset = directoryOffset;
+    }
+
+    /**
+     * Function to map a binary table file
+     * @param file the file
+     * @return the mapped table
+     * @throws IOException if the file cannot be read or is not a binary table
+     */
+    public static BinaryTable open(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) throw new IOException("binary table: file too large to be mapped " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(buffer.getInt() != MAGIC) throw new IOException("binary table: invalid file " + file);
+            if(buffer.getInt() != VERSION) throw new IOException("binary table: unsupported version in " + file);
+
+            String[] fields = new String[buffer.getInt()];
+            for(int i = 0; i < fields.length; i++) {
+                byte[] bytes = new byte[buffer.getShort()];
+                buffer.get(bytes);
+                fields[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int rows = buffer.getInt();
+            return new BinaryTable(buffer, fields, rows, buffer.position());
+        }
+    }
+
+    public String[] getFieldNames() {
+        return field_names;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Function to read a row
+     * @param index the index of the row
+     * @return the values of the row
+     */
+    public String[] readRow(int index) {
+        int offset = (int) buffer.getLong(directoryOffset + index * 8);
+        String[] row = new String[field_names.length];
+
+        for(int i = 0; i < row.length; i++) {
+            int length = buffer.getInt(offset);
+            row[i] = readString(offset + 4, length);
+            offset += 4 + length;
+        }
+
+        return row;
+    }
+
+    /**
+     * Function to read some fields of a row, walking the row once
+     * @param index the index of the row
+     * @param fields the indexes of the fields, in increasing order
+     * @return the values of the fields
+     */
+    public String[] readRow(int index, int[] fields) {
+        int offset = (int) buffer.getLong(directoryOffset + index * 8);
+        String[] row = new String[fields.length];
+
+        for(int i = 0, k = 0; k < fields.length; i++) {
+            int length = buffer.getInt(offset);
+            if(fields[k] == i) row[k++] = readString(offset + 4, length);
+            offset += 4 + length;
+        }
+
+        return row;
+    }
+
+    /**
+     * Function to read a single value, skipping the fields before it
+     * @param index the index of the row
+     * @param field the index of the field
+     * @return the value
+     */
+    public String readField(int index, int field) {
+        int offset = (int) buffer.getLong(directoryOffset + index * 8);
+        for(int i = 0; i < field; i++) {
+            offset += 4 + buffer.getInt(offset);
+        }
+        return readString(offset + 4, buffer.getInt(offset));
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Function to write a relation in the binary format
+     * @param file the destination file
+     * @param field_names the names of the fields
+     * @param data the rows
+     * @param sync true to force the content to the disk before returning
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, String[] field_names, Iterable<String[]> data, boolean sync) throws IOException {
+        // first pass: size of the header and of every row, to fill the directory
+        int headerSize = 4 + 4 + 4 + 4;
+        for(String field : field_names) {
+            headerSize += 2 + field.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        int rows = 0;
+        for(String[] ignored : data) rows++;
+
+        try(FileOutputStream fos = new FileOutputStream(file);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(field_names.length);
+            for(String field : field_names) {
+                byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(rows);
+
+            // directory
+            long offset = headerSize + 8L * rows;
+            for(String[] row : data) {
+                out.writeLong(offset);
+                for(String value : row) {
+                    offset += 4 + value.getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            if(offset > Integer.MAX_VALUE) throw new IOException("binary table: relation too large for the binary format");
+
+            // rows
+            for(String[] row : data) {
+                for(String value : row) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+
+            out.flush();
+            if(sync) fos.getFD().sync();
+        }
+    }
+}
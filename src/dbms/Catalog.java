@@ -0,0 +1,225 @@
+package dbms;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shared cache of the loaded relations, so that statements don't re-read the CSV files every time.
+ * The cache is bounded by a memory budget (system property dbms.catalog.budget, in bytes)
+ * and evicts the least recently used relations first. An entry is reloaded when its file
+ * has been modified since it was cached.
+ * Queries can ask for some fields only: the relation is then loaded with those fields (column pruning)
+ * and the entry remembers which ones it has.
+ */
+public class Catalog {
+    private static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    private static class Entry {
+        public Relation relation;
+        public long modified;
+        public long bytes;
+        public Set<String> columns; // the fields loaded, null for all of them
+
+        public Entry(Relation relation, long modified, Set<String> columns) {
+            this.relation = relation;
+            this.modified = modified;
+            this.bytes = relation.getEstimatedBytes();
+            this.columns = columns;
+        }
+
+        /**
+         * @return true if the cached relation has all the fields needed
+         */
+        public boolean covers(Set<String> needed) {
+            return columns == null || (needed != null && columns.containsAll(needed));
+        }
+    }
+
+    // access order, so the first entry is always the least recently used
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static long budget = Long.getLong("dbms.catalog.budget", DEFAULT_BUDGET);
+    private static long usedBytes = 0;
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long clears = 0;
+    private static final HashMap<String, Long> changes = new HashMap<>(); // times each relation was replaced or dropped
+    private static final ConcurrentHashMap<String, ReentrantLock> loading = new ConcurrentHashMap<>();
+
+    private Catalog() {}
+
+    /**
+     * Function to get a relation, loading it from disk only if not cached or modified
+     * The files of a relation being written by a statement of this process are modified
+     * before its cached copy is updated, so in the meantime the cached copy is still the right one
+     * @param name the name of the relation
+     * @return the relation, or null if it cannot be loaded
+     */
+    public static Relation get(String name) {
+        return get(name, null);
+    }
+
+    /**
+     * Function to get a relation with at least some of its fields, to be only read (queries)
+     * A cached relation with all the fields needed is used as it is, otherwise only the fields needed
+     * (and the ones already cached, if still valid) are loaded and replace the cached copy
+     * @param name the name of the relation
+     * @param columns the names of the fields needed, null for all the fields
+     * @return the relation, maybe with other fields too, or null if it cannot be loaded
+     */
+    public static Relation get(String name, Set<String> columns) {
+        long modified = Relation.lastModified(name);
+        boolean writing = RelationLocks.isWriteLocked(name);
+
+        synchronized(Catalog.class) {
+            Relation cached = cached(name, columns, modified, writing);
+            if(cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        // the relation is loaded outside the monitor, so that the statements using other relations don't wait for it;
+        // the statements needing the same relation meanwhile wait for this load and then find it in the cache
+        ReentrantLock lock = loading.computeIfAbsent(name, n -> new ReentrantLock());
+        lock.lock();
+        try {
+            Set<String> needed;
+            long version;
+            synchronized(Catalog.class) {
+                Relation cached = cached(name, columns, modified, writing);
+                if(cached != null) return cached;
+
+                needed = columns;
+                Entry entry = entries.get(name);
+                if(entry != null && columns != null && (entry.modified == modified || writing)) {
+                    // the fields already cached are kept
+                    HashSet<String> union = new HashSet<>(columns);
+                    union.addAll(entry.columns);
+                    needed = union;
+                }
+                version = version(name);
+            }
+
+            Relation relation = Relation.load(name, needed);
+
+            synchronized(Catalog.class) {
+                // not cached if a statement has saved or dropped the relation (or cleared the cache) during the load
+                if(version == version(name)) {
+                    remove(name);
+                    if(relation != null) put(name, relation, modified, relation.isPruned() ? needed : null);
+                }
+            }
+            return relation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the cached copy of a relation if it is still valid and has all the fields needed, null otherwise
+     */
+    private static Relation cached(String name, Set<String> columns, long modified, boolean writing) {
+        Entry entry = entries.get(name);
+        boolean valid = entry != null && (entry.modified == modified || writing);
+        return valid && entry.covers(columns) ? entry.relation : null;
+    }
+
+    /**
+     * @return a number changed every time the cached copy of a relation is replaced or dropped, except by get
+     */
+    private static long version(String name) {
+        return clears + changes.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Function to update the cached copy of a relation after it has been saved (write-through)
+     * @param relation the saved relation
+     */
+    public static synchronized void update(Relation relation) {
+        changes.merge(relation.getName(), 1L, Long::sum);
+        remove(relation.getName());
+        put(relation.getName(), relation, Relation.lastModified(relation.getName()), null);
+    }
+
+    /**
+     * Function to refresh the modification time of a cached relation whose files
+     * have been rewritten without changing its content (e.g. a log compaction)
+     * @param name the name of the relation
+     */
+    public static synchronized void touch(String name) {
+        Entry entry = entries.get(name);
+        if(entry != null) entry.modified = Relation.lastModified(name);
+    }
+
+    /**
+     * Function to drop a relation from the cache
+     * @param name the name of the relation
+     */
+    public static synchronized void invalidate(String name) {
+        changes.merge(name, 1L, Long::sum);
+        remove(name);
+    }
+
+    /**
+     * Function to drop every relation from the cache
+     */
+    public static synchronized void clear() {
+        clears++;
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Function to change the memory budget, evicting relations if needed
+     * @param bytes the new budget in bytes
+     */
+    public static synchronized void setBudget(long bytes) {
+        budget = bytes;
+        evict();
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+    public static synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private static void put(String name, Relation relation, long modified, Set<String> columns) {
+        Entry entry = new Entry(relation, modified, columns);
+        // a relation bigger than the whole budget is never cached
+        if(entry.bytes > budget) return;
+
+        entries.put(name, entry);
+        usedBytes += entry.bytes;
+        evict();
+    }
+
+    private static void remove(String name) {
+        Entry entry = entries.remove(name);
+        if(entry != null) usedBytes -= entry.bytes;
+    }
+
+    /**
+     * Function to evict the least recently used relations until the budget is respected
+     */
+    private static void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while(usedBytes > budget && it.hasNext()) {
+            usedBytes -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package dbms;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column layout: every field is stored in its own array.
+ * VARCHAR fields are dictionary encoded: each distinct value is kept only once (in the dictionary
+ * of the field) and each row has an int code; rows are rebuilt on request from the codes, sharing
+ * the strings of the dictionaries, and equality checks (selections, joins and duplicates) compare codes.
+ * INT, LONG and DOUBLE fields are kept in int, long and double arrays, so that conditions on them
+ * run over contiguous primitive memory; their strings are formatted only when a row is read.
+ */
+public class ColumnStore extends RowStore {
+    private static final int MISSING = -1;
+
+    /**
+     * Storage of the values of a field. The arrays are replaced (never modified below the committed rows)
+     * when they grow, readers get the current ones through volatile fields.
+     */
+    private abstract static class Column {
+        public abstract String get(int index);
+
+        /**
+         * Function to store the value of the row at position index (the next one), growing the array if needed
+         */
+        public abstract void add(int index, String value);
+
+        /**
+         * @return a key of the value of a row, equal for equal values
+         */
+        public abstract long key(int index);
+
+        /**
+         * @return the key of a value, as key would return it for a row with that value
+         * @throws NumberFormatException if the value is not valid for a numeric field
+         */
+        public abstract long keyOf(String value);
+
+        /**
+         * @return false if no row can have the value
+         */
+        public boolean mayContain(String value) {
+            return true;
+        }
+
+        public abstract long bytes();
+    }
+
+    /**
+     * Dictionary encoded VARCHAR field: the distinct values, each one identified by its code, and the code of each row
+     */
+    private static class DictionaryColumn extends Column {
+        public final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+        public volatile String[] values = new String[16];
+        public volatile int count = 0;
+        public long valueBytes = 0;
+        public volatile int[] rows = new int[16];
+
+        public int encode(String value) {
+            Integer code = codes.get(value);
+            if(code != null) return code;
+
+            String[] array = values;
+            if(count == array.length) {
+                array = Arrays.copyOf(array, count * 2);
+                values = array;
+            }
+            array[count] = value;
+            codes.put(value, count);
+            valueBytes += 40 + value.length();
+            return count++;
+        }
+
+        public int lookup(String value) {
+            Integer code = codes.get(value);
+            return code == null ? MISSING : code;
+        }
+
+        @Override
+        public String get(int index) {
+            return values[rows[index]];
+        }
+
+        @Override
+        public void add(int index, String value) {
+            int[] array = rows;
+            if(index == array.length) {
+                array = Arrays.copyOf(array, index * 2);
+                rows = array;
+            }
+            array[index] = encode(value);
+        }
+
+        @Override
+        public long key(int index) {
+            return rows[index];
+        }
+
+        @Override
+        public long keyOf(String value) {
+            return lookup(value);
+        }
+
+        @Override
+        public boolean mayContain(String value) {
+            return lookup(value) != MISSING;
+        }
+
+        @Override
+        public long bytes() {
+            return 4L * rows.length + valueBytes + 48L * count;
+        }
+    }
+
+    private static class IntColumn extends Column {
+        public volatile int[] values = new int[16];
+
+        @Override
+        public String get(int index) {
+            return Integer.toString(values[index]);
+        }
+
+        @Override
+        public void add(int index, String value) {
+            int[] array = values;
+            if(index == array.length) {
+                array = Arrays.copyOf(array, index * 2);
+                values = array;
+            }
+            array[index] = Integer.parseInt(value);
+        }
+
+        @Override
+        public long key(int index) {
+            return values[index];
+        }
+
+        @Override
+        public long keyOf(String value) {
+            return Integer.parseInt(value);
+        }
+
+        @Override
+        public long bytes() {
+            return 4L * values.length;
+        }
+    }
+
+    private static class LongColumn extends Column {
+        public volatile long[] values = new long[16];
+
+        @Override
+        public String get(int index) {
+            return Long.toString(values[index]);
+        }
+
+        @Override
+        public void add(int index, String value) {
+            long[] array = values;
+            if(index == array.length) {
+                array = Arrays.copyOf(array, index * 2);
+                values = array;
+            }
+            array[index] = Long.parseLong(value);
+        }
+
+        @Override
+        public long key(int index) {
+            return values[index];
+        }
+
+        @Override
+        public long keyOf(String value) {
+            return Long.parseLong(value);
+        }
+
+        @Override
+        public long bytes() {
+            return 8L * values.length;
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        public volatile double[] values = new double[16];
+
+        @Override
+        public String get(int index) {
+            return Double.toString(values[index]);
+        }
+
+        @Override
+        public void add(int index, String value) {
+            double[] array = values;
+            if(index == array.length) {
+                array = Arrays.copyOf(array, index * 2);
+                values = array;
+            }
+            array[index] = Double.parseDouble(value);
+        }
+
+        @Override
+        public long key(int index) {
+            return Double.doubleToLongBits(values[index]);
+        }
+
+        @Override
+        public long keyOf(String value) {
+            return Double.doubleToLongBits(Double.parseDouble(value));
+        }
+
+        @Override
+        public long bytes() {
+            return 8L * values.length;
+        }
+    }
+
+    /**
+     * Storage shared by a store and its snapshots
+     */
+    private static class Columns {
+        public final Column[] columns;
+        public int size = 0; // written only by the writer
+        public volatile int committed = 0;
+
+        // open addressing set of the row positions (+1, 0 means empty), hashed on the keys of the rows
+        public volatile int[] rowSet = new int[16];
+
+        public Columns(FieldType[] types) {
+            columns = new Column[types.length];
+            for(int i = 0; i < types.length; i++) {
+                columns[i] = switch(types[i]) {
+                    case INT -> new IntColumn();
+                    case LONG -> new LongColumn();
+                    case DOUBLE -> new DoubleColumn();
+                    case VARCHAR -> new DictionaryColumn();
+                };
+            }
+        }
+    }
+
+    private final Columns columns;
+    private final int limit; // number of rows of a snapshot, -1 for the store itself
+
+    /**
+     * @param types the types of the fields, the values of the numeric ones must be in canonical form
+     */
+    public ColumnStore(FieldType[] types) {
+        this(new Columns(types), -1);
+    }
+
+    private ColumnStore(Columns columns, int limit) {
+        this.columns = columns;
+        this.limit = limit;
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.COLUMNS;
+    }
+
+    @Override
+    public int size() {
+        return limit == -1 ? columns.size : limit;
+    }
+
+    @Override
+    public String[] get(int index) {
+        Column[] fields = columns.columns;
+        String[] row = new String[fields.length];
+        for(int i = 0; i < fields.length; i++) {
+            row[i] = fields[i].get(index);
+        }
+        return row;
+    }
+
+    @Override
+    public String get(int index, int field) {
+        return columns.columns[field].get(index);
+    }
+
+    /**
+     * @param field the index of the field
+     * @return true if the field is dictionary encoded (VARCHAR), so that its values have codes
+     */
+    public boolean isEncoded(int field) {
+        return columns.columns[field] instanceof DictionaryColumn;
+    }
+
+    /**
+     * Function to get the code of a value of a row
+     * @param index the position of the row
+     * @param field the index of an encoded field
+     * @return the code, valid only within the dictionary of the field
+     */
+    public int getCode(int index, int field) {
+        return ((DictionaryColumn) columns.columns[field]).rows[index];
+    }
+
+    /**
+     * @param field the index of an encoded field
+     * @return the code of each row, the array is valid for the rows of this store
+     */
+    public int[] getCodes(int field) {
+        return ((DictionaryColumn) columns.columns[field]).rows;
+    }
+
+    /**
+     * Function to get the code of a value in the dictionary of a field
+     * @param field the index of an encoded field
+     * @param value the value
+     * @return the code, or -1 if no row has that value
+     */
+    public int lookup(int field, String value) {
+        return ((DictionaryColumn) columns.columns[field]).lookup(value);
+    }
+
+    /**
+     * Function to evaluate a condition on every distinct value of an encoded field once
+     * @param field the index of an encoded field
+     * @param condition the condition, comparing the field with a value
+     * @return for each code of the field (at least the ones of the rows of this store), the result of the condition on its value
+     */
+    public boolean[] testCodes(int field, Predicate condition) {
+        DictionaryColumn column = (DictionaryColumn) columns.columns[field];
+        int count = column.count;
+        String[] values = column.values;
+
+        boolean[] results = new boolean[count];
+        for(int code = 0; code < count; code++) {
+            results[code] = condition.test(FieldType.VARCHAR, values[code], condition.getValue());
+        }
+        return results;
+    }
+
+    /**
+     * Function to map the codes of a field of this store to the codes of a field of another store
+     * @param field the encoded field of this store
+     * @param other the other store
+     * @param otherField the encoded field of the other store
+     * @return for each code of this field, the code of the same value in the other one (-1 if missing)
+     */
+    public int[] translate(int field, ColumnStore other, int otherField) {
+        DictionaryColumn dictionary = (DictionaryColumn) columns.columns[field];
+        int count = dictionary.count;
+        String[] values = dictionary.values;
+
+        int[] translation = new int[count];
+        for(int code = 0; code < count; code++) {
+            translation[code] = other.lookup(otherField, values[code]);
+        }
+        return translation;
+    }
+
+    /**
+     * @param field the index of an INT field
+     * @return the values of the field, the array is valid for the rows of this store
+     */
+    public int[] getInts(int field) {
+        return ((IntColumn) columns.columns[field]).values;
+    }
+
+    /**
+     * @param field the index of a LONG field
+     * @return the values of the field, the array is valid for the rows of this store
+     */
+    public long[] getLongs(int field) {
+        return ((LongColumn) columns.columns[field]).values;
+    }
+
+    /**
+     * @param field the index of a DOUBLE field
+     * @return the values of the field, the array is valid for the rows of this store
+     */
+    public double[] getDoubles(int field) {
+        return ((DoubleColumn) columns.columns[field]).values;
+    }
+
+    @Override
+    public void add(String[] row) {
+        if(limit != -1) throw new UnsupportedOperationException("snapshots are read only");
+
+        int size = columns.size;
+        Column[] fields = columns.columns;
+        for(int i = 0; i < fields.length; i++) {
+            fields[i].add(size, row[i]);
+        }
+        columns.size = size + 1;
+
+        if(columns.size * 2 > columns.rowSet.length) rehash();
+        insertInSet(columns.rowSet, size);
+    }
+
+    @Override
+    public void commit() {
+        if(limit == -1) columns.committed = columns.size;
+    }
+
+    @Override
+    public RowStore snapshot() {
+        return new ColumnStore(columns, limit == -1 ? columns.committed : limit);
+    }
+
+    @Override
+    public RowStore view() {
+        return new ColumnStore(columns, size());
+    }
+
+    @Override
+    public boolean contains(String[] row) {
+        Column[] fields = columns.columns;
+        long[] keys = new long[row.length];
+        try {
+            for(int i = 0; i < keys.length; i++) {
+                // a value never seen cannot be part of a stored row
+                if(!fields[i].mayContain(row[i])) return false;
+                keys[i] = fields[i].keyOf(row[i]);
+            }
+        } catch (NumberFormatException ex) {
+            // not a number, so not a value of a numeric field
+            return false;
+        }
+
+        int size = size();
+        int[] rowSet = columns.rowSet;
+        int mask = rowSet.length - 1;
+        for(int slot = hash(keys) & mask; rowSet[slot] != 0; slot = (slot + 1) & mask) {
+            int position = rowSet[slot] - 1;
+            if(position < size && equalKeys(position, keys)) return true;
+        }
+        return false;
+    }
+
+    private void insertInSet(int[] rowSet, int position) {
+        int mask = rowSet.length - 1;
+        int slot = hash(position) & mask;
+        while(rowSet[slot] != 0) slot = (slot + 1) & mask;
+        rowSet[slot] = position + 1;
+    }
+
+    private void rehash() {
+        // filled before being published, readers keep using the old set in the meantime
+        int[] rowSet = new int[columns.rowSet.length * 2];
+        for(int i = 0; i < columns.size - 1; i++) {
+            insertInSet(rowSet, i);
+        }
+        columns.rowSet = rowSet;
+    }
+
+    private int hash(int position) {
+        int h = 1;
+        for(Column column : columns.columns) {
+            h = 31 * h + Long.hashCode(column.key(position));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(long[] keys) {
+        int h = 1;
+        for(long key : keys) {
+            h = 31 * h + Long.hashCode(key);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private boolean equalKeys(int position, long[] keys) {
+        Column[] fields = columns.columns;
+        for(int i = 0; i < fields.length; i++) {
+            if(fields[i].key(position) != keys[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        // arrays of every field (with the strings and entries of the dictionaries) and row set
+        long bytes = 4L * columns.rowSet.length;
+        for(Column column : columns.columns) {
+            bytes += column.bytes();
+        }
+        return bytes;
+    }
+}
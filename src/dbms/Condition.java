@@ -2,7 +2,34 @@ package dbms;
 
 public class Condition {
     public enum Operator {
-        EQUAL, NOT_EQUAL
+        EQUAL("="), NOT_EQUAL("<>"), LESS("<"), LESS_EQUAL("<="), GREATER(">"), GREATER_EQUAL(">="), BETWEEN("BETWEEN");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * Function to check the result of a comparison against a binary operator
+         * @param comparison negative, zero or positive as the first value is less than, equal to or greater than the second
+         * @return true if the operator holds
+         */
+        public boolean test(int comparison) {
+            return switch(this) {
+                case EQUAL -> comparison == 0;
+                case NOT_EQUAL -> comparison != 0;
+                case LESS -> comparison < 0;
+                case LESS_EQUAL -> comparison <= 0;
+                case GREATER -> comparison > 0;
+                case GREATER_EQUAL -> comparison >= 0;
+                case BETWEEN -> throw new IllegalStateException("BETWEEN compares with two values");
+            };
+        }
     }
 
     private String field;
@@ -28,16 +55,44 @@ public class Condition {
         return valueIsField;
     }
 
+    /**
+     * Function to find the comparison operator of a condition, outside of the quoted values
+     * @param condition the condition
+     * @return the position of the operator, or -1 if there is none
+     */
+    static int findOperator(String condition) {
+        boolean quoted = false;
+        for(int i = 0; i < condition.length(); i++) {
+            char c = condition.charAt(i);
+            if(c == '\'') quoted = !quoted;
+            else if(!quoted && (c == '=' || c == '<' || c == '>')) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Function to read the comparison operator at a position of a condition
+     * @param condition the condition
+     * @param position the position found by findOperator
+     * @return the operator
+     */
+    static Operator operatorAt(String condition, int position) {
+        char next = position + 1 < condition.length() ? condition.charAt(position + 1) : ' ';
+        return switch(condition.charAt(position)) {
+            case '<' -> next == '>' ? Operator.NOT_EQUAL : next == '=' ? Operator.LESS_EQUAL : Operator.LESS;
+            case '>' -> next == '=' ? Operator.GREATER_EQUAL : Operator.GREATER;
+            default -> Operator.EQUAL;
+        };
+    }
+
     public static Condition evaluate(String condition) throws Exception {
         Condition conditionObj = new Condition();
 
-        if(condition.contains("=")) conditionObj.operator = Operator.EQUAL;
-        else if(condition.contains("<>")) conditionObj.operator = Operator.NOT_EQUAL;
-        else return null;
-
-        String operatorStr = (conditionObj.operator == Operator.EQUAL ? "=" : "<>");
+        int position = findOperator(condition);
+        if(position == -1) return null;
+        conditionObj.operator = operatorAt(condition, position);
 
-        String[] expr = condition.split(operatorStr);
+        String[] expr = {condition.substring(0, position), condition.substring(position + conditionObj.operator.getSymbol().length())};
         conditionObj.field = expr[0];
 
         if(expr[1].contains("'")) {
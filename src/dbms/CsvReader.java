@@ -0,0 +1,429 @@
+package dbms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reader of CSV relation files working on the bytes of the file mapped in memory, without reading lines
+ * or splitting strings: only the values of the kept columns become strings (the other ones are skipped
+ * byte by byte), and INT and LONG values are parsed from the bytes straight to their canonical form.
+ * Values can be quoted as in RFC 4180 ("a,b", "say ""hi""", quoted newlines), lines can end with \r\n.
+ * Large files are split in chunks at line boundaries and the chunks are parsed by the threads of the
+ * parallel pool, a few at a time, then the rows are handed over in file order. A first pass counts the
+ * quotes of each chunk, so a split never falls on a newline inside a quoted value.
+ */
+public class CsvReader {
+    private static final long MAX_CHUNK = 16L << 20; // bytes parsed by a task
+    private static final long MIN_PARALLEL = 4L << 20; // smaller files are parsed by the calling thread
+
+    /**
+     * Consumer of the rows read
+     */
+    public interface RowConsumer {
+        void accept(String[] row) throws Exception;
+    }
+
+    private CsvReader() {}
+
+    /**
+     * Function to read the header of a CSV file
+     * @param file the file
+     * @return the fields of the first line
+     * @throws IOException if the file cannot be read or is empty
+     */
+    public static String[] readHeader(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size == 0) throw new IOException("empty file " + file);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            int end = lineEnd(buffer, 0, false);
+            if(end > 0 && buffer.get(end - 1) == '\n') end--;
+            return splitLine(StandardCharsets.UTF_8.decode(buffer.slice(0, end)).toString());
+        }
+    }
+
+    /**
+     * Function to read the rows of a CSV file, after its header
+     * @param file the file
+     * @param keep for each field of the file, true if its values are needed
+     * @param types the type of each field of the file, numeric values are checked and put in canonical form
+     * @param consumer the consumer of the rows (with only the kept fields), called in file order by the calling thread
+     * @return the number of rows read
+     * @throws Exception if the file cannot be read, a line has a wrong number of fields, a value is not valid for its type
+     *                   or the consumer fails
+     */
+    public static long read(File file, boolean[] keep, FieldType[] types, RowConsumer consumer) throws Exception {
+        return read(file, true, keep, types, consumer);
+    }
+
+    /**
+     * Function to read the rows of a CSV file
+     * The last line does not need to end with a newline. When the lines are parsed in parallel and one is not valid,
+     * the rows of the chunks parsed together with it are not given to the consumer, even the ones before it
+     * @param file the file
+     * @param header true if the first line is a header, to be skipped
+     * @param keep for each field of the file, true if its values are needed
+     * @param types the type of each field of the file, numeric values are checked and put in canonical form
+     * @param consumer the consumer of the rows (with only the kept fields), called in file order by the calling thread
+     * @return the number of rows read
+     * @throws Exception if the file cannot be read, a line has a wrong number of fields, a value is not valid for its type
+     *                   or the consumer fails
+     */
+    public static long read(File file, boolean header, boolean[] keep, FieldType[] types, RowConsumer consumer) throws Exception {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size == 0) return 0;
+
+            long start = header ? lineEnd(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE)), 0, false) : 0;
+            long[] bounds = chunks(channel, start, size);
+
+            // with one thread the rows go straight to the consumer, otherwise the chunks are parsed
+            // a wave at a time, so that only the rows of a wave are waiting to be consumed
+            int wave = Math.max(1, Parallel.getParallelism());
+            long rows = 0;
+            for(int first = 0; first < bounds.length - 1; first += wave) {
+                if(wave == 1) {
+                    if(bounds[first + 1] > bounds[first]) rows += chunk(channel, bounds, first, keep, types).parse(consumer);
+                    continue;
+                }
+
+                int tasks = Math.min(wave, bounds.length - 1 - first);
+                List<String[]>[] parsed = parse(channel, bounds, first, tasks, keep, types);
+
+                for(List<String[]> chunk : parsed) {
+                    for(String[] row : chunk) consumer.accept(row);
+                    rows += chunk.size();
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Function to split the rows of the file in chunks starting at the beginning of a line
+     * @return the offsets of the chunks, the last one is the size of the file
+     */
+    private static long[] chunks(FileChannel channel, long start, long size) throws IOException {
+        long data = size - start;
+        int count = (int) Math.max(1, (data + MAX_CHUNK - 1) / MAX_CHUNK);
+        if(data >= MIN_PARALLEL) count = Math.max(count, Parallel.getParallelism());
+        if(count == 1) return new long[] {start, size};
+
+        long[] raw = new long[count + 1];
+        for(int i = 0; i <= count; i++) raw[i] = start + data * i / count;
+
+        // first pass: the quotes of each chunk, to know if a chunk starts inside a quoted value
+        int[] quotes = new int[count];
+        IOException[] error = new IOException[1];
+        Parallel.run(count, i -> {
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, raw[i], raw[i + 1] - raw[i]);
+                int n = 0;
+                for(int p = 0; p < buffer.limit(); p++) {
+                    if(buffer.get(p) == '"') n++;
+                }
+                quotes[i] = n;
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if(error[0] != null) throw error[0];
+
+        // each chunk starts after the first newline outside quotes from its raw offset
+        long[] bounds = new long[count + 1];
+        bounds[0] = start;
+        bounds[count] = size;
+        int parity = 0;
+        for(int i = 1; i < count; i++) {
+            parity = (parity + quotes[i - 1]) & 1;
+            long from = Math.max(raw[i], bounds[i - 1]);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(size - from, Integer.MAX_VALUE));
+            bounds[i] = from + lineEnd(buffer, 0, parity == 1 && from == raw[i]);
+        }
+        return bounds;
+    }
+
+    /**
+     * @return the position after the first newline outside quotes from a position, or the limit of the buffer
+     */
+    private static int lineEnd(MappedByteBuffer buffer, int from, boolean quoted) {
+        for(int p = from; p < buffer.limit(); p++) {
+            byte b = buffer.get(p);
+            if(b == '"') quoted = !quoted;
+            else if(b == '\n' && !quoted) return p + 1;
+        }
+        return buffer.limit();
+    }
+
+    private static List<String[]>[] parse(FileChannel channel, long[] bounds, int first, int tasks, boolean[] keep, FieldType[] types) throws Exception {
+        @SuppressWarnings("unchecked")
+        List<String[]>[] parsed = (List<String[]>[]) new List<?>[tasks];
+        Exception[] errors = new Exception[tasks];
+
+        Parallel.run(tasks, t -> {
+            try {
+                long from = bounds[first + t];
+                long to = bounds[first + t + 1];
+                ArrayList<String[]> rows = new ArrayList<>();
+                if(to > from) chunk(channel, bounds, first + t, keep, types).parse(rows::add);
+                parsed[t] = rows;
+            } catch (Exception e) {
+                errors[t] = e;
+            }
+        });
+
+        for(Exception error : errors) {
+            if(error != null) throw error;
+        }
+        return parsed;
+    }
+
+    private static ChunkParser chunk(FileChannel channel, long[] bounds, int chunk, boolean[] keep, FieldType[] types) throws IOException {
+        return new ChunkParser(channel.map(FileChannel.MapMode.READ_ONLY, bounds[chunk], bounds[chunk + 1] - bounds[chunk]), keep, types);
+    }
+
+    /**
+     * Parser of the lines of a chunk, with its own buffer for the bytes of the values
+     */
+    private static class ChunkParser {
+        private final MappedByteBuffer buffer;
+        private final boolean[] keep;
+        private final FieldType[] types;
+        private final int kept;
+        private final boolean skipEmpty;
+        private byte[] scratch = new byte[256];
+
+        public ChunkParser(MappedByteBuffer buffer, boolean[] keep, FieldType[] types) {
+            this.buffer = buffer;
+            this.keep = keep;
+            this.types = types;
+
+            int n = 0;
+            for(boolean k : keep) {
+                if(k) n++;
+            }
+            kept = n;
+            skipEmpty = keep.length > 1 || types[0].isNumeric();
+        }
+
+        /**
+         * Function to parse the lines of the chunk
+         * @param consumer the consumer of the rows
+         * @return the number of rows
+         */
+        public long parse(RowConsumer consumer) throws Exception {
+            long rows = 0;
+            int limit = buffer.limit();
+            int pos = 0;
+
+            while(pos < limit) {
+                // empty lines are skipped, unless they are rows with an empty value (single VARCHAR field)
+                byte b = buffer.get(pos);
+                if(b == '\n' && skipEmpty) {
+                    pos++;
+                    continue;
+                }
+                if(b == '\r' && pos + 1 < limit && buffer.get(pos + 1) == '\n' && skipEmpty) {
+                    pos += 2;
+                    continue;
+                }
+
+                int line = pos;
+                String[] row = new String[kept];
+                int field = 0;
+                int out = 0;
+                while(true) {
+                    if(field == keep.length) throw new Exception("more than " + keep.length + " fields in line " + preview(line));
+
+                    int end;
+                    if(pos < limit && buffer.get(pos) == '"') {
+                        // quoted value, unescaped in the scratch buffer
+                        int length = 0;
+                        pos++;
+                        while(true) {
+                            if(pos >= limit) throw new Exception("unterminated quoted value in line " + preview(line));
+                            b = buffer.get(pos++);
+                            if(b == '"') {
+                                if(pos < limit && buffer.get(pos) == '"') pos++;
+                                else break;
+                            }
+                            if(length == scratch.length) scratch = Arrays.copyOf(scratch, length * 2);
+                            scratch[length++] = b;
+                        }
+                        if(keep[field]) row[out++] = value(field, length);
+
+                        end = pos;
+                        if(end < limit && buffer.get(end) == '\r' && end + 1 < limit && buffer.get(end + 1) == '\n') end++;
+                        if(end < limit && buffer.get(end) != ',' && buffer.get(end) != '\n') throw new Exception("invalid quoted value near " + preview(end));
+                        pos = end;
+                    } else {
+                        int start = pos;
+                        while(pos < limit && (b = buffer.get(pos)) != ',' && b != '\n') pos++;
+                        end = pos;
+                        if(end > start && buffer.get(end - 1) == '\r') end--;
+                        if(keep[field]) row[out++] = value(field, start, end);
+                    }
+                    field++;
+
+                    if(pos < limit && buffer.get(pos) == ',') {
+                        pos++;
+                        continue;
+                    }
+
+                    // end of the line (or of the chunk)
+                    pos++;
+                    break;
+                }
+
+                if(field != keep.length) throw new Exception("expected " + keep.length + " fields, found " + field + " in line " + preview(line));
+                consumer.accept(row);
+                rows++;
+            }
+
+            return rows;
+        }
+
+        /**
+         * @return the value of an unquoted field, read from the buffer
+         */
+        private String value(int field, int start, int end) throws Exception {
+            FieldType type = types[field];
+            if(type == FieldType.INT || type == FieldType.LONG) {
+                String value = parseInteger(type, start, end);
+                if(value != null) return value;
+            }
+
+            int length = end - start;
+            if(length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buffer.get(start, scratch, 0, length);
+            return value(field, length);
+        }
+
+        /**
+         * @return the value whose bytes are in the scratch buffer
+         */
+        private String value(int field, int length) throws Exception {
+            String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            return types[field].isNumeric() ? types[field].normalize(value) : value;
+        }
+
+        /**
+         * Function to parse a plain integer (optional minus and up to 18 digits) from the bytes
+         * @return the canonical value, or null if the value needs the general parsing (or is not valid)
+         */
+        private String parseInteger(FieldType type, int start, int end) {
+            boolean negative = start < end && buffer.get(start) == '-';
+            int p = negative ? start + 1 : start;
+            if(p == end || end - p > 18) return null;
+
+            long value = 0;
+            for(; p < end; p++) {
+                int digit = buffer.get(p) - '0';
+                if(digit < 0 || digit > 9) return null;
+                value = value * 10 + digit;
+            }
+            if(negative) value = -value;
+            if(type == FieldType.INT && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)) return null;
+
+            return Long.toString(value);
+        }
+
+        private String preview(int pos) {
+            int length = Math.min(40, buffer.limit() - pos);
+            byte[] bytes = new byte[Math.max(0, length)];
+            buffer.get(pos, bytes, 0, bytes.length);
+            return new String(bytes, StandardCharsets.UTF_8).replace("\n", "\\n");
+        }
+    }
+
+    /**
+     * Function to find where the complete lines of a text end, a newline inside a quoted value does not end a line
+     * Used for the insert logs, where the text after the last line is an append interrupted by a crash
+     * @param data the bytes of the text, in UTF-8
+     * @return the number of bytes up to the last newline ending a line (included), 0 if there is none
+     */
+    public static int completeLength(byte[] data) {
+        boolean quoted = false;
+        int end = 0;
+        for(int i = 0; i < data.length; i++) {
+            if(data[i] == '"') quoted = !quoted;
+            else if(data[i] == '\n' && !quoted) end = i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Function to split a text in lines, a newline inside a quoted value does not end the line
+     * Texts that may end with an incomplete line (the insert logs) are cut with completeLength first
+     * @param text the text
+     * @return the lines, without their newline; the text after the last newline, if any, is the last line
+     */
+    public static List<String> splitLines(String text) {
+        ArrayList<String> lines = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(c == '"') quoted = !quoted;
+            else if(c == '\n' && !quoted) {
+                lines.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if(start < text.length()) lines.add(text.substring(start));
+        return lines;
+    }
+
+    /**
+     * Function to split a line in values, with the same quoting rules of the files
+     * Used for the header, the insert logs and the statistics
+     * @param line the line, without the newline
+     * @return the values
+     */
+    public static String[] splitLine(String line) {
+        if(line.endsWith("\r")) line = line.substring(0, line.length() - 1);
+        if(line.indexOf('"') == -1) return line.split(",", -1);
+
+        ArrayList<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(quoted) {
+                if(c != '"') value.append(c);
+                else if(i + 1 < line.length() && line.charAt(i + 1) == '"') value.append(line.charAt(++i));
+                else quoted = false;
+            } else if(c == '"') {
+                quoted = true;
+            } else if(c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values.toArray(new String[] {});
+    }
+
+    /**
+     * Function to format a value for a CSV file, quoting it only when needed
+     * @param value the value
+     * @return the value, or the quoted value if it contains commas, quotes or newlines
+     */
+    public static String quote(String value) {
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == ',' || c == '"' || c == '\n' || c == '\r') return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
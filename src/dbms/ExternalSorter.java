@@ -0,0 +1,317 @@
+package dbms;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sort of any number of rows with a bounded amount of memory (external merge sort).
+ * The rows are collected in memory up to the memory budget, then the sorted run is spilled
+ * to a temporary file in the data folder; at the end the runs (and the rows still in memory)
+ * are merged in a streaming way, at most MERGE_FAN_IN at a time.
+ * The sort is stable: rows with equal keys come out in the order they were added.
+ * Usage: add the rows, call finish, read them with next, close to delete the runs.
+ */
+public class ExternalSorter implements Closeable {
+    private static final int MERGE_FAN_IN = 64;
+
+    // budget in bytes of the rows kept in memory by each sorter, -Ddbms.sort.memory in MB
+    private static volatile long memoryBudget = Long.getLong("dbms.sort.memory", 64) * 1024 * 1024;
+
+    /**
+     * Sorted run spilled to a file
+     */
+    private static class Run {
+        public final File file;
+        public final long rows;
+
+        public Run(File file, long rows) {
+            this.file = file;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Sorted sequence of rows taking part in a merge, positioned on its current row
+     */
+    private abstract static class Source implements Closeable {
+        public final int order; // position among the merged sources, to keep the sort stable
+        public String[] current;
+
+        protected Source(int order) {
+            this.order = order;
+        }
+
+        /**
+         * Function to move to the next row, current is null at the end
+         */
+        public abstract void advance() throws IOException;
+
+        @Override
+        public void close() throws IOException {}
+    }
+
+    private static class MemorySource extends Source {
+        private final List<String[]> rows;
+        private int next = 0;
+
+        public MemorySource(int order, List<String[]> rows) {
+            super(order);
+            this.rows = rows;
+        }
+
+        @Override
+        public void advance() {
+            current = next < rows.size() ? rows.get(next++) : null;
+        }
+    }
+
+    private static class FileSource extends Source {
+        private final DataInputStream in;
+        private final int fields;
+        private long remaining;
+
+        public FileSource(int order, Run run, int fields) throws IOException {
+            super(order);
+            this.in = SpillFile.reader(run.file);
+            this.fields = fields;
+            this.remaining = run.rows;
+        }
+
+        @Override
+        public void advance() throws IOException {
+            if(remaining == 0) {
+                current = null;
+                return;
+            }
+            remaining--;
+            current = SpillFile.readRow(in, fields);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private final Comparator<String[]> comparator;
+    private final int fields;
+    private ArrayList<String[]> buffer = new ArrayList<>();
+    private long bufferBytes = 0;
+    private final ArrayList<Run> runs = new ArrayList<>();
+    private int spilled = 0;
+
+    private boolean finished = false;
+    private ArrayList<Source> sources = null;
+    private PriorityQueue<Source> heap = null;
+
+    /**
+     * @param comparator the order of the rows
+     * @param fields the number of fields of the rows
+     */
+    public ExternalSorter(Comparator<String[]> comparator, int fields) {
+        this.comparator = comparator;
+        this.fields = fields;
+    }
+
+    /**
+     * @return the memory budget of each sort in bytes
+     */
+    public static long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Function to set the memory budget of the sorts started from now on
+     * @param bytes the budget in bytes
+     */
+    public static void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+    }
+
+    /**
+     * @return the estimated heap size of a row in bytes
+     */
+    public static long estimatedBytes(String[] row) {
+        long bytes = 20 + 4L * row.length;
+        for(String value : row) {
+            bytes += 40 + value.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Function to add a row, spilling the rows in memory when they exceed the budget
+     * @param row the row
+     * @throws IOException if a run cannot be written
+     */
+    public void add(String[] row) throws IOException {
+        if(finished) throw new IllegalStateException("sorter already finished");
+
+        buffer.add(row);
+        bufferBytes += estimatedBytes(row);
+        if(bufferBytes > memoryBudget) spill();
+    }
+
+    /**
+     * Function to sort the rows in memory and write them to a new run
+     */
+    private void spill() throws IOException {
+        buffer.sort(comparator);
+        runs.add(write(new MemorySource(0, buffer), buffer.size()));
+
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+    }
+
+    /**
+     * Function to write the rows of a source to a new run file
+     * @param source the source, not positioned yet
+     * @param rows the number of rows of the source
+     * @return the run
+     */
+    private Run write(Source source, long rows) throws IOException {
+        File file = SpillFile.create("sort");
+        spilled++;
+
+        try(DataOutputStream out = SpillFile.writer(file)) {
+            for(source.advance(); source.current != null; source.advance()) {
+                SpillFile.writeRow(out, source.current);
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        Metrics.bytesWritten(file.length());
+
+        return new Run(file, rows);
+    }
+
+    /**
+     * Function to end the input and prepare the merge of the runs
+     * @throws IOException if the runs cannot be merged or opened
+     */
+    public void finish() throws IOException {
+        if(finished) return;
+        finished = true;
+
+        buffer.sort(comparator);
+
+        // too many runs: the oldest ones are merged into a single run, until a merge can read all of them
+        while(runs.size() + 1 > MERGE_FAN_IN) {
+            List<Run> merged = runs.subList(0, MERGE_FAN_IN);
+            long rows = 0;
+            for(Run run : merged) rows += run.rows;
+
+            Run run = write(new MergeSource(open(merged, false)), rows);
+            for(Run old : merged) old.file.delete();
+            merged.clear();
+            runs.add(0, run);
+        }
+
+        sources = open(runs, true);
+        heap = newHeap(sources);
+    }
+
+    /**
+     * Function to open the sources of a merge
+     * @param merged the runs to merge, oldest first
+     * @param memory true to add the rows still in memory as the last source
+     */
+    private ArrayList<Source> open(List<Run> merged, boolean memory) throws IOException {
+        ArrayList<Source> opened = new ArrayList<>();
+        try {
+            for(Run run : merged) {
+                opened.add(new FileSource(opened.size(), run, fields));
+            }
+            if(memory) opened.add(new MemorySource(opened.size(), buffer));
+        } catch (IOException e) {
+            for(Source source : opened) source.close();
+            throw e;
+        }
+        return opened;
+    }
+
+    private PriorityQueue<Source> newHeap(List<Source> merged) throws IOException {
+        PriorityQueue<Source> queue = new PriorityQueue<>(Math.max(1, merged.size()), (a, b) -> {
+            int c = comparator.compare(a.current, b.current);
+            return c != 0 ? c : Integer.compare(a.order, b.order);
+        });
+
+        for(Source source : merged) {
+            source.advance();
+            if(source.current != null) queue.add(source);
+        }
+        return queue;
+    }
+
+    /**
+     * Merge of some sources, used to write the merged run of an intermediate pass
+     */
+    private class MergeSource extends Source {
+        private final List<Source> merged;
+        private PriorityQueue<Source> queue = null;
+
+        public MergeSource(List<Source> merged) {
+            super(0);
+            this.merged = merged;
+        }
+
+        @Override
+        public void advance() throws IOException {
+            if(queue == null) queue = newHeap(merged);
+            current = poll(queue);
+            if(current == null) {
+                for(Source source : merged) source.close();
+            }
+        }
+    }
+
+    private static String[] poll(PriorityQueue<Source> queue) throws IOException {
+        Source source = queue.poll();
+        if(source == null) return null;
+
+        String[] row = source.current;
+        source.advance();
+        if(source.current != null) queue.add(source);
+        return row;
+    }
+
+    /**
+     * Function to get the next row in sorted order
+     * @return the row, or null when all the rows have been read
+     * @throws IOException if a run cannot be read
+     */
+    public String[] next() throws IOException {
+        if(!finished) throw new IllegalStateException("sorter not finished");
+        return poll(heap);
+    }
+
+    /**
+     * @return the number of runs written to disk, 0 if the rows fit in memory
+     */
+    public int getSpilledRuns() {
+        return spilled;
+    }
+
+    /**
+     * Function to release the rows in memory and delete the runs
+     */
+    @Override
+    public void close() {
+        if(sources != null) {
+            for(Source source : sources) {
+                try {
+                    source.close();
+                } catch (IOException ignored) {}
+            }
+        }
+        for(Run run : runs) run.file.delete();
+
+        runs.clear();
+        buffer = new ArrayList<>();
+        heap = null;
+    }
+}
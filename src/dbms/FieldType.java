@@ -0,0 +1,104 @@
+package dbms;
+
+import java.util.Arrays;
+
+/**
+ * Declared type of a field. Rows always carry their values as strings, but the values of the numeric
+ * types are checked and put in canonical form when inserted, compared as numbers by the conditions,
+ * and kept in primitive arrays by the column layout.
+ * The type is declared in the header of the relation file as name:TYPE, fields without a type are VARCHAR.
+ */
+public enum FieldType {
+    INT, LONG, DOUBLE, VARCHAR;
+
+    /**
+     * @return true for INT, LONG and DOUBLE
+     */
+    public boolean isNumeric() {
+        return this != VARCHAR;
+    }
+
+    /**
+     * Function to check a value and put it in canonical form, so that equal values have the same text
+     * @param value the value
+     * @return the canonical value (VARCHAR values are returned as they are)
+     * @throws Exception if the value is not valid for the type
+     */
+    public String normalize(String value) throws Exception {
+        try {
+            return switch(this) {
+                case INT -> Integer.toString(Integer.parseInt(value.trim()));
+                case LONG -> Long.toString(Long.parseLong(value.trim()));
+                case DOUBLE -> Double.toString(Double.parseDouble(value.trim()));
+                case VARCHAR -> value;
+            };
+        } catch (NumberFormatException ex) {
+            throw new Exception("invalid " + this + " value '" + value + "'");
+        }
+    }
+
+    /**
+     * Function to compare two canonical values of this type, parsing numbers to primitives (no boxing)
+     * @return negative, zero or positive as the first value is less than, equal to or greater than the second
+     */
+    public int compare(String a, String b) {
+        return switch(this) {
+            case INT, LONG -> Long.compare(Long.parseLong(a), Long.parseLong(b));
+            case DOUBLE -> Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+            case VARCHAR -> a.compareTo(b);
+        };
+    }
+
+    /**
+     * Function to get the type two fields are compared as
+     * @return the type itself if equal, DOUBLE or LONG for two different numeric types, VARCHAR otherwise
+     */
+    public static FieldType common(FieldType a, FieldType b) {
+        if(a == b) return a;
+        if(!a.isNumeric() || !b.isNumeric()) return VARCHAR;
+        return a == DOUBLE || b == DOUBLE ? DOUBLE : LONG;
+    }
+
+    /**
+     * @param fields the number of fields
+     * @return an array of VARCHAR types, the type of the fields without a declared one
+     */
+    public static FieldType[] varchar(int fields) {
+        FieldType[] types = new FieldType[fields];
+        Arrays.fill(types, VARCHAR);
+        return types;
+    }
+
+    /**
+     * Function to format a field for the header of a relation file
+     * @return name:TYPE, or just the name for VARCHAR fields
+     */
+    public static String header(String name, FieldType type) {
+        return type == VARCHAR ? name : name + ":" + type;
+    }
+
+    /**
+     * @param header a field in the header of a relation file
+     * @return the name of the field
+     */
+    public static String nameOf(String header) {
+        int colon = header.lastIndexOf(':');
+        return colon == -1 ? header : header.substring(0, colon);
+    }
+
+    /**
+     * @param header a field in the header of a relation file
+     * @return the declared type of the field, VARCHAR if none
+     * @throws Exception if the type is not known
+     */
+    public static FieldType typeOf(String header) throws Exception {
+        int colon = header.lastIndexOf(':');
+        if(colon == -1) return VARCHAR;
+
+        String type = header.substring(colon + 1).trim().toUpperCase();
+        for(FieldType t : values()) {
+            if(t.name().equals(type)) return t;
+        }
+        throw new Exception("schema: unknown type " + type + " of field " + header.substring(0, colon));
+    }
+}
@@ -0,0 +1,31 @@
+package dbms;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index for equality lookups, backed by a hash table
+ */
+public class HashIndex extends Index {
+    private final ConcurrentHashMap<String, PositionList> entries = new ConcurrentHashMap<>();
+
+    public HashIndex(String name, String field) {
+        super(name, field);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.HASH;
+    }
+
+    @Override
+    public void add(String value, int row) {
+        entries.computeIfAbsent(value, k -> new PositionList()).append(row);
+    }
+
+    @Override
+    public List<Integer> lookup(String value, int limit) {
+        PositionList rows = entries.get(value);
+        return rows == null ? List.of() : rows.prefix(limit);
+    }
+}
@@ -0,0 +1,72 @@
+package dbms;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct values of a column in a fixed amount of memory
+ * (2^PRECISION one-byte registers, a standard error of about 1.6%).
+ * Each value is hashed to 64 bits: the first PRECISION bits choose a register, which keeps the highest
+ * position of the first one bit seen in the remaining bits. Sketches of parts of a column can be merged.
+ */
+public class HyperLogLog {
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    /**
+     * Function to add a value to the sketch
+     * @param value the value
+     */
+    public void add(String value) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if(rank > registers[register]) registers[register] = (byte) rank;
+    }
+
+    /**
+     * Function to add the values of another sketch to this one
+     * @param other the other sketch
+     */
+    public void merge(HyperLogLog other) {
+        for(int i = 0; i < REGISTERS; i++) {
+            if(other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct values added
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for(byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if(register == 0) zeros++;
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+
+        // few values: linear counting of the empty registers is more precise
+        if(estimate <= 2.5 * REGISTERS && zeros > 0) estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return a 64 bit hash of the characters of a value (FNV-1a followed by the finalizer of MurmurHash3)
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
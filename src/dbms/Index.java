@@ -0,0 +1,84 @@
+package dbms;
+
+import java.util.List;
+
+/**
+ * Secondary index on a field of a relation, mapping each value to the positions of the rows holding it.
+ * Indexes are declared with CREATE INDEX, their definitions are saved in data/relation.idx
+ * and they are rebuilt when the relation is loaded and kept up to date on insert.
+ */
+public abstract class Index {
+    public enum Type {
+        HASH, ORDERED
+    }
+
+    private final String name;
+    private final String field;
+
+    protected Index(String name, String field) {
+        this.name = name;
+        this.field = field;
+    }
+
+    /**
+     * Function to create an empty index of the given type
+     * @param name the name of the index
+     * @param field the indexed field
+     * @param fieldType the type of the indexed field, the order of the values of an ordered index
+     * @param type the type of the index
+     * @return the new index
+     */
+    public static Index create(String name, String field, FieldType fieldType, Type type) {
+        if(type == Type.ORDERED) return new OrderedIndex(name, field, fieldType);
+        return new HashIndex(name, field);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public abstract Type getType();
+
+    /**
+     * Function to add a row to the index
+     * @param value the value of the indexed field
+     * @param row the position of the row in the relation
+     */
+    public abstract void add(String value, int row);
+
+    /**
+     * Function to find the rows with the given value
+     * Rows can be added while other threads look up the index, each lookup only sees the rows of its snapshot
+     * @param value the value to look for
+     * @param limit the number of rows of the relation (or of the snapshot) being read
+     * @return the positions lower than limit of the rows, in insertion order (empty if none)
+     */
+    public abstract List<Integer> lookup(String value, int limit);
+
+    /**
+     * @param operator the operator of a condition comparing the indexed field with a value
+     * @return true if the index can find the rows satisfying the condition
+     */
+    public boolean supports(Condition.Operator operator) {
+        return operator == Condition.Operator.EQUAL;
+    }
+
+    /**
+     * Function to find the rows satisfying a condition comparing the indexed field with a value
+     * @param condition the resolved condition, with an operator supported by the index
+     * @param limit the number of rows of the relation (or of the snapshot) being read
+     * @return the positions lower than limit of the rows, in increasing order
+     */
+    public List<Integer> lookup(Predicate condition, int limit) {
+        return lookup(condition.getValue(), limit);
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + getType().toString().toLowerCase() + " on " + field + ")";
+    }
+}
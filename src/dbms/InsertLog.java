@@ -0,0 +1,252 @@
+package dbms;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only log of the rows inserted in each relation (data/name.log, one CSV line per row).
+ * Inserts only append to the log instead of rewriting the whole CSV file. Concurrent appends
+ * to the same relation are grouped: the first thread writes every pending row and forces
+ * them to the disk with a single fsync for the whole batch (group commit).
+ * When a log grows over dbms.log.compactThreshold bytes it is merged into the CSV file
+ * by a background thread.
+ */
+public class InsertLog {
+    private static final long COMPACT_THRESHOLD = Long.getLong("dbms.log.compactThreshold", 4L * 1024 * 1024);
+
+    private static class Pending {
+        public final String line;
+        public boolean done = false;
+        public IOException error = null;
+
+        public Pending(String line) {
+            this.line = line;
+        }
+    }
+
+    private static class Log {
+        public final String name;
+        public final ArrayList<Pending> pending = new ArrayList<>();
+        public FileChannel channel = null;
+        public boolean busy = false; // a batch or a compaction is in progress
+        public boolean compactionQueued = false;
+
+        public Log(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final HashMap<String, Log> logs = new HashMap<>();
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "insert-log-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private InsertLog() {}
+
+    private static synchronized Log getLog(String name) {
+        return logs.computeIfAbsent(name, Log::new);
+    }
+
+    /**
+     * Function to append a row to the log of a relation
+     * Returns only when the row has been forced to the disk
+     * @param name the name of the relation
+     * @param row the row to append
+     * @throws IOException if the row cannot be written
+     */
+    public static void append(String name, String[] row) throws IOException {
+        append(name, List.<String[]>of(row));
+    }
+
+    /**
+     * Function to append a batch of rows to the log of a relation with a single write
+     * Returns only when the rows have been forced to the disk
+     * @param name the name of the relation
+     * @param rows the rows to append
+     * @throws IOException if the rows cannot be written
+     */
+    public static void append(String name, List<String[]> rows) throws IOException {
+        if(rows.isEmpty()) return;
+
+        StringBuilder lines = new StringBuilder();
+        for(String[] row : rows) {
+            lines.append(Relation.toCsvLine(row));
+        }
+
+        Log log = getLog(name);
+        Pending mine = new Pending(lines.toString());
+
+        ArrayList<Pending> batch;
+        synchronized(log) {
+            log.pending.add(mine);
+
+            // wait until another thread has written our row, or until we can write the batch ourselves
+            while(log.busy && !mine.done) waitOn(log);
+            if(mine.done) {
+                if(mine.error != null) throw mine.error;
+                return;
+            }
+
+            log.busy = true;
+            batch = new ArrayList<>(log.pending);
+            log.pending.clear();
+        }
+
+        IOException error = null;
+        long size = 0;
+        try {
+            size = writeBatch(log, batch);
+        } catch(IOException ex) {
+            error = ex;
+        }
+
+        synchronized(log) {
+            for(Pending p : batch) {
+                p.done = true;
+                p.error = error;
+            }
+            log.busy = false;
+            log.notifyAll();
+
+            if(error == null && size > COMPACT_THRESHOLD && !log.compactionQueued) {
+                log.compactionQueued = true;
+                compactor.submit(() -> {
+                    try {
+                        compact(log, null);
+                    } catch(IOException ex) {
+                        System.err.println("compaction of " + log.name + " failed: " + ex.getMessage());
+                    }
+                });
+            }
+        }
+
+        if(error != null) throw error;
+    }
+
+    /**
+     * Function to write a batch of rows to the log with a single fsync
+     * @return the size of the log after the write
+     */
+    private static long writeBatch(Log log, ArrayList<Pending> batch) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for(Pending p : batch) {
+            sb.append(p.line);
+        }
+
+        if(log.channel == null) {
+            Path file = Relation.getFile(log.name, ".log").toPath();
+            truncateIncomplete(file);
+            log.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        while(buffer.hasRemaining()) {
+            log.channel.write(buffer);
+        }
+        log.channel.force(false);
+        Metrics.bytesWritten(buffer.limit());
+
+        return log.channel.size();
+    }
+
+    /**
+     * Function to cut an incomplete row at the end of a log (an append interrupted by a crash, never acknowledged)
+     * before appending to it, otherwise the next row would continue that line and be lost on replay
+     * @param file the log
+     */
+    private static void truncateIncomplete(Path file) throws IOException {
+        if(!Files.exists(file)) return;
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if(size == 0) return;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer, buffer.position()) < 0) break;
+            }
+            Metrics.bytesRead(size);
+
+            int complete = CsvReader.completeLength(buffer.array());
+            if(complete == size) return;
+
+            channel.truncate(complete);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Function to merge the log of a relation into its file and truncate the log
+     * Appends are blocked while the compaction runs. If the process dies after the file
+     * has been replaced but before the truncation, the rows are ignored on replay as duplicates.
+     * @param name the name of the relation
+     * @throws IOException if the files cannot be written
+     */
+    public static void compact(String name) throws IOException {
+        compact(getLog(name), null);
+    }
+
+    /**
+     * Function to compact the log of a relation rewriting its file in another format
+     * @param name the name of the relation
+     * @param format the new format of the relation file
+     * @throws IOException if the files cannot be written
+     */
+    public static void compact(String name, Relation.Format format) throws IOException {
+        compact(getLog(name), format);
+    }
+
+    private static void compact(Log log, Relation.Format format) throws IOException {
+        synchronized(log) {
+            log.compactionQueued = false;
+            while(log.busy) waitOn(log);
+            log.busy = true;
+        }
+
+        try {
+            Relation relation = Relation.load(log.name);
+            if(relation != null) {
+                Relation.Format old = relation.getFormat();
+                if(format != null) relation.setFormat(format);
+
+                relation.saveDurably();
+                if(relation.getFormat() != old) Relation.getFile(log.name, old.getExtension()).delete();
+
+                if(log.channel != null) {
+                    log.channel.truncate(0);
+                    log.channel.force(true);
+                } else {
+                    Relation.getFile(log.name, ".log").delete();
+                }
+                Catalog.touch(log.name);
+            }
+        } finally {
+            synchronized(log) {
+                log.busy = false;
+                log.notifyAll();
+            }
+        }
+    }
+
+    private static void waitOn(Object monitor) throws InterruptedIOException {
+        try {
+            monitor.wait();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the insert log");
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package dbms;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiled condition of a join, of type field1 [=,<>] field2 AND field3 [=,<>] field4 ...
+ * The fields on the left of each comparison belong to the left relation, the ones on the right to the other one.
+ * Equalities are the keys of the join, the other comparisons are residual conditions checked on each candidate pair.
+ */
+public class JoinCondition {
+    private int[] leftKeys;
+    private int[] rightKeys;
+    private int[][] residual;
+    private Condition.Operator[] residualOps;
+    private int[][] all;
+    private Condition.Operator[] allOps;
+
+    private JoinCondition() {}
+
+    /**
+     * Function to parse the condition of a join
+     * @param leftFields the fields of the left relation
+     * @param rightFields the fields of the right relation
+     * @param condition expressed as a string of type field1 [=,<>] field2 AND field3 [=,<>] field4 ...
+     * @return the compiled condition, or null if a field does not exist
+     * @throws Exception if the condition is not valid
+     */
+    public static JoinCondition parse(String[] leftFields, String[] rightFields, String condition) throws Exception {
+        // getting multiple conditions
+        String[] conditionsStr = condition.replace(" ", "").split("AND");
+        Condition[] conditions = new Condition[conditionsStr.length];
+        for(int i = 0; i < conditionsStr.length; i++) {
+            conditions[i] = Condition.evaluate(conditionsStr[i]);
+            if(conditions[i] == null) throw new Exception("join: invalid condition syntax");
+            if(conditions[i].valueIsField()) throw new Exception("join: in join conditions you cannot compare fields with values");
+            if(conditions[i].getOperator() != Condition.Operator.EQUAL && conditions[i].getOperator() != Condition.Operator.NOT_EQUAL) {
+                throw new Exception("join: only = and <> can compare the fields of a join, other comparisons go in WHERE");
+            }
+        }
+
+        JoinCondition jc = new JoinCondition();
+
+        // getting conditions indexes
+        jc.all = new int[conditions.length][2];
+        jc.allOps = new Condition.Operator[conditions.length];
+        for(int i = 0; i < conditions.length; i++) {
+            jc.all[i][0] = Arrays.asList(leftFields).indexOf(conditions[i].getField());
+            jc.all[i][1] = Arrays.asList(rightFields).indexOf(conditions[i].getValue());
+            jc.allOps[i] = conditions[i].getOperator();
+            if(jc.all[i][0] == -1 || jc.all[i][1] == -1) return null;
+        }
+
+        // splitting equality conditions (hash keys) from the residual ones
+        int eqCount = 0;
+        for(Condition c : conditions) {
+            if(c.getOperator() == Condition.Operator.EQUAL) eqCount++;
+        }
+
+        jc.leftKeys = new int[eqCount];
+        jc.rightKeys = new int[eqCount];
+        jc.residual = new int[conditions.length - eqCount][];
+        jc.residualOps = new Condition.Operator[conditions.length - eqCount];
+        for(int i = 0, k = 0, h = 0; i < conditions.length; i++) {
+            if(conditions[i].getOperator() == Condition.Operator.EQUAL) {
+                jc.leftKeys[k] = jc.all[i][0];
+                jc.rightKeys[k] = jc.all[i][1];
+                k++;
+            } else {
+                jc.residual[h] = jc.all[i];
+                jc.residualOps[h] = conditions[i].getOperator();
+                h++;
+            }
+        }
+
+        return jc;
+    }
+
+    /**
+     * Function to get the same condition with the two relations exchanged
+     * @return the condition with the fields of the right relation on the left of each comparison
+     */
+    public JoinCondition swap() {
+        JoinCondition jc = new JoinCondition();
+        jc.leftKeys = rightKeys;
+        jc.rightKeys = leftKeys;
+        jc.residual = swapPairs(residual);
+        jc.residualOps = residualOps;
+        jc.all = swapPairs(all);
+        jc.allOps = allOps;
+        return jc;
+    }
+
+    private static int[][] swapPairs(int[][] pairs) {
+        int[][] swapped = new int[pairs.length][];
+        for(int i = 0; i < pairs.length; i++) swapped[i] = new int[] {pairs[i][1], pairs[i][0]};
+        return swapped;
+    }
+
+    /**
+     * @return the indexes of the equality fields in the left relation
+     */
+    public int[] getLeftKeys() {
+        return leftKeys;
+    }
+
+    /**
+     * @return the indexes of the equality fields in the right relation
+     */
+    public int[] getRightKeys() {
+        return rightKeys;
+    }
+
+    /**
+     * @return true if there is at least one equality to hash on
+     */
+    public boolean hasEqualities() {
+        return leftKeys.length > 0;
+    }
+
+    /**
+     * Function to check the residual (non-equality) conditions on a pair of rows
+     * @return true if every residual condition is satisfied, false otherwise
+     */
+    public boolean matchesResidual(String[] data1, String[] data2) {
+        return matches(data1, data2, residual, residualOps);
+    }
+
+    /**
+     * Function to check every condition on a pair of rows
+     * @return true if every condition is satisfied, false otherwise
+     */
+    public boolean matches(String[] data1, String[] data2) {
+        return matches(data1, data2, all, allOps);
+    }
+
+    private static boolean matches(String[] data1, String[] data2, int[][] conditions, Condition.Operator[] ops) {
+        for(int i = 0; i < conditions.length; i++) {
+            boolean equal = data1[conditions[i][0]].equals(data2[conditions[i][1]]);
+            if(ops[i] == Condition.Operator.EQUAL && !equal) return false;
+            if(ops[i] == Condition.Operator.NOT_EQUAL && equal) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the hash key of a row of the left relation
+     */
+    public List<String> leftKey(String[] row) {
+        return hashKey(row, leftKeys);
+    }
+
+    /**
+     * @return the hash key of a row of the right relation
+     */
+    public List<String> rightKey(String[] row) {
+        return hashKey(row, rightKeys);
+    }
+
+    /**
+     * Function to build the hash key of a row from the given fields
+     * @param row the row
+     * @param indexes the indexes of the key fields
+     * @return the key, comparable by value
+     */
+    private static List<String> hashKey(String[] row, int[] indexes) {
+        String[] key = new String[indexes.length];
+        for(int i = 0; i < indexes.length; i++) {
+            key[i] = row[indexes[i]];
+        }
+        return Arrays.asList(key);
+    }
+}
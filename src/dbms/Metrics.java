@@ -0,0 +1,119 @@
+package dbms;
+
+import dbms.commands.StatementCache;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters of the database, exposed through JMX as dbms:type=Metrics
+ * (jconsole, VisualVM or any other JMX client can read them while the process runs).
+ * The counters are updated once per statement, per file or per batch of rows, never once per row,
+ * and LongAdder keeps concurrent updates from contending, so they are always enabled.
+ */
+public class Metrics implements MetricsMBean {
+    private static final LongAdder statements = new LongAdder();
+    private static final LongAdder failedStatements = new LongAdder();
+    private static final LongAdder rowsScanned = new LongAdder();
+    private static final LongAdder bytesRead = new LongAdder();
+    private static final LongAdder bytesWritten = new LongAdder();
+
+    private static boolean registered = false;
+
+    private Metrics() {}
+
+    /**
+     * Function to register the counters in the platform MBean server (once)
+     */
+    public static synchronized void register() {
+        if(registered) return;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), new ObjectName("dbms:type=Metrics"));
+            registered = true;
+        } catch (Exception ex) {
+            System.err.println("metrics: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Function to count an executed statement
+     * @param failed true if the statement ended with an error
+     */
+    public static void statement(boolean failed) {
+        statements.increment();
+        if(failed) failedStatements.increment();
+    }
+
+    /**
+     * @param rows the number of rows read from the stored relations by a scan
+     */
+    public static void rowsScanned(long rows) {
+        if(rows > 0) rowsScanned.add(rows);
+    }
+
+    /**
+     * @param bytes the number of bytes read from a file of the data folder
+     */
+    public static void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * @param bytes the number of bytes written to a file of the data folder
+     */
+    public static void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    @Override
+    public long getFailedStatements() {
+        return failedStatements.sum();
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getRelationCacheHits() {
+        return Catalog.getHits();
+    }
+
+    @Override
+    public long getRelationCacheMisses() {
+        return Catalog.getMisses();
+    }
+
+    @Override
+    public long getRelationCacheBytes() {
+        return Catalog.getUsedBytes();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return StatementCache.getHits();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return StatementCache.getMisses();
+    }
+}
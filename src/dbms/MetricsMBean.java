@@ -0,0 +1,26 @@
+package dbms;
+
+/**
+ * Management interface of the process-wide counters, see Metrics
+ */
+public interface MetricsMBean {
+    long getStatements();
+
+    long getFailedStatements();
+
+    long getRowsScanned();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getRelationCacheHits();
+
+    long getRelationCacheMisses();
+
+    long getRelationCacheBytes();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+}
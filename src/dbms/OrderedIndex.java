@@ -0,0 +1,94 @@
+package dbms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index keeping the values sorted in the order of the type of the field, backed by a balanced search tree.
+ * Besides equality lookups it answers the selections on a range (<, <=, >, >=, BETWEEN).
+ */
+public class OrderedIndex extends Index {
+    private final ConcurrentSkipListMap<String, PositionList> entries;
+
+    public OrderedIndex(String name, String field, FieldType type) {
+        super(name, field);
+        // the values are in the canonical form of the type, so equal values are equal strings
+        entries = new ConcurrentSkipListMap<>(type::compare);
+    }
+
+    @Override
+    public Type getType() {
+        return Type.ORDERED;
+    }
+
+    @Override
+    public void add(String value, int row) {
+        entries.computeIfAbsent(value, k -> new PositionList()).append(row);
+    }
+
+    @Override
+    public List<Integer> lookup(String value, int limit) {
+        // index joins look up values of other fields: a value not of the type of the field is never present,
+        // nor is one equal in the order of the type but written differently ("007" for 7), as for a hash index
+        Map.Entry<String, PositionList> entry;
+        try {
+            entry = entries.ceilingEntry(value);
+        } catch (NumberFormatException ex) {
+            return List.of();
+        }
+        return entry == null || !entry.getKey().equals(value) ? List.of() : entry.getValue().prefix(limit);
+    }
+
+    @Override
+    public boolean supports(Condition.Operator operator) {
+        return operator != Condition.Operator.NOT_EQUAL;
+    }
+
+    @Override
+    public List<Integer> lookup(Predicate condition, int limit) {
+        String value = condition.getValue();
+        List<Integer> rows = switch(condition.getOperator()) {
+            case EQUAL -> lookup(value, limit);
+            case LESS -> range(null, false, value, false, limit);
+            case LESS_EQUAL -> range(null, false, value, true, limit);
+            case GREATER -> range(value, false, null, false, limit);
+            case GREATER_EQUAL -> range(value, true, null, false, limit);
+            case BETWEEN -> range(value, true, condition.getUpper(), true, limit);
+            case NOT_EQUAL -> throw new IllegalArgumentException("ordered index: <> is not a range");
+        };
+        if(condition.getOperator() == Condition.Operator.EQUAL) return rows;
+
+        // the rows in the order of the relation, as a scan would produce them
+        Collections.sort(rows);
+        return rows;
+    }
+
+    /**
+     * Function to find the rows with a value in the given range
+     * @param from the lower bound, or null for no bound
+     * @param fromInclusive true if the lower bound is included
+     * @param to the upper bound, or null for no bound
+     * @param toInclusive true if the upper bound is included
+     * @param limit the number of rows of the relation (or of the snapshot) being read
+     * @return the positions lower than limit of the rows, in order of value
+     */
+    public List<Integer> range(String from, boolean fromInclusive, String to, boolean toInclusive, int limit) {
+        ArrayList<Integer> rows = new ArrayList<>();
+
+        if(from != null && to != null) {
+            if(entries.comparator().compare(from, to) > 0) return rows;
+            for(PositionList r : entries.subMap(from, fromInclusive, to, toInclusive).values()) rows.addAll(r.prefix(limit));
+        } else if(from != null) {
+            for(PositionList r : entries.tailMap(from, fromInclusive).values()) rows.addAll(r.prefix(limit));
+        } else if(to != null) {
+            for(PositionList r : entries.headMap(to, toInclusive).values()) rows.addAll(r.prefix(limit));
+        } else {
+            for(PositionList r : entries.values()) rows.addAll(r.prefix(limit));
+        }
+
+        return rows;
+    }
+}
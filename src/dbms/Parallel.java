@@ -0,0 +1,295 @@
+package dbms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Parallel execution of scans over the rows of a relation on a shared ForkJoinPool.
+ * The rows are split in chunks processed by different threads and the results are merged in row order.
+ * Ranges smaller than the threshold (dbms.parallel.threshold, in rows) run on the calling thread,
+ * and so does everything when the parallelism (dbms.parallelism) is 1.
+ */
+public class Parallel {
+    private static final int MIN_CHUNK = 4096;
+    private static final int MIN_BATCH = 1 << 16;
+
+    private static int parallelism = Integer.getInteger("dbms.parallelism", Runtime.getRuntime().availableProcessors());
+    private static int threshold = Integer.getInteger("dbms.parallel.threshold", 50_000);
+    private static ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+
+    private Parallel() {}
+
+    public static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Function to change the number of threads used by the parallel scans
+     * The scans already running (of other clients too) finish on the old pool: it is not shut down,
+     * its threads end by themselves once idle and it is then collected
+     * @param threads the number of threads, 1 to run everything serially
+     */
+    public static synchronized void setParallelism(int threads) {
+        if(threads < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        if(threads == parallelism) return;
+        parallelism = threads;
+        pool = new ForkJoinPool(threads);
+    }
+
+    public static synchronized int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Function to change the minimum number of rows for a scan to run in parallel
+     * @param rows the number of rows
+     */
+    public static synchronized void setThreshold(int rows) {
+        threshold = rows;
+    }
+
+    /**
+     * @param rows the number of rows to process
+     * @return true if a scan of that many rows runs in parallel
+     */
+    public static synchronized boolean isParallel(int rows) {
+        return parallelism > 1 && rows >= threshold;
+    }
+
+    /**
+     * @return the number of rows a streaming operator should process at a time,
+     * large enough for a batch to be split among the threads
+     */
+    public static synchronized int getBatchSize() {
+        return Math.max(MIN_BATCH, threshold);
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Function to find the positions in a range that satisfy a condition
+     * Each thread tests its chunk a batch of rows at a time
+     * @param from the first position (included)
+     * @param to the last position (excluded)
+     * @param test the compiled condition, called concurrently from several threads
+     * @return the positions satisfying the condition, in increasing order
+     */
+    public static int[] filter(int from, int to, BatchFilter test) {
+        if(!isParallel(to - from)) return test.select(from, to);
+        return getPool().invoke(new FilterTask(from, to, chunkSize(to - from), test));
+    }
+
+    /**
+     * Function to compute a row for each position of a range
+     * @param from the first position (included)
+     * @param to the last position (excluded)
+     * @param function the function computing the row, called concurrently from several threads
+     * @return the rows, in order of position
+     */
+    public static String[][] map(int from, int to, IntFunction<String[]> function) {
+        String[][] rows = new String[to - from][];
+        if(!isParallel(to - from)) {
+            for(int i = from; i < to; i++) rows[i - from] = function.apply(i);
+            return rows;
+        }
+
+        getPool().invoke(new MapTask(from, to, from, chunkSize(to - from), function, rows));
+        return rows;
+    }
+
+    /**
+     * Function to call an action for each position of a range
+     * @param from the first position (included)
+     * @param to the last position (excluded)
+     * @param action the action, called concurrently from several threads
+     */
+    public static void forEach(int from, int to, IntConsumer action) {
+        if(!isParallel(to - from)) {
+            for(int i = from; i < to; i++) action.accept(i);
+            return;
+        }
+
+        getPool().invoke(new ForEachTask(from, to, chunkSize(to - from), action));
+    }
+
+    /**
+     * Function to run a number of independent tasks, each one on its own thread when possible
+     * @param tasks the number of tasks
+     * @param task the task, called once for each number from 0 to tasks - 1
+     */
+    public static void run(int tasks, IntConsumer task) {
+        if(tasks == 1 || getParallelism() == 1) {
+            for(int i = 0; i < tasks; i++) task.accept(i);
+            return;
+        }
+
+        ArrayList<ForkJoinTask<?>> forks = new ArrayList<>();
+        for(int i = 0; i < tasks; i++) {
+            int n = i;
+            forks.add(ForkJoinTask.adapt(() -> task.accept(n)));
+        }
+        getPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(forks);
+            }
+        });
+    }
+
+    /**
+     * Function to produce any number of rows for each position of a range
+     * @param from the first position (included)
+     * @param to the last position (excluded)
+     * @param cost the work for each position, in rows (for example the size of the inner relation of a loop)
+     * @param producer the function adding the rows of a position to a list, called concurrently from several threads
+     * @return the rows, in order of position
+     */
+    public static List<String[]> flatMap(int from, int to, long cost, ObjIntConsumer<List<String[]>> producer) {
+        long work = (long) (to - from) * Math.max(1, cost);
+        if(!isParallel((int) Math.min(Integer.MAX_VALUE, work))) {
+            ArrayList<String[]> rows = new ArrayList<>();
+            for(int i = from; i < to; i++) producer.accept(rows, i);
+            return rows;
+        }
+
+        // chunks of at least MIN_CHUNK rows of work, about four for each thread
+        int chunk = (int) Math.max((MIN_CHUNK + cost - 1) / Math.max(1, cost), (to - from) / (getParallelism() * 4L));
+        return getPool().invoke(new FlatMapTask(from, to, Math.max(1, chunk), producer));
+    }
+
+    private static int chunkSize(int rows) {
+        return Math.max(MIN_CHUNK, rows / (getParallelism() * 4));
+    }
+
+    @SuppressWarnings("serial")
+    private static class FilterTask extends RecursiveTask<int[]> {
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final BatchFilter test;
+
+        public FilterTask(int from, int to, int chunk, BatchFilter test) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.test = test;
+        }
+
+        @Override
+        protected int[] compute() {
+            if(to - from <= chunk) return test.select(from, to);
+
+            int middle = (from + to) >>> 1;
+            FilterTask left = new FilterTask(from, middle, chunk, test);
+            left.fork();
+            int[] right = new FilterTask(middle, to, chunk, test).compute();
+            int[] first = left.join();
+
+            // merging keeping the order of the rows
+            int[] merged = Arrays.copyOf(first, first.length + right.length);
+            System.arraycopy(right, 0, merged, first.length, right.length);
+            return merged;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class ForEachTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final IntConsumer action;
+
+        public ForEachTask(int from, int to, int chunk, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= chunk) {
+                for(int i = from; i < to; i++) action.accept(i);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachTask(from, middle, chunk, action), new ForEachTask(middle, to, chunk, action));
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class FlatMapTask extends RecursiveTask<List<String[]>> {
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final ObjIntConsumer<List<String[]>> producer;
+
+        public FlatMapTask(int from, int to, int chunk, ObjIntConsumer<List<String[]>> producer) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.producer = producer;
+        }
+
+        @Override
+        protected List<String[]> compute() {
+            if(to - from <= chunk) {
+                ArrayList<String[]> rows = new ArrayList<>();
+                for(int i = from; i < to; i++) producer.accept(rows, i);
+                return rows;
+            }
+
+            int middle = (from + to) >>> 1;
+            FlatMapTask left = new FlatMapTask(from, middle, chunk, producer);
+            left.fork();
+            List<String[]> right = new FlatMapTask(middle, to, chunk, producer).compute();
+            List<String[]> first = left.join();
+
+            // merging keeping the order of the rows
+            first.addAll(right);
+            return first;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class MapTask extends RecursiveTask<Void> {
+        private final int from;
+        private final int to;
+        private final int base;
+        private final int chunk;
+        private final IntFunction<String[]> function;
+        private final String[][] rows;
+
+        public MapTask(int from, int to, int base, int chunk, IntFunction<String[]> function, String[][] rows) {
+            this.from = from;
+            this.to = to;
+            this.base = base;
+            this.chunk = chunk;
+            this.function = function;
+            this.rows = rows;
+        }
+
+        @Override
+        protected Void compute() {
+            if(to - from <= chunk) {
+                for(int i = from; i < to; i++) rows[i - base] = function.apply(i);
+                return null;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new MapTask(from, middle, base, chunk, function, rows), new MapTask(middle, to, base, chunk, function, rows));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dbms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Hash table of the build side of a join, mapping each key to the positions of the rows holding it.
+ * When the build side is large the keys are split by hash in partitions, one for each group of rows
+ * handled by a thread, and the partitions are built in parallel. Lookups never modify the table,
+ * so the probe side can be split among threads as well.
+ * The positions of a key are kept in increasing order, as a serial build would do.
+ */
+public class PartitionedHashTable {
+    private static final int MAX_PARTITIONS = 256;
+
+    private final HashMap<Object, ArrayList<Integer>>[] partitions;
+    private final int bits;
+
+    /**
+     * @param size the number of rows of the build side
+     * @param keyOf the function computing the key of a row from its position (called concurrently),
+     *              rows with a null key are left out
+     */
+    public PartitionedHashTable(int size, IntFunction<Object> keyOf) {
+        int count = 1;
+        if(Parallel.isParallel(size)) {
+            while(count < Parallel.getParallelism() * 4 && count < MAX_PARTITIONS) count <<= 1;
+        }
+        bits = Integer.numberOfTrailingZeros(count);
+        @SuppressWarnings("unchecked")
+        HashMap<Object, ArrayList<Integer>>[] maps = (HashMap<Object, ArrayList<Integer>>[]) new HashMap<?, ?>[count];
+        partitions = maps;
+
+        if(count == 1) {
+            partitions[0] = new HashMap<>();
+            for(int i = 0; i < size; i++) add(partitions[0], keyOf.apply(i), i);
+            return;
+        }
+
+        // keys and partition of each row, computed in parallel
+        Object[] keys = new Object[size];
+        int[] partition = new int[size];
+        Parallel.forEach(0, size, i -> {
+            keys[i] = keyOf.apply(i);
+            partition[i] = keys[i] == null ? -1 : partitionOf(keys[i]);
+        });
+
+        // rows grouped by partition, keeping their order
+        int[] start = new int[count + 1];
+        for(int p : partition) {
+            if(p != -1) start[p + 1]++;
+        }
+        for(int p = 0; p < count; p++) start[p + 1] += start[p];
+
+        int[] next = start.clone();
+        int[] positions = new int[start[count]];
+        for(int i = 0; i < size; i++) {
+            if(partition[i] != -1) positions[next[partition[i]]++] = i;
+        }
+
+        // one hash table for each partition
+        Parallel.run(count, p -> {
+            HashMap<Object, ArrayList<Integer>> table = new HashMap<>();
+            for(int j = start[p]; j < start[p + 1]; j++) add(table, keys[positions[j]], positions[j]);
+            partitions[p] = table;
+        });
+    }
+
+    private static void add(HashMap<Object, ArrayList<Integer>> table, Object key, int position) {
+        if(key != null) table.computeIfAbsent(key, k -> new ArrayList<>()).add(position);
+    }
+
+    private int partitionOf(Object key) {
+        if(bits == 0) return 0;
+
+        // the high bits of the spread hash, the low ones are used by the HashMap of the partition
+        int h = key.hashCode() * 0x9E3779B9;
+        return h >>> (32 - bits);
+    }
+
+    /**
+     * @param key the key of a row of the probe side
+     * @return the positions of the rows of the build side with that key, or null if none
+     */
+    public List<Integer> lookup(Object key) {
+        if(key == null) return null;
+        return partitions[partitionOf(key)].get(key);
+    }
+
+    /**
+     * @return the number of partitions, 1 if the table was built serially
+     */
+    public int getPartitions() {
+        return partitions.length;
+    }
+}
@@ -0,0 +1,69 @@
+package dbms;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Increasing list of row positions, appended by a single writer and read by any number of threads.
+ * Readers only look at the positions below the size of their snapshot of the relation,
+ * which were written before the snapshot was taken.
+ */
+class PositionList extends AbstractList<Integer> {
+    private volatile int[] positions = new int[2];
+    private volatile int size = 0;
+
+    /**
+     * Function to append a position, greater than the ones already present
+     * @param position the position
+     */
+    public void append(int position) {
+        int[] array = positions;
+        if(size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+            positions = array;
+        }
+
+        array[size] = position;
+        size = size + 1;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return positions[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Function to get the positions of the rows visible in a snapshot
+     * @param limit the number of rows of the snapshot
+     * @return the positions lower than limit
+     */
+    public List<Integer> prefix(int limit) {
+        // the size is read before the array, so the array holds at least that many positions
+        int n = size;
+        int[] array = positions;
+
+        int count = Arrays.binarySearch(array, 0, n, limit);
+        if(count < 0) count = -count - 1;
+
+        int[] visible = array;
+        int length = count;
+        return new AbstractList<>() {
+            @Override
+            public Integer get(int index) {
+                if(index >= length) throw new IndexOutOfBoundsException(index);
+                return visible[index];
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
+    }
+}
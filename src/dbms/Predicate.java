@@ -0,0 +1,210 @@
+package dbms;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selection condition of type field op value, field op field or field op ? (a parameter of a prepared
+ * statement, replaced by a value with bind), where op is one of = <> < <= > >=,
+ * or of type field BETWEEN low AND high with values or parameters as bounds.
+ * Values are quoted ('10') or plain numbers (10).
+ * The condition is parsed once, the relations and the operators compile it into tests
+ * on the rows that never look at its text again.
+ */
+public class Predicate {
+    private static final Pattern BETWEEN = Pattern.compile("(?i)^\\s*(\\S+)\\s+between\\s+(.+?)\\s+and\\s+(.+?)\\s*$");
+    private static final Pattern NUMBER = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+
+    private final String field;
+    private final Condition.Operator operator;
+    private final String value; // null when comparing with a field or with a parameter not bound yet
+    private final String otherField; // null when comparing with a value
+    private final int parameter; // number of the parameter, -1 if the value is not a parameter
+    private final String upper; // upper bound of BETWEEN, null otherwise or while it is an unbound parameter
+    private final int upperParameter; // number of the parameter of the upper bound, -1 if none
+
+    private Predicate(String field, Condition.Operator operator, String value, String otherField, int parameter, String upper, int upperParameter) {
+        this.field = field;
+        this.operator = operator;
+        this.value = value;
+        this.otherField = otherField;
+        this.parameter = parameter;
+        this.upper = upper;
+        this.upperParameter = upperParameter;
+    }
+
+    /**
+     * Function to parse a condition without parameters
+     * @param condition expressed as a string of type field op 'value', field op field or field BETWEEN 'low' AND 'high'
+     * @return the parsed condition
+     * @throws Exception if the condition is not valid
+     */
+    public static Predicate parse(String condition) throws Exception {
+        Predicate predicate = parse(condition, 0);
+        if(predicate.isParameter()) throw new Exception("selection: missing value for parameter in " + condition.trim());
+        return predicate;
+    }
+
+    /**
+     * Function to parse a condition
+     * @param condition expressed as a string of type field op 'value', field op field, field op ?
+     *                  or field BETWEEN low AND high (bounds given as values or as ?)
+     * @param parameter the number to give to the first parameter of the condition, if it has any
+     * @return the parsed condition
+     * @throws Exception if the condition is not valid
+     */
+    public static Predicate parse(String condition, int parameter) throws Exception {
+        // field BETWEEN low AND high
+        Matcher between = BETWEEN.matcher(condition);
+        if(between.matches()) {
+            String field = between.group(1);
+            String low = between.group(2);
+            String high = between.group(3);
+
+            int lowParameter = low.equals("?") ? parameter : -1;
+            int highParameter = high.equals("?") ? (lowParameter == -1 ? parameter : parameter + 1) : -1;
+            String lowValue = lowParameter == -1 ? parseValue(low, condition) : null;
+            String highValue = highParameter == -1 ? parseValue(high, condition) : null;
+            if((lowParameter == -1 && lowValue == null) || (highParameter == -1 && highValue == null)) {
+                throw new Exception("selection: the bounds of BETWEEN must be values in " + condition.trim());
+            }
+
+            return new Predicate(field, Condition.Operator.BETWEEN, lowValue, null, lowParameter, highValue, highParameter);
+        }
+
+        // getting operator
+        int split = Condition.findOperator(condition);
+        if(split == -1) throw new Exception("selection: invalid condition " + condition.trim());
+        Condition.Operator operator = Condition.operatorAt(condition, split);
+
+        // getting the field and the value, field or parameter
+        String field = condition.substring(0, split).trim();
+        String other = condition.substring(split + operator.getSymbol().length()).trim();
+        if(field.isEmpty() || other.isEmpty() || field.contains(" ")) throw new Exception("selection: invalid condition " + condition.trim());
+
+        if(other.equals("?")) return new Predicate(field, operator, null, null, parameter, null, -1);
+
+        String value = parseValue(other, condition);
+        if(value != null) return new Predicate(field, operator, value, null, -1, null, -1);
+
+        if(other.contains(" ") || other.contains("'")) throw new Exception("selection: invalid condition " + condition.trim());
+        return new Predicate(field, operator, null, other, -1, null, -1);
+    }
+
+    /**
+     * Function to parse the value of a condition
+     * @return the value, or null if the text is not a quoted value nor a number (so it is a field)
+     * @throws Exception if the quotes are not balanced
+     */
+    private static String parseValue(String text, String condition) throws Exception {
+        if(text.charAt(0) == '\'') {
+            String value = Utils.getValueFromString(text);
+            if(value == null || text.charAt(text.length() - 1) != '\'') throw new Exception("selection: invalid string value " + text + " in " + condition.trim());
+            return value;
+        }
+
+        return NUMBER.matcher(text).matches() ? text : null;
+    }
+
+    /**
+     * Function to give a value to the parameters of the condition
+     * @param values the values of the parameters of the statement, by number
+     * @return the condition comparing with the values of its parameters, or this condition if it has no parameter
+     */
+    public Predicate bind(String[] values) throws Exception {
+        if(!isParameter()) return this;
+        if(Math.max(parameter, upperParameter) >= values.length) {
+            throw new Exception("selection: missing value for parameter " + (Math.max(parameter, upperParameter) + 1));
+        }
+
+        return new Predicate(field, operator, parameter == -1 ? value : values[parameter], otherField, -1,
+                upperParameter == -1 ? upper : values[upperParameter], -1);
+    }
+
+    /**
+     * Function to put the values of the condition in the canonical form of the type of the field
+     * @param type the type of the field
+     * @return the condition with canonical values, or this condition if there is nothing to change
+     * @throws Exception if a value is not valid for the type
+     */
+    public Predicate normalize(FieldType type) throws Exception {
+        if(!type.isNumeric() || value == null || isParameter()) return this;
+
+        try {
+            return new Predicate(field, operator, type.normalize(value), otherField, -1, upper == null ? null : type.normalize(upper), -1);
+        } catch (Exception ex) {
+            throw new Exception("selection: " + ex.getMessage() + " for field " + field + " in " + this);
+        }
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public Condition.Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return the compared value (the lower bound for BETWEEN), or null when comparing with a field or an unbound parameter
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return the upper bound of BETWEEN, or null
+     */
+    public String getUpper() {
+        return upper;
+    }
+
+    /**
+     * @return the compared field, or null when comparing with a value
+     */
+    public String getOtherField() {
+        return otherField;
+    }
+
+    /**
+     * @return true if a value is a parameter not bound yet
+     */
+    public boolean isParameter() {
+        return parameter != -1 || upperParameter != -1;
+    }
+
+    /**
+     * @return the number of parameters not bound yet (two for BETWEEN ? AND ?)
+     */
+    public int getParameterCount() {
+        return (parameter != -1 ? 1 : 0) + (upperParameter != -1 ? 1 : 0);
+    }
+
+    /**
+     * Function to evaluate the condition on two canonical values
+     * Integers and strings have a single canonical text, so equalities compare the text;
+     * doubles and the other comparisons compare the values as the given type
+     * @param type the type the values are compared as
+     * @param fieldValue the value of the field
+     * @param other the value of the other field, or the compared value (ignored by BETWEEN)
+     * @return true if the condition holds
+     */
+    public boolean test(FieldType type, String fieldValue, String other) {
+        return switch(operator) {
+            case EQUAL -> type == FieldType.DOUBLE ? type.compare(fieldValue, other) == 0 : fieldValue.equals(other);
+            case NOT_EQUAL -> type == FieldType.DOUBLE ? type.compare(fieldValue, other) != 0 : !fieldValue.equals(other);
+            case BETWEEN -> type.compare(fieldValue, value) >= 0 && type.compare(fieldValue, upper) <= 0;
+            default -> operator.test(type.compare(fieldValue, other));
+        };
+    }
+
+    @Override
+    public String toString() {
+        if(operator == Condition.Operator.BETWEEN) {
+            return field + " BETWEEN " + (value != null ? "'" + value + "'" : "?") + " AND " + (upper != null ? "'" + upper + "'" : "?");
+        }
+
+        String other = otherField != null ? otherField : value != null ? "'" + value + "'" : "?";
+        return field + " " + operator.getSymbol() + " " + other;
+    }
+}
@@ -1,14 +1,48 @@
 package dbms;
 
+import dbms.exec.Operator;
+import dbms.exec.ResultWriter;
+import dbms.exec.ScanOperator;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Relation {
+    /**
+     * Storage format of the file of a relation
+     */
+    public enum Format {
+        CSV, BINARY;
+
+        public String getExtension() {
+            return this == CSV ? ".csv" : ".bin";
+        }
+    }
+
     private static final String DATA_DIR = "data/";
+    private static final double RANGE_INDEX_SELECTIVITY = 0.15; // largest fraction of the rows read through an index for a range
+
+    // layout of the relations loaded from disk, the results of the operations use rows (or share the rows of their inputs)
+    private static RowStore.Layout defaultLayout = RowStore.Layout.valueOf(System.getProperty("dbms.layout", "ROWS").toUpperCase());
 
     private final String name;
     private final String[] field_names;
-    private final ArrayList<String[]> data;
+    private final FieldType[] field_types;
+    private final boolean typed; // true if some field is not VARCHAR, so values have to be checked
+    private RowStore data; // replaced only when a view is first written
+    private boolean view = false; // true if the rows are the ones of other relations, not copied yet
+    private Format format = Format.CSV;
+    private boolean pruned = false; // true if loaded without some fields of its file
+    private Statistics statistics = null;
+    private final List<Index> indexes;
 
     /**
      * Constructor for a new relation
@@ -16,26 +50,172 @@ public class Relation {
      * @param fs the names of the fields
      */
     public Relation(String name, String[] fs) {
+        this(name, fs, RowStore.Layout.ROWS);
+    }
+
+    /**
+     * Constructor for a new relation with the given memory layout
+     * @param name the name of the relation
+     * @param fs the names of the fields
+     * @param layout the layout of the rows in memory
+     */
+    public Relation(String name, String[] fs, RowStore.Layout layout) {
+        this(name, fs, FieldType.varchar(fs.length), layout);
+    }
+
+    /**
+     * Constructor for a new relation with typed fields
+     * @param name the name of the relation
+     * @param fs the names of the fields
+     * @param types the types of the fields
+     * @param layout the layout of the rows in memory
+     */
+    public Relation(String name, String[] fs, FieldType[] types, RowStore.Layout layout) {
         this.name = name;
         field_names = new String[fs.length];
+        field_types = types.clone();
 
         System.arraycopy(fs, 0, field_names, 0, fs.length);
 
-        data = new ArrayList<>();
+        boolean numeric = false;
+        for(FieldType type : field_types) numeric |= type.isNumeric();
+        typed = numeric;
+
+        data = RowStore.create(layout, field_types);
+        indexes = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Constructor for a view: a new relation sharing the rows of other relations without copying them
+     * @param name the name of the relation
+     * @param fs the names of the fields
+     * @param types the types of the fields
+     * @param data a read-only view of the rows
+     */
+    private Relation(String name, String[] fs, FieldType[] types, RowStore data) {
+        this(name, fs, types, RowStore.Layout.ROWS);
+        this.data = data;
+        this.view = true;
+    }
+
+    /**
+     * Constructor for a snapshot of a relation
+     * @param relation the relation
+     * @param data the snapshot of its rows
+     */
+    private Relation(Relation relation, RowStore data) {
+        this.name = relation.name;
+        this.field_names = relation.field_names;
+        this.field_types = relation.field_types;
+        this.typed = relation.typed;
+        this.data = data;
+        this.view = relation.view;
+        this.format = relation.format;
+        this.pruned = relation.pruned;
+        this.statistics = relation.statistics;
+        this.indexes = relation.indexes;
+    }
+
+    /**
+     * Function to get a read-only view of the relation as of the last commit
+     * The snapshot is not affected by the rows inserted later and can be read without locking,
+     * from any number of threads, while the relation is being written
+     * @return the snapshot
+     */
+    public Relation snapshot() {
+        return new Relation(this, data.snapshot());
+    }
+
+    /**
+     * Function to make the rows inserted so far visible to the snapshots taken from now on
+     */
+    public void commit() {
+        data.commit();
+    }
+
+    /**
+     * @return the layout used for the relations loaded from disk
+     */
+    public static synchronized RowStore.Layout getDefaultLayout() {
+        return defaultLayout;
+    }
+
+    /**
+     * Function to change the layout used for the relations loaded from disk
+     * @param layout the new layout
+     */
+    public static synchronized void setDefaultLayout(RowStore.Layout layout) {
+        defaultLayout = layout;
     }
 
     /**
      * Function to insert a new row in the relation (if not already present)
+     * The values of the numeric fields are stored in canonical form,
+     * the row is visible to the snapshots after the next commit
      * @param row the row to insert (must have the same number of fields as the relation)
-     * @throws Exception if the number of fields is different
+     * @throws Exception if the number of fields is different or a value is not valid for the type of its field
      */
     public void insert(String[] row) throws Exception {
         if(row.length != field_names.length) throw new Exception("insert: mismatched number of fields, expected " + field_names.length + " got " + row.length);
+        row = normalize(row);
         if(duplicated(row)) throw new Exception("insert: trying to insert duplicated row");
 
         insertNoCheck(row);
     }
 
+    /**
+     * Function to insert a batch of rows in the relation
+     * The whole batch is checked before inserting anything, with a single pass over the rows,
+     * the rows are visible to the snapshots after the next commit
+     * @param rows the rows to insert (each must have the same number of fields as the relation)
+     * @param skipDuplicates true to leave out the rows already present (in the relation or earlier in the batch),
+     *                       false to reject the batch if there is any
+     * @return the rows inserted, with the values of the numeric fields in canonical form
+     * @throws Exception if the number of fields of a row is different, a value is not valid for the type of its field,
+     *                   or a row is duplicated and skipDuplicates is false
+     */
+    public List<String[]> insert(List<String[]> rows, boolean skipDuplicates) throws Exception {
+        ArrayList<String[]> inserted = new ArrayList<>(rows.size());
+        HashSet<List<String>> batch = new HashSet<>();
+
+        for(String[] row : rows) {
+            if(row.length != field_names.length) throw new Exception("insert: mismatched number of fields, expected " + field_names.length + " got " + row.length);
+            row = normalize(row);
+
+            if(duplicated(row) || !batch.add(Arrays.asList(row))) {
+                if(skipDuplicates) continue;
+                throw new Exception("insert: trying to insert duplicated row");
+            }
+            inserted.add(row);
+        }
+
+        for(String[] row : inserted) {
+            insertNoCheck(row);
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Function to check the values of a row against the types of the fields
+     * @param row the row
+     * @return the row itself if all the fields are VARCHAR, otherwise a copy with the numeric values in canonical form
+     * @throws Exception if a value is not valid for the type of its field
+     */
+    private String[] normalize(String[] row) throws Exception {
+        if(!typed) return row;
+
+        String[] normalized = new String[row.length];
+        for(int i = 0; i < row.length; i++) {
+            try {
+                normalized[i] = field_types[i].normalize(row[i]);
+            } catch (Exception ex) {
+                throw new Exception("insert: " + ex.getMessage() + " for field " + field_names[i]);
+            }
+        }
+        return normalized;
+    }
+
     /**
      * Function to insert a new row in the relation without checking for duplicates
      * Used internally for operations that guarantee no duplicates
@@ -44,7 +224,147 @@ public class Relation {
     private void insertNoCheck(String[] row) {
         String[] copy = new String[row.length];
         System.arraycopy(row, 0, copy, 0, row.length);
-        data.add(copy);
+        addRow(copy);
+    }
+
+    /**
+     * Function to append a row to the data, keeping the indexes in sync
+     * The row is stored as is, without copying it
+     * @param row the row to append
+     */
+    private void addRow(String[] row) {
+        if(view) materializeView();
+        data.add(row);
+
+        for(Index index : indexes) {
+            index.add(row[getFieldIndex(index.getField())], data.size() - 1);
+        }
+    }
+
+    /**
+     * Function to copy the rows of a view into a store of its own, before the first write
+     * The positions of the rows do not change, so the indexes stay valid
+     */
+    private void materializeView() {
+        RowStore copy = RowStore.create(data.getLayout(), field_types);
+        for(String[] row : data) copy.add(row);
+        data = copy;
+        view = false;
+    }
+
+    /**
+     * @return true if the relation shares the rows of other relations (the result of rename, union or projection not written since)
+     */
+    public boolean isView() {
+        return view;
+    }
+
+    /**
+     * @return the name of the relation
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a copy of the names of the fields
+     */
+    public String[] getFieldNames() {
+        return field_names.clone();
+    }
+
+    /**
+     * @return a copy of the types of the fields
+     */
+    public FieldType[] getFieldTypes() {
+        return field_types.clone();
+    }
+
+    /**
+     * @return the header of the relation file: the names of the fields, with the type of the ones that are not VARCHAR
+     */
+    String[] getHeader() {
+        String[] header = new String[field_names.length];
+        for(int i = 0; i < header.length; i++) {
+            header[i] = FieldType.header(field_names[i], field_types[i]);
+        }
+        return header;
+    }
+
+    /**
+     * Function to create an empty relation from the header of its file
+     * @param name the name of the relation
+     * @param header the fields, as name or name:TYPE
+     * @param layout the layout of the rows in memory
+     * @return the relation
+     * @throws Exception if a type is not known
+     */
+    private static Relation fromHeader(String name, String[] header, RowStore.Layout layout) throws Exception {
+        String[] names = new String[header.length];
+        FieldType[] types = new FieldType[header.length];
+        for(int i = 0; i < header.length; i++) {
+            names[i] = FieldType.nameOf(header[i]);
+            types[i] = FieldType.typeOf(header[i]);
+        }
+        return new Relation(name, names, types, layout);
+    }
+
+    /**
+     * @return true if the relation was loaded without some of the fields of its file
+     */
+    public boolean isPruned() {
+        return pruned;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Function to get the storage of the rows, which must only be read
+     * @return the store
+     */
+    public RowStore getStore() {
+        return data;
+    }
+
+    /**
+     * Function to get a row, which must not be modified
+     * @param index the position of the row
+     * @return the row
+     */
+    public String[] getRow(int index) {
+        return data.get(index);
+    }
+
+    /**
+     * Function to build a relation with all the rows produced by an operator
+     * Duplicated rows are kept, as in the results of the other operations
+     * @param name the name of the new relation
+     * @param op the operator
+     * @return the new relation
+     * @throws Exception if the operator fails
+     */
+    public static Relation materialize(String name, Operator op) throws Exception {
+        Relation res = new Relation(name, op.getFieldNames());
+
+        String[] row;
+        while((row = op.next()) != null) {
+            res.addRow(row);
+        }
+        op.close();
+
+        return res;
+    }
+
+    /**
+     * @return the estimated heap size of the relation in bytes
+     */
+    public long getEstimatedBytes() {
+        return data.estimatedBytes();
     }
 
     /**
@@ -53,77 +373,285 @@ public class Relation {
      * @return true if the row is already present, false otherwise
      */
     private boolean duplicated(String[] newData) {
-        for(String[] row : data) {
-            boolean equal = true;
-            for(int i = 0; i < row.length; i++) {
-                if(!row[i].equals(newData[i])) {
-                    equal = false;
-                    break;
-                }
-            }
-            if(equal) return true;
-        }
-        return false;
+        return data.contains(newData);
     }
 
     /**
-     * Function to save the relation to a CSV file
+     * @return the storage format of the relation file
      */
-    public void save() {
-        File file = new File(DATA_DIR + name + ".csv");
+    public Format getFormat() {
+        return format;
+    }
 
+    /**
+     * Function to change the storage format used by save
+     * @param format the new format
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Function to save the relation to its file (CSV or binary, depending on its format), updating its statistics
+     * The file is written aside and then replaces the old one: a binary file is never modified while it is mapped
+     */
+    public void save() {
         try {
-            FileWriter fw = new FileWriter(file);
+            File file = getFile(name, format.getExtension());
+            File tmp = getFile(name, format.getExtension() + ".tmp");
+
+            write(tmp, false);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            analyze();
+        } catch (Exception ex) {
+            System.err.println(ex.getMessage());
+        }
+    }
+
+    /**
+     * Function to save the relation to its file replacing it atomically,
+     * so that a crash never leaves a partially written file behind, then update its statistics
+     * @throws IOException if the file cannot be written
+     */
+    void saveDurably() throws IOException {
+        File file = getFile(name, format.getExtension());
+        File tmp = getFile(name, format.getExtension() + ".tmp");
+
+        write(tmp, true);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        analyze();
+    }
+
+    /**
+     * Function to collect the statistics of the relation and save them in its .stats file
+     * @return the statistics
+     * @throws IOException if the file cannot be written
+     */
+    public Statistics analyze() throws IOException {
+        Statistics collected = Statistics.collect(this);
+        collected.write(name);
+        statistics = collected;
+        return collected;
+    }
+
+    /**
+     * @return the statistics of the relation as of its last save or ANALYZE, or null if never collected
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Function to convert the file of a relation to another storage format
+     * The old file is removed once the new one has been written, and the insert log is merged into it
+     * @param name the name of the relation
+     * @param format the new format
+     * @throws Exception if the relation does not exist or cannot be written
+     */
+    public static void convert(String name, Format format) throws Exception {
+        if(!getFile(name, ".csv").exists() && !getFile(name, ".bin").exists()) throw new Exception("convert: relation not found");
+        InsertLog.compact(name, format);
+    }
+
+    /**
+     * Function to write the relation to a file in its format
+     * @param file the destination file
+     * @param sync true to force the content to the disk before returning
+     * @throws IOException if the file cannot be written
+     */
+    private void write(File file, boolean sync) throws IOException {
+        if(format == Format.BINARY) BinaryTable.write(file, getHeader(), data, sync);
+        else writeCsv(file, sync);
+        Metrics.bytesWritten(file.length());
+    }
+
+    /**
+     * Function to write the relation in CSV format
+     * @param file the destination file
+     * @param sync true to force the content to the disk before returning
+     * @throws IOException if the file cannot be written
+     */
+    private void writeCsv(File file, boolean sync) throws IOException {
+        try(FileOutputStream fos = new FileOutputStream(file);
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
 
             // intestazione
-            for(int i = 0; i < field_names.length; i++) {
-                fw.write(field_names[i]);
-                if(i != field_names.length - 1) fw.write(",");
-            }
-            fw.write("\n");
+            bw.write(toCsvLine(getHeader()));
 
             // dati
             for(String[] row : data) {
-                for(int i = 0; i < row.length; i++) {
-                    fw.write(row[i]);
-                    if(i != row.length - 1) fw.write(",");
-                }
-                fw.write("\n");
+                bw.write(toCsvLine(row));
             }
 
-            fw.flush();
-            fw.close();
-        } catch (Exception ex) {
-            System.err.println(ex.getMessage());
+            bw.flush();
+            if(sync) fos.getFD().sync();
         }
     }
 
     /**
-     * Function to load a relation from a CSV file
+     * Function to format a row as a CSV line (terminated by a newline), quoting the values that need it
+     * @param row the row
+     * @return the CSV line
+     */
+    static String toCsvLine(String[] row) {
+        // a single empty value is quoted, an empty line would be taken for a blank line
+        if(row.length == 1 && row[0].isEmpty()) return "\"\"\n";
+
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < row.length; i++) {
+            sb.append(CsvReader.quote(row[i]));
+            if(i != row.length - 1) sb.append(',');
+        }
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * Function to get a file of a relation in the data directory
+     * @param name the name of the relation
+     * @param extension the extension of the file (.csv, .log, ...)
+     * @return the file
+     */
+    static File getFile(String name, String extension) {
+        return new File(DATA_DIR + name + extension);
+    }
+
+    /**
+     * Function to create a temporary file in the data directory (spilled runs and partitions),
+     * deleted at the exit of the program if the caller did not delete it before
+     * @param prefix the prefix of the name of the file
+     * @param extension the extension of the file
+     * @return the new empty file
+     * @throws IOException if the file cannot be created
+     */
+    public static File createTempFile(String prefix, String extension) throws IOException {
+        File dir = new File(DATA_DIR);
+        if(!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create the data directory " + dir);
+
+        File file = File.createTempFile(prefix + "_", extension, dir);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Function to get the last modification time of the files of a relation
+     * (the CSV or binary file and its insert log)
+     * @param name the name of the relation (without .csv)
+     * @return the modification time, or 0 if the file does not exist
+     */
+    static long lastModified(String name) {
+        long modified = Math.max(getFile(name, ".csv").lastModified(), getFile(name, ".bin").lastModified());
+        return Math.max(modified, getFile(name, ".log").lastModified());
+    }
+
+    /**
+     * Function to load a relation from its binary file if present, from its CSV file otherwise
+     * The rows appended to the insert log of the relation are replayed on top of the file
      * @param name the name of the relation (without .csv)
      * @return the loaded relation, or null if any error
      */
     public static Relation load(String name) {
-        File file = new File(DATA_DIR + name + ".csv");
+        return load(name, null);
+    }
+
+    /**
+     * Function to load only some fields of a relation (column pruning), the values of the other fields are skipped
+     * while reading the file. The relation has the loaded fields only, in the order of the file, and must only be read.
+     * A relation with an insert log is always loaded whole, the replay needs whole rows to skip the duplicated ones.
+     * @param name the name of the relation (without .csv)
+     * @param columns the names of the fields needed, null for all the fields; names not in the relation are ignored
+     *                and at least the first field is always loaded
+     * @return the loaded relation, or null if any error
+     */
+    public static Relation load(String name, Set<String> columns) {
+        if(getFile(name, ".log").exists()) columns = null;
+
+        File binary = getFile(name, ".bin");
+        if(binary.exists()) return loadBinary(name, binary, columns);
+
+        File file = getFile(name, ".csv");
         if(!file.exists()) return null;
 
         try {
-            FileReader fr = new FileReader(file);
-            BufferedReader br = new BufferedReader(fr);
-
-            // load fields from first line
-            String[] header = br.readLine().split(",");
-            Relation rel = new Relation(name, header);
-
-            String line;
-            String[] dataRow;
-            while((line = br.readLine()) != null) {
-                dataRow = line.split(",");
-                rel.data.add(dataRow);
+            // load fields (and their types) from first line
+            String[] header = CsvReader.readHeader(file);
+            boolean[] keep = keptFields(header, columns);
+            Relation rel = fromHeader(name, keptValues(header, keep), getDefaultLayout());
+            rel.pruned = rel.field_names.length != header.length;
+
+            FieldType[] types = new FieldType[header.length];
+            for(int i = 0; i < header.length; i++) types[i] = FieldType.typeOf(header[i]);
+
+            CsvReader.read(file, keep, types, rel::addRow);
+            Metrics.bytesRead(file.length());
+
+            rel.replayLog();
+            rel.loadIndexes();
+            rel.commit();
+            rel.statistics = Statistics.read(name);
+
+            return rel;
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return for each field of the header, true if it has to be loaded
+     */
+    private static boolean[] keptFields(String[] header, Set<String> columns) {
+        boolean[] keep = new boolean[header.length];
+        boolean any = false;
+        for(int i = 0; i < header.length; i++) {
+            keep[i] = columns == null || columns.contains(FieldType.nameOf(header[i]));
+            any |= keep[i];
+        }
+        if(!any && keep.length > 0) keep[0] = true;
+        return keep;
+    }
+
+    private static String[] keptValues(String[] values, boolean[] keep) {
+        ArrayList<String> kept = new ArrayList<>();
+        for(int i = 0; i < values.length; i++) {
+            if(keep[i]) kept.add(values[i]);
+        }
+        return kept.toArray(new String[] {});
+    }
+
+    /**
+     * Function to load a relation from a memory-mapped binary file
+     * With the row layout nothing is decoded at load time, only the header of the file is read;
+     * the indexes decode just their field and the insert log checks decode the rows once
+     * @param name the name of the relation
+     * @param file the binary file
+     * @param columns the names of the fields needed, null for all the fields
+     * @return the loaded relation, or null if any error
+     */
+    private static Relation loadBinary(String name, File file, Set<String> columns) {
+        try {
+            BinaryTable table = BinaryTable.open(file);
+            boolean[] keep = keptFields(table.getFieldNames(), columns);
+            Relation rel = fromHeader(name, keptValues(table.getFieldNames(), keep), getDefaultLayout());
+            rel.format = Format.BINARY;
+            rel.pruned = rel.field_names.length != keep.length;
+
+            int[] kept = new int[rel.field_names.length];
+            for(int i = 0, k = 0; i < keep.length; i++) {
+                if(keep[i]) kept[k++] = i;
+            }
+
+            if(rel.data.getLayout() == RowStore.Layout.ROWS) {
+                // the rows stay in the mapped file and are decoded when read
+                rel.data = new BinaryStore(table, rel.pruned ? kept : null);
+            } else {
+                // the column layout needs the values in its arrays
+                for(int i = 0; i < table.size(); i++) rel.addRow(table.readRow(i, kept));
+                Metrics.bytesRead(file.length());
             }
 
-            br.close();
-            fr.close();
+            rel.replayLog();
+            rel.loadIndexes();
+            rel.commit();
+            rel.statistics = Statistics.read(name);
 
             return rel;
         } catch (Exception ex) {
@@ -131,100 +659,320 @@ public class Relation {
         }
     }
 
+    /**
+     * Function to apply the rows of the insert log to the relation
+     * Rows already present (because the log was not truncated after a compaction)
+     * and a trailing incomplete row (a crash during an append, never acknowledged) are skipped;
+     * complete rows that cannot be read are reported on the standard error
+     * @throws IOException if the log cannot be read
+     */
+    private void replayLog() throws IOException {
+        File log = getFile(name, ".log");
+        if(!log.exists()) return;
+
+        // anything after the last complete line is an append that never completed
+        byte[] bytes = Files.readAllBytes(log.toPath());
+        Metrics.bytesRead(bytes.length);
+        String content = new String(bytes, 0, CsvReader.completeLength(bytes), StandardCharsets.UTF_8);
+
+        List<String> lines = CsvReader.splitLines(content);
+        for(int l = 0; l < lines.size(); l++) {
+            String line = lines.get(l);
+            // with a single VARCHAR field an empty line is a row with an empty value
+            if(line.isEmpty() && (field_names.length > 1 || field_types[0].isNumeric())) continue;
+            String[] row = CsvReader.splitLine(line);
+            try {
+                if(row.length != field_names.length) throw new Exception("expected " + field_names.length + " fields, found " + row.length);
+                row = normalize(row);
+            } catch (Exception ex) {
+                System.err.println("log of " + name + ": skipping malformed row " + (l + 1) + " (" + ex.getMessage() + "): " + line);
+                continue;
+            }
+            if(duplicated(row)) continue;
+            addRow(row);
+        }
+    }
+
+    /**
+     * Function to create a secondary index on a field and save its definition
+     * @param indexName the name of the index
+     * @param field the field to index
+     * @param type the type of the index
+     * @throws Exception if the field does not exist or the name is already used
+     */
+    public void createIndex(String indexName, String field, Index.Type type) throws Exception {
+        if(getFieldIndex(field) == -1) throw new Exception("create index: field " + field + " not found");
+        for(Index index : indexes) {
+            if(index.getName().equals(indexName)) throw new Exception("create index: index " + indexName + " already exists");
+        }
+
+        addIndex(Index.create(indexName, field, field_types[getFieldIndex(field)], type));
+
+        try(FileWriter fw = new FileWriter(getFile(name, ".idx"), StandardCharsets.UTF_8, true)) {
+            fw.write(indexName + "," + field + "," + type + "\n");
+        }
+    }
+
+    /**
+     * Function to get an index on a field
+     * @param field the name of the field
+     * @return the index (hash indexes first), or null if the field is not indexed
+     */
+    public Index getIndex(String field) {
+        Index found = null;
+        for(Index index : indexes) {
+            if(!index.getField().equals(field)) continue;
+            if(index.getType() == Index.Type.HASH) return index;
+            found = index;
+        }
+        return found;
+    }
+
+    /**
+     * Function to add an index filling it with the rows already present
+     * @param index the empty index
+     */
+    private void addIndex(Index index) {
+        int fieldIndex = getFieldIndex(index.getField());
+        for(int i = 0; i < data.size(); i++) {
+            index.add(data.get(i, fieldIndex), i);
+        }
+        indexes.add(index);
+    }
+
+    /**
+     * Function to rebuild the indexes declared in the definitions file of the relation
+     * @throws IOException if the file cannot be read
+     */
+    private void loadIndexes() throws IOException {
+        File file = getFile(name, ".idx");
+        if(!file.exists()) return;
+
+        for(String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            String[] def = line.split(",");
+            if(def.length != 3 || getFieldIndex(def[1]) == -1) continue;
+            addIndex(Index.create(def[0], def[1], field_types[getFieldIndex(def[1])], Index.Type.valueOf(def[2])));
+        }
+    }
+
+    /**
+     * Function to get the index that a selection would use
+     * Equalities use any index on the field, ranges an ordered one, but only when the statistics
+     * (or the defaults without them) estimate that few rows satisfy the condition: reading most
+     * of the rows in random order through the index is slower than scanning them
+     * @param condition the condition of the selection
+     * @return the index, or null if the selection needs a full scan
+     */
+    public Index getSelectionIndex(Predicate condition) {
+        Condition.Operator operator = condition.getOperator();
+        int field = getFieldIndex(condition.getField());
+        if(field == -1 || condition.getOtherField() != null || condition.getValue() == null) return null;
+        if(operator == Condition.Operator.EQUAL) return getIndex(condition.getField());
+
+        for(Index index : indexes) {
+            if(!index.getField().equals(condition.getField()) || !index.supports(operator)) continue;
+
+            Statistics.Column column = statistics == null ? null : statistics.getColumn(condition.getField());
+            return Statistics.selectivity(condition, field_types[field], column, null) <= RANGE_INDEX_SELECTIVITY ? index : null;
+        }
+        return null;
+    }
+
     /**
      * Function to perform a selection on the relation
-     * @param condition expressed as a string of type field [=,<>] 'value' or field [=,<>] field
-     * @return a new relation with the rows that satisfy the condition
+     * Equality and selective range conditions on an indexed field are answered through the index,
+     * large relations are scanned in parallel
+     * @param condition expressed as a string of type field op 'value', field op field or field BETWEEN 'low' AND 'high'
+     * @return a new relation with the rows that satisfy the condition, or null if the condition is not valid
      */
     public Relation selection(String condition) {
-        Relation res = new Relation("selection_" + name, field_names);
+        int size = data.size();
+        int[] positions;
 
-        // getting operator
-        int op = -1; // 0 = "=", 1 = "<>"
-        if(condition.contains("=")) op = 0;
-        else if(condition.contains("<>")) op = 1;
-        if(op == -1) return null;
+        try {
+            Predicate predicate = resolve(Predicate.parse(condition));
 
-        // getting the fields or value
-        String[] expr = condition.replace(" ", "").split(op == 0 ? "=" : "<>");
-        String field1 = expr[0];
-        String field2 = expr[1];
+            Index index = getSelectionIndex(predicate);
+            if(index != null) {
+                positions = index.lookup(predicate, size).stream().mapToInt(Integer::intValue).toArray();
+            } else {
+                positions = Parallel.filter(0, size, compileCondition(predicate));
+            }
+        } catch (Exception ex) {
+            return null;
+        }
 
-        // determine value or field
-        int type = -1; // 0 = value, 1 = field
-        if(field2.charAt(0) == '\'') type = 0; else type = 1;
+        Relation res = new Relation("selection_" + name, field_names, field_types, RowStore.Layout.ROWS);
+        for(int position : positions) {
+            res.insertNoCheck(data.get(position));
+        }
 
-        // getting index for fields
-        int field1Index = getFieldIndex(field1);
-        int field2Index = -1;
-        if(type == 1) field2Index = getFieldIndex(field2);
+        return res;
+    }
 
+    /**
+     * Function to check a selection condition against the fields of the relation
+     * @param condition the condition, with its parameters bound
+     * @return the condition with its values in the canonical form of the type of the field
+     * @throws Exception if a field is not found, a parameter is not bound or a value is not valid for the type of the field
+     */
+    public Predicate resolve(Predicate condition) throws Exception {
+        if(condition.isParameter()) throw new Exception("selection: missing value for parameter in " + condition);
+
+        int field = getFieldIndex(condition.getField());
+        if(field == -1) throw new Exception("selection: field " + condition.getField() + " not found in condition " + condition);
+        if(condition.getOtherField() != null) {
+            if(getFieldIndex(condition.getOtherField()) == -1) throw new Exception("selection: field " + condition.getOtherField() + " not found in condition " + condition);
+            return condition;
+        }
 
-        // search field [=,<>] value
-        if(type == 0) {
-            for(String[] row : data) {
-                if(row[field1Index].equals(field2.replace("'", ""))) res.insertNoCheck(row);
+        return condition.normalize(field_types[field]);
+    }
+
+    /**
+     * Function to compile a selection condition into a kernel testing batches of rows
+     * The fields are resolved and the value encoded once, the kernel only compares the stored values
+     * (with the column layout in tight loops over the codes or primitive arrays of the fields)
+     * and only reads the relation, so it can be called from several threads
+     * @param condition the condition, with its parameters bound
+     * @return the kernel
+     * @throws Exception if a field is not found, a parameter is not bound or a value is not valid for the type of the field
+     */
+    public BatchFilter compileCondition(Predicate condition) throws Exception {
+        Predicate resolved = resolve(condition);
+
+        // getting index for fields
+        int f1 = getFieldIndex(resolved.getField());
+        int f2 = resolved.getOtherField() == null ? -1 : getFieldIndex(resolved.getOtherField());
+
+        Condition.Operator operator = resolved.getOperator();
+        boolean equality = operator == Condition.Operator.EQUAL || operator == Condition.Operator.NOT_EQUAL;
+        boolean equal = operator == Condition.Operator.EQUAL;
+
+        // search field op field
+        if(f2 != -1) {
+            // dictionary encoded columns are compared by code
+            if(equality && data instanceof ColumnStore columns && columns.isEncoded(f1) && columns.isEncoded(f2)) {
+                return BatchFilter.codePairs(columns.getCodes(f1), columns.getCodes(f2), columns.translate(f2, columns, f1), equal);
             }
+
+            FieldType type = FieldType.common(field_types[f1], field_types[f2]);
+            return BatchFilter.of(i -> resolved.test(type, data.get(i, f1), data.get(i, f2)));
         }
 
-        // search field [=,<>] field
-        if(type == 1) {
-            for(String[] row : data) {
-                if(row[field1Index].equals(row[field2Index])) res.insertNoCheck(row);
-            }
+        // search field op value
+        if(field_types[f1].isNumeric()) return compileRange(resolved, f1);
+
+        String value = resolved.getValue();
+        if(data instanceof ColumnStore columns) {
+            if(equality) return BatchFilter.codes(columns.getCodes(f1), columns.lookup(f1, value), equal);
+
+            // ordering comparisons evaluated once per distinct value
+            return BatchFilter.codeTable(columns.getCodes(f1), columns.testCodes(f1, resolved));
         }
 
-        return res;
+        if(equality) return BatchFilter.of(i -> data.get(i, f1).equals(value) == equal);
+        return BatchFilter.of(i -> resolved.test(FieldType.VARCHAR, data.get(i, f1), value));
+    }
+
+    /**
+     * Function to compile a condition on a numeric field and a value into a range kernel
+     * Every operator is turned into an interval of primitive values (its complement for <>),
+     * the column layout tests the primitive arrays of the field, the row layout parses the values
+     * @param condition the resolved condition
+     * @param field the index of the field
+     * @return the kernel
+     */
+    private BatchFilter compileRange(Predicate condition, int field) {
+        Condition.Operator operator = condition.getOperator();
+        boolean negate = operator == Condition.Operator.NOT_EQUAL;
+
+        if(field_types[field] == FieldType.DOUBLE) {
+            double value = Double.parseDouble(condition.getValue());
+            double low = switch(operator) {
+                case LESS, LESS_EQUAL -> Double.NEGATIVE_INFINITY;
+                case GREATER -> Math.nextUp(value);
+                default -> value;
+            };
+            double high = switch(operator) {
+                case GREATER, GREATER_EQUAL -> Double.POSITIVE_INFINITY;
+                case LESS -> Math.nextDown(value);
+                case BETWEEN -> Double.parseDouble(condition.getUpper());
+                default -> value;
+            };
+
+            if(data instanceof ColumnStore columns) return BatchFilter.doubles(columns.getDoubles(field), low, high, negate);
+            return BatchFilter.of(i -> {
+                double v = Double.parseDouble(data.get(i, field));
+                return (v >= low && v <= high) != negate;
+            });
+        }
+
+        long value = Long.parseLong(condition.getValue());
+        // nothing is less than the minimum or greater than the maximum
+        if((operator == Condition.Operator.LESS && value == Long.MIN_VALUE) || (operator == Condition.Operator.GREATER && value == Long.MAX_VALUE)) {
+            return (from, count, bitmap) -> Arrays.fill(bitmap, 0);
+        }
+        long low = switch(operator) {
+            case LESS, LESS_EQUAL -> Long.MIN_VALUE;
+            case GREATER -> value + 1;
+            default -> value;
+        };
+        long high = switch(operator) {
+            case GREATER, GREATER_EQUAL -> Long.MAX_VALUE;
+            case LESS -> value - 1;
+            case BETWEEN -> Long.parseLong(condition.getUpper());
+            default -> value;
+        };
+        // an empty interval (BETWEEN with the bounds reversed), the kernels compare as unsigned offsets from low
+        if(low > high) return (from, count, bitmap) -> Arrays.fill(bitmap, 0);
+
+        if(data instanceof ColumnStore columns) {
+            if(field_types[field] == FieldType.INT) return BatchFilter.ints(columns.getInts(field), low, high, negate);
+            return BatchFilter.longs(columns.getLongs(field), low, high, negate);
+        }
+        return BatchFilter.of(i -> {
+            long v = Long.parseLong(data.get(i, field));
+            return (v >= low && v <= high) != negate;
+        });
     }
 
     /**
      * Function to perform a projection on the relation
+     * The result is a view: the values are read from this relation when requested, no row is copied
      * @param fields the fields to keep
      * @return a new relation with only the specified fields
      */
     public Relation projection(String[] fields) {
-        Relation res = new Relation("projection_" + name, fields);
-
         // getting the indexes
         int[] indexes = new int[fields.length];
+        FieldType[] types = new FieldType[fields.length];
         for(int i = 0; i < fields.length; i++) {
             for(int j = 0; j < field_names.length; j++) {
                 if(fields[i].equals(field_names[j])) indexes[i] = j;
             }
+            types[i] = field_types[indexes[i]];
         }
 
-        String[] newRow = new String[fields.length];
-        for(String[] row : data) {
-            for(int i = 0; i < fields.length; i++) {
-                newRow[i] = row[indexes[i]];
-            }
-            res.insertNoCheck(newRow);
-        }
-
-        return res;
+        return new Relation("projection_" + name, fields, types, ViewStore.projection(data.view(), indexes));
     }
 
     /**
      * Function to rename the fields of the relation
+     * The result is a view sharing the rows (and the layout) of this relation
      * @param fields the new field names (must have the same number of fields as the relation)
      * @return a new relation with the renamed fields, or null if the number of fields is different
      */
     public Relation rename(String[] fields) {
         if(fields.length != field_names.length) return null;
-        Relation res = new Relation("rename_" + name, fields);
-
-        for(int i = 0; i < field_names.length; i++) {
-            res.field_names[i] = fields[i];
-        }
-
-        res.data.addAll(data);
-
-        return res;
+        return new Relation("rename_" + name, fields, field_types, data.view());
     }
 
     /**
      * Function to perform a union between this relation and another one
      * The two relations must have the same number of fields and the same field names
+     * Rows present in both relations appear only once in the result
+     * The result is a view over the rows of the two relations, only the positions of the distinct ones are kept
      * @param r the other relation
      * @return a new relation with the union, or null if the number of fields or their names are different
      */
@@ -233,26 +981,40 @@ public class Relation {
 
         for(int i = 0; i < this.field_names.length; i++) {
             if(!this.field_names[i].equals(r.field_names[i])) throw new Exception("union: mismatched field names");
+            if(this.field_types[i] != r.field_types[i]) throw new Exception("union: mismatched types of field " + field_names[i]);
         }
 
-        Relation res = new Relation("union_" + name + "_" + r.name, this.field_names);
+        // the rows of both relations without copying them, leaving out the duplicates
+        RowStore first = this.data.view();
+        RowStore second = r.data.view();
+        HashSet<List<String>> seen = new HashSet<>();
+        int[] firstRows = distinctRows(first, seen);
+        int[] secondRows = distinctRows(second, seen);
 
-        for(String[] row : this.data) {
-            res.insertNoCheck(row);
-        }
-        for(String[] row : r.data) {
-            res.insertNoCheck(row);
-        }
+        return new Relation("union_" + name + "_" + r.name, this.field_names, this.field_types, ViewStore.union(first, firstRows, second, secondRows));
+    }
 
-        return res;
+    /**
+     * Function to find the rows of a store not seen before
+     * @param store the store
+     * @param seen the rows seen so far, the new ones are added
+     * @return the positions of the new rows, or null if all of them are new
+     */
+    private static int[] distinctRows(RowStore store, HashSet<List<String>> seen) {
+        int[] positions = new int[store.size()];
+        int count = 0;
+        for(int i = 0; i < store.size(); i++) {
+            if(seen.add(Arrays.asList(store.get(i)))) positions[count++] = i;
+        }
+        return count == positions.length ? null : Arrays.copyOf(positions, count);
     }
 
     public Relation difference(Relation r) {
-        Relation res = new Relation("difference_" + name + "_" + r.name, field_names);
+        Relation res = new Relation("difference_" + name + "_" + r.name, field_names, field_types, RowStore.Layout.ROWS);
 
         if(this.field_names.length != r.field_names.length) return null;
         for(int i = 0; i < this.field_names.length; i++) {
-            if(!this.field_names[i].equals(r.field_names[i])) return null;
+            if(!this.field_names[i].equals(r.field_names[i]) || this.field_types[i] != r.field_types[i]) return null;
         }
 
         for(String[] row : this.data) {
@@ -264,18 +1026,18 @@ public class Relation {
 
     /**
      * Function to perform a cartesian product between this relation and another one
+     * The rows of this relation are split among the threads of the parallel pool when the product is large
      * @param r the other relation
      * @return a new relation with the cartesian product
      */
     public Relation xproduct(Relation r) {
-        int fieldsNum = this.field_names.length + r.field_names.length;
         Relation res = createXBase(r);
 
-        for(String[] data1 : this.data) {
-            for(String[] data2 : r.data) {
-                Relation.insertXData(res, data1, data2);
-            }
-        }
+        RowStore inner = r.data;
+        insertXData(res, Parallel.flatMap(0, this.data.size(), inner.size(), (rows, i) -> {
+            String[] data1 = this.data.get(i);
+            for(String[] data2 : inner) rows.add(concat(data1, data2));
+        }));
 
         return res;
     }
@@ -287,48 +1049,178 @@ public class Relation {
      * @return a new relation with the join, or null if any error
      */
     public Relation join(Relation r, String condition) throws Exception {
-        // getting multiple conditions
-        String[] conditionsStr = condition.replace(" ", "").split("AND");
-        Condition[] conditions = new Condition[conditionsStr.length];
-        for(int i = 0; i < conditionsStr.length; i++) {
-            conditions[i] = Condition.evaluate(conditionsStr[i]);
-            if(conditions[i] == null) throw new Exception("join: invalid condition syntax");
-            if(conditions[i].valueIsField()) throw new Exception("join: in join conditions you cannot compare fields with values");
+        JoinCondition jc = JoinCondition.parse(field_names, r.field_names, condition);
+        if(jc == null) return null;
+
+        Relation res = createXBase(r);
+
+        if(!jc.hasEqualities()) {
+            nestedLoopJoin(r, res, jc);
+            return res;
         }
 
-        // getting conditions indexes
-        int[][] condIndexes = new int[conditions.length][2];
-        for(int i = 0; i < conditions.length; i++) {
-            condIndexes[i][0] = getFieldIndex(conditions[i].getField());
-            condIndexes[i][1] = r.getFieldIndex(conditions[i].getValue());
-            if(condIndexes[i][0] == -1 || condIndexes[i][1] == -1) return null;
+        // an index on one of the equality fields replaces the hash table
+        int[] leftKeys = jc.getLeftKeys();
+        int[] rightKeys = jc.getRightKeys();
+        for(int i = 0; i < leftKeys.length; i++) {
+            Index index = r.getIndex(r.field_names[rightKeys[i]]);
+            if(index != null) {
+                indexJoin(r, res, index, leftKeys[i], false, jc);
+                return res;
+            }
+        }
+        for(int i = 0; i < leftKeys.length; i++) {
+            Index index = getIndex(field_names[leftKeys[i]]);
+            if(index != null) {
+                indexJoin(r, res, index, rightKeys[i], true, jc);
+                return res;
+            }
         }
 
-        Relation res = createXBase(r);
+        hashJoin(r, res, jc);
+        return res;
+    }
 
-        for(String[] data1 : this.data) {
-            for(String[] data2 : r.data) {
-                boolean valid = true;
-
-                for (int i = 0; i < conditions.length; i++) {
-                    if(conditions[i].getOperator() == Condition.Operator.EQUAL) {
-                        if(!data1[condIndexes[i][0]].equals(data2[condIndexes[i][1]])) {
-                            valid = false;
-                            break;
-                        }
-                    } else if(conditions[i].getOperator() == Condition.Operator.NOT_EQUAL) {
-                        if(data1[condIndexes[i][0]].equals(data2[condIndexes[i][1]])) {
-                            valid = false;
-                            break;
-                        }
-                    }
-                }
+    /**
+     * Function to perform a join probing an existing index of one of the two relations
+     * The probing rows are split among the threads of the parallel pool when there are many
+     * @param r the other relation
+     * @param res the relation where the joined rows are inserted
+     * @param index the index, on this relation if indexLeft, on the other one otherwise
+     * @param probeKey the index of the field of the probing relation matched against the index
+     * @param indexLeft true if the index is on this relation
+     * @param jc the join condition, all of it is checked on each candidate pair
+     */
+    private void indexJoin(Relation r, Relation res, Index index, int probeKey, boolean indexLeft, JoinCondition jc) {
+        RowStore probe = indexLeft ? r.data : this.data;
+        RowStore indexed = indexLeft ? this.data : r.data;
+
+        insertXData(res, Parallel.flatMap(0, probe.size(), 1, (rows, i) -> {
+            String[] row = probe.get(i);
+            for(int position : index.lookup(row[probeKey], indexed.size())) {
+                String[] match = indexed.get(position);
+                String[] data1 = indexLeft ? match : row;
+                String[] data2 = indexLeft ? row : match;
+                if(jc.matches(data1, data2)) rows.add(concat(data1, data2));
+            }
+        }));
+    }
+
+    /**
+     * Function to perform a join by building a hash table on the smaller relation
+     * and probing it with the rows of the other one
+     * On large relations the hash table is partitioned by key and built in parallel,
+     * then the probing rows are split among the threads
+     * @param r the other relation
+     * @param res the relation where the joined rows are inserted
+     * @param jc the join condition
+     */
+    private void hashJoin(Relation r, Relation res, JoinCondition jc) {
+        boolean buildLeft = this.data.size() < r.data.size();
+        RowStore build = buildLeft ? this.data : r.data;
+        RowStore probe = buildLeft ? r.data : this.data;
+
+        if(build instanceof ColumnStore buildColumns && probe instanceof ColumnStore probeColumns
+                && encodedKeys(buildColumns, buildLeft ? jc.getLeftKeys() : jc.getRightKeys())
+                && encodedKeys(probeColumns, buildLeft ? jc.getRightKeys() : jc.getLeftKeys())) {
+            columnHashJoin(res, jc, buildLeft, buildColumns, probeColumns);
+            return;
+        }
+
+        PartitionedHashTable table = new PartitionedHashTable(build.size(), i -> {
+            String[] row = build.get(i);
+            return buildLeft ? jc.leftKey(row) : jc.rightKey(row);
+        });
+
+        insertXData(res, Parallel.flatMap(0, probe.size(), 1, (rows, i) -> {
+            String[] row = probe.get(i);
+            List<Integer> matches = table.lookup(buildLeft ? jc.rightKey(row) : jc.leftKey(row));
+            if(matches != null) probeMatches(rows, jc, buildLeft, build, row, matches);
+        }));
+    }
 
-                if(valid) insertXData(res, data1, data2);
+    /**
+     * @return true if all the given fields of the store are dictionary encoded
+     */
+    private static boolean encodedKeys(ColumnStore store, int[] fields) {
+        for(int field : fields) {
+            if(!store.isEncoded(field)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Function to perform a hash join between two dictionary encoded relations, comparing codes instead of strings
+     * The codes of the probing relation are translated once into the codes of the building one,
+     * values missing from the building relation cannot match
+     * @param res the relation where the joined rows are inserted
+     * @param jc the join condition
+     * @param buildLeft true if the hash table is built on this relation
+     * @param build the store of the building relation
+     * @param probe the store of the probing relation
+     */
+    private void columnHashJoin(Relation res, JoinCondition jc, boolean buildLeft, ColumnStore build, ColumnStore probe) {
+        int[] buildKeys = buildLeft ? jc.getLeftKeys() : jc.getRightKeys();
+        int[] probeKeys = buildLeft ? jc.getRightKeys() : jc.getLeftKeys();
+
+        int[][] translations = new int[probeKeys.length][];
+        for(int k = 0; k < probeKeys.length; k++) {
+            translations[k] = probe.translate(probeKeys[k], build, buildKeys[k]);
+        }
+
+        PartitionedHashTable table = new PartitionedHashTable(build.size(), i -> {
+            Integer[] key = new Integer[buildKeys.length];
+            for(int k = 0; k < buildKeys.length; k++) {
+                key[k] = build.getCode(i, buildKeys[k]);
+            }
+            return Arrays.asList(key);
+        });
+
+        insertXData(res, Parallel.flatMap(0, probe.size(), 1, (rows, i) -> {
+            Integer[] key = new Integer[probeKeys.length];
+            for(int k = 0; k < probeKeys.length; k++) {
+                key[k] = translations[k][probe.getCode(i, probeKeys[k])];
+                if(key[k] == -1) return;
             }
+
+            List<Integer> matches = table.lookup(Arrays.asList(key));
+            if(matches != null) probeMatches(rows, jc, buildLeft, build, probe.get(i), matches);
+        }));
+    }
+
+    /**
+     * Function to add the joined rows of a probing row and its candidate matches
+     * @param rows the list where the joined rows are added
+     * @param jc the join condition, the residual part is checked on each pair
+     * @param buildLeft true if the building relation is this one
+     * @param build the store of the building relation
+     * @param row the probing row
+     * @param matches the positions of the building rows with the same key
+     */
+    private static void probeMatches(List<String[]> rows, JoinCondition jc, boolean buildLeft, RowStore build, String[] row, List<Integer> matches) {
+        for(int position : matches) {
+            String[] match = build.get(position);
+            String[] data1 = buildLeft ? match : row;
+            String[] data2 = buildLeft ? row : match;
+            if(jc.matchesResidual(data1, data2)) rows.add(concat(data1, data2));
         }
+    }
 
-        return res;
+    /**
+     * Function to perform a join comparing every pair of rows
+     * Used only when there is no equality condition to hash on, the rows of this relation are split among the threads
+     * @param r the other relation
+     * @param res the relation where the joined rows are inserted
+     * @param jc the join condition
+     */
+    private void nestedLoopJoin(Relation r, Relation res, JoinCondition jc) {
+        RowStore inner = r.data;
+        insertXData(res, Parallel.flatMap(0, this.data.size(), inner.size(), (rows, i) -> {
+            String[] data1 = this.data.get(i);
+            for(String[] data2 : inner) {
+                if(jc.matchesResidual(data1, data2)) rows.add(concat(data1, data2));
+            }
+        }));
     }
 
     /**
@@ -368,7 +1260,11 @@ public class Relation {
         System.arraycopy(this.field_names, 0, newFields, 0, this.field_names.length);
         System.arraycopy(r.field_names, 0, newFields, this.field_names.length, r.field_names.length);
 
-        return new Relation("xprod_" + name + "_" + r.name, newFields);
+        FieldType[] newTypes = new FieldType[fieldsNum];
+        System.arraycopy(this.field_types, 0, newTypes, 0, this.field_types.length);
+        System.arraycopy(r.field_types, 0, newTypes, this.field_types.length, r.field_types.length);
+
+        return new Relation("xprod_" + name + "_" + r.name, newFields, newTypes, RowStore.Layout.ROWS);
     }
 
     /**
@@ -388,51 +1284,27 @@ public class Relation {
         return fieldIndex;
     }
 
-    private static void insertXData(Relation res, String[] data1, String[] data2) {
-        String[] newRow = new String[res.field_names.length];
+    private static String[] concat(String[] data1, String[] data2) {
+        String[] newRow = new String[data1.length + data2.length];
         System.arraycopy(data1, 0, newRow, 0, data1.length);
         System.arraycopy(data2, 0, newRow, data1.length, data2.length);
-        res.data.add(newRow);
+        return newRow;
+    }
+
+    private static void insertXData(Relation res, List<String[]> rows) {
+        for(String[] row : rows) res.addRow(row);
     }
 
     @Override
     public String toString() {
-        String ret = "";
-
-        // intestazione
-        int full_len = field_names.length * 21 - 1;
-        ret += "+" + String.format("%-" + full_len + "s", "").replace(" ", "-") + "+\n";
-        ret += "|" + String.format("%-" + full_len + "s", name) + "|\n";
-
-        ret += "+";
-        for(int i = 0; i < field_names.length; i++) {
-            ret += String.format("%-20s", "").replace(" ", "-") + "+";
-        }
-        ret += "\n";
-
-        // intestazione colonne
-        ret += "|";
-        for(int i = 0; i < field_names.length; i++) {
-            ret += String.format("%-20s", field_names[i]) + "|";
-        }
-        ret += "\n";
+        StringWriter sw = new StringWriter();
 
-        // dati
-        for(String[] row : data) {
-            ret += "|";
-            for(String field_val : row) {
-                ret += String.format("%-20s", field_val) + "|";
-            }
-            ret += "\n";
-        }
-
-        // piè
-        ret += "+";
-        for(int i = 0; i < field_names.length; i++) {
-            ret += String.format("%-20s", "").replace(" ", "-") + "+";
+        try {
+            new ResultWriter(sw, ResultWriter.Mode.TABLE, 0).write(name, new ScanOperator(this));
+        } catch (Exception ex) {
+            return ex.getMessage();
         }
-        ret += "\n";
 
-        return ret;
+        return sw.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package dbms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reader/writer lock of each relation, taken by the commands while they run:
+ * any number of statements can read a relation together, a statement modifying it runs alone.
+ * SELECT statements read snapshots of the relations and take no lock at all.
+ * The locks of a statement are always taken in order of name, so statements using
+ * several relations cannot deadlock.
+ */
+public class RelationLocks {
+    private static final HashMap<String, ReentrantReadWriteLock> locks = new HashMap<>();
+
+    /**
+     * The locks taken by a statement, released by close
+     */
+    public static class Held implements AutoCloseable {
+        private final ArrayList<Lock> held = new ArrayList<>();
+
+        private Held() {}
+
+        @Override
+        public void close() {
+            for(int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+            held.clear();
+        }
+    }
+
+    private RelationLocks() {}
+
+    private static synchronized ReentrantReadWriteLock getLock(String name) {
+        return locks.computeIfAbsent(name, n -> new ReentrantReadWriteLock());
+    }
+
+    /**
+     * @param name the name of a relation
+     * @return true if a statement is modifying the relation
+     */
+    public static boolean isWriteLocked(String name) {
+        ReentrantReadWriteLock lock;
+        synchronized(RelationLocks.class) {
+            lock = locks.get(name);
+        }
+        return lock != null && lock.isWriteLocked();
+    }
+
+    /**
+     * Function to lock the relations used by a statement, waiting for the statements modifying them
+     * @param read the names of the relations read
+     * @param written the names of the relations modified (locked exclusively even if also read)
+     * @return the locks, to be closed when the statement is over
+     */
+    public static Held acquire(Collection<String> read, Collection<String> written) {
+        TreeSet<String> names = new TreeSet<>(read);
+        names.addAll(written);
+
+        Held held = new Held();
+        for(String name : names) {
+            ReentrantReadWriteLock lock = getLock(name);
+            Lock l = written.contains(name) ? lock.writeLock() : lock.readLock();
+            l.lock();
+            held.held.add(l);
+        }
+
+        return held;
+    }
+}
@@ -0,0 +1,60 @@
+package dbms;
+
+import java.util.Comparator;
+
+/**
+ * Order of the rows on some of their fields, each one compared as its type (numbers by value,
+ * VARCHAR fields by their text) in ascending or descending order.
+ */
+public class RowComparator implements Comparator<String[]> {
+    private final int[] fields;
+    private final FieldType[] types;
+    private final boolean[] descending;
+
+    /**
+     * @param fields the indexes of the fields, the first one is the most significant
+     * @param types the type each field is compared as
+     * @param descending for each field, true to sort it in descending order
+     */
+    public RowComparator(int[] fields, FieldType[] types, boolean[] descending) {
+        this.fields = fields.clone();
+        this.types = types.clone();
+        this.descending = descending.clone();
+    }
+
+    /**
+     * Function to create an ascending order on some fields
+     * @param fields the indexes of the fields
+     * @param types the type each field is compared as
+     * @return the comparator
+     */
+    public static RowComparator ascending(int[] fields, FieldType[] types) {
+        return new RowComparator(fields, types, new boolean[fields.length]);
+    }
+
+    @Override
+    public int compare(String[] a, String[] b) {
+        for(int k = 0; k < fields.length; k++) {
+            int c = types[k].compare(a[fields[k]], b[fields[k]]);
+            if(c != 0) return descending[k] ? -c : c;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the indexes of the fields
+     */
+    public int[] getFields() {
+        return fields.clone();
+    }
+
+    /**
+     * @return true if every field is sorted in ascending order
+     */
+    public boolean isAscending() {
+        for(boolean d : descending) {
+            if(d) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,110 @@
+package dbms;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Row layout: an array of String arrays, one per row, and a hash map from each row to its position for duplicate checks
+ */
+public class RowListStore extends RowStore {
+    /**
+     * Storage shared by a store and its snapshots
+     */
+    private static class Rows {
+        public volatile String[][] data = new String[16][];
+        public int size = 0; // written only by the writer
+        public volatile int committed = 0;
+        public final ConcurrentHashMap<List<String>, Integer> rowSet = new ConcurrentHashMap<>();
+        public volatile long estimatedBytes = 0;
+    }
+
+    private final Rows rows;
+    private final int limit; // number of rows of a snapshot, -1 for the store itself
+
+    public RowListStore() {
+        this(new Rows(), -1);
+    }
+
+    private RowListStore(Rows rows, int limit) {
+        this.rows = rows;
+        this.limit = limit;
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.ROWS;
+    }
+
+    @Override
+    public int size() {
+        return limit == -1 ? rows.size : limit;
+    }
+
+    @Override
+    public String[] get(int index) {
+        return rows.data[index];
+    }
+
+    @Override
+    public String get(int index, int field) {
+        return rows.data[index][field];
+    }
+
+    @Override
+    public void add(String[] row) {
+        if(limit != -1) throw new UnsupportedOperationException("snapshots are read only");
+
+        String[][] data = rows.data;
+        if(rows.size == data.length) {
+            data = Arrays.copyOf(data, rows.size * 2);
+            rows.data = data;
+        }
+
+        data[rows.size] = row;
+        // the first position of a row: a snapshot holding it must keep finding it after a later duplicate
+        rows.rowSet.putIfAbsent(Arrays.asList(row), rows.size);
+        rows.size++;
+        rows.estimatedBytes += estimateRowBytes(row);
+    }
+
+    @Override
+    public void commit() {
+        if(limit == -1) rows.committed = rows.size;
+    }
+
+    @Override
+    public RowStore snapshot() {
+        return new RowListStore(rows, limit == -1 ? rows.committed : limit);
+    }
+
+    @Override
+    public RowStore view() {
+        return new RowListStore(rows, size());
+    }
+
+    @Override
+    public boolean contains(String[] row) {
+        Integer position = rows.rowSet.get(Arrays.asList(row));
+        return position != null && position < size();
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return rows.estimatedBytes;
+    }
+
+    /**
+     * Function to roughly estimate the heap used by a row
+     * (the array, its strings and the entries in data and rowSet)
+     * @param row the row
+     * @return the estimated size in bytes
+     */
+    private static long estimateRowBytes(String[] row) {
+        long bytes = 16 + 4L * row.length + 64;
+        for(String field : row) {
+            bytes += 40 + field.length();
+        }
+        return bytes;
+    }
+}
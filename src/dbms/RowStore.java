@@ -0,0 +1,110 @@
+package dbms;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * In-memory storage of the rows of a relation.
+ * Besides the rows, every store keeps a hashed identity of them, so that duplicates are found without scanning.
+ * <p>
+ * Rows are only appended, by one writer at a time, and become visible to readers when the writer commits them.
+ * Readers work on snapshots: read-only views of the rows committed when the snapshot was taken,
+ * sharing the storage with the store and unaffected by the rows added later. The version of a row is its
+ * position, a snapshot sees the rows below its size, so readers never lock nor wait for the writer.
+ * </p>
+ */
+public abstract class RowStore implements Iterable<String[]> {
+    /**
+     * Memory layout of a store
+     */
+    public enum Layout {
+        ROWS, COLUMNS
+    }
+
+    /**
+     * Function to create an empty store
+     * @param layout the layout of the store
+     * @param types the types of the fields of the rows (the row layout keeps every value as a string)
+     * @return the new store
+     */
+    public static RowStore create(Layout layout, FieldType[] types) {
+        if(layout == Layout.COLUMNS) return new ColumnStore(types);
+        return new RowListStore();
+    }
+
+    public abstract Layout getLayout();
+
+    /**
+     * @return the number of rows (for a store being written, also the ones not committed yet)
+     */
+    public abstract int size();
+
+    /**
+     * Function to get a row
+     * @param index the position of the row
+     * @return the row, which must not be modified
+     */
+    public abstract String[] get(int index);
+
+    /**
+     * Function to get a single value
+     * @param index the position of the row
+     * @param field the index of the field
+     * @return the value
+     */
+    public abstract String get(int index, int field);
+
+    /**
+     * Function to append a row, without checking for duplicates
+     * @param row the row, stored as is (it must not be modified afterwards)
+     */
+    public abstract void add(String[] row);
+
+    /**
+     * Function to make the rows added so far visible to the snapshots taken from now on
+     */
+    public abstract void commit();
+
+    /**
+     * Function to get a read-only view of the committed rows
+     * @return the snapshot, which can be read from any thread while rows are added to this store
+     */
+    public abstract RowStore snapshot();
+
+    /**
+     * Function to get a read-only view of all the rows added so far, committed or not
+     * Used by the writer to share the rows with the result of an operation without copying them
+     * @return the view, unaffected by the rows added later
+     */
+    public abstract RowStore view();
+
+    /**
+     * Function to check if a row is present
+     * @param row the row
+     * @return true if an equal row is present, false otherwise
+     */
+    public abstract boolean contains(String[] row);
+
+    /**
+     * @return the estimated heap used by the store in bytes
+     */
+    public abstract long estimatedBytes();
+
+    @Override
+    public Iterator<String[]> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public String[] next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                return get(next++);
+            }
+        };
+    }
+}
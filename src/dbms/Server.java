@@ -0,0 +1,144 @@
+package dbms;
+
+import dbms.commands.Command;
+import dbms.commands.Session;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Server mode: the statements of local clients are received on a TCP port of the loopback interface
+ * or on a Unix domain socket, and each connection is served by its own virtual thread, with its own session (prepared statements).
+ * The statements of different clients run together, synchronized by the locks of the relations they use.
+ * <p>
+ * Protocol: the client sends a statement per line, the server answers with the output of the statement
+ * followed by a line with a single dot (lines of the output starting with a dot get another one in front).
+ * QUIT closes the connection.
+ * </p>
+ */
+public class Server {
+    private final ServerSocketChannel channel;
+    private final String address;
+
+    private Server(ServerSocketChannel channel, String address) {
+        this.channel = channel;
+        this.address = address;
+    }
+
+    /**
+     * Function to open the socket of the server
+     * @param address a port number (TCP on the loopback interface) or the path of a Unix domain socket
+     * @return the server, ready to accept connections
+     * @throws IOException if the socket cannot be opened
+     */
+    public static Server open(String address) throws IOException {
+        ServerSocketChannel channel;
+        SocketAddress local;
+
+        if(address.matches("\\d+")) {
+            channel = ServerSocketChannel.open();
+            local = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        } else {
+            // a socket file left by a previous run would make bind fail
+            Path path = Path.of(address);
+            Files.deleteIfExists(path);
+            channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            local = UnixDomainSocketAddress.of(path);
+        }
+
+        channel.bind(local);
+        return new Server(channel, channel.getLocalAddress().toString());
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Function to accept connections until the socket is closed
+     */
+    public void serve() throws IOException {
+        while(channel.isOpen()) {
+            SocketChannel client = channel.accept();
+            Thread.ofVirtual().name("client-" + client.getRemoteAddress()).start(() -> handle(client));
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void handle(SocketChannel client) {
+        try(client;
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+            DotWriter out = new DotWriter(new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(client), StandardCharsets.UTF_8), 1 << 16))) {
+
+            Session session = new Session();
+            String command;
+            while((command = in.readLine()) != null) {
+                if(command.isBlank()) continue;
+                if(command.trim().equalsIgnoreCase("QUIT")) break;
+
+                try {
+                    Command.parse(command, session).run(out);
+                } catch (Exception ex) {
+                    out.write(ex.getMessage() + "\n");
+                }
+                out.endResponse();
+            }
+        } catch (IOException ex) {
+            // the client went away, nothing to answer
+        }
+    }
+
+    /**
+     * Writer escaping the lines that start with a dot, so that a line with a single dot ends a response
+     */
+    private static class DotWriter extends FilterWriter {
+        private boolean lineStart = true;
+
+        public DotWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if(lineStart && c == '.') out.write('.');
+            out.write(c);
+            lineStart = c == '\n';
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            for(int i = off; i < off + len; i++) write(cbuf[i]);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            for(int i = off; i < off + len; i++) write(str.charAt(i));
+        }
+
+        public void endResponse() throws IOException {
+            if(!lineStart) out.write('\n');
+            out.write(".\n");
+            out.flush();
+            lineStart = true;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dbms;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Temporary file of rows spilled to disk by the operators that run out of memory (sorts and aggregations).
+ * Each row is written as its fields, each one as its length in bytes followed by its UTF-8 bytes;
+ * the number of fields is known by the reader.
+ */
+public class SpillFile {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SpillFile() {}
+
+    /**
+     * Function to create a new spill file in the data folder
+     * @param prefix the prefix of the name of the file
+     * @return the file
+     * @throws IOException if the file cannot be created
+     */
+    public static File create(String prefix) throws IOException {
+        return Relation.createTempFile(prefix, ".spill");
+    }
+
+    /**
+     * @return a buffered stream writing the file from the beginning
+     */
+    public static DataOutputStream writer(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    }
+
+    /**
+     * @return a buffered stream reading the file, whose size is counted in the read bytes
+     */
+    public static DataInputStream reader(File file) throws IOException {
+        Metrics.bytesRead(file.length());
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    }
+
+    public static void writeRow(DataOutputStream out, String[] row) throws IOException {
+        for(String value : row) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Function to read a row
+     * @param in the stream
+     * @param fields the number of fields of the row
+     * @return the row
+     * @throws EOFException at the end of the file
+     */
+    public static String[] readRow(DataInputStream in, int fields) throws IOException {
+        String[] row = new String[fields];
+        for(int i = 0; i < fields; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            row[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,339 @@
+package dbms;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of a relation used by the planner to estimate how many rows each part of a plan produces:
+ * the number of rows and, for each field, the number of distinct values (estimated with a HyperLogLog sketch),
+ * the minimum and the maximum, and the most common values with their frequency (found with the space-saving
+ * algorithm, so the memory used does not depend on the number of distinct values).
+ * They are collected when a relation is saved and by ANALYZE, and kept in the .stats file of the relation.
+ */
+public class Statistics {
+    private static final int MOST_COMMON = 10; // most common values kept for each field
+    private static final int COUNTERS = 64; // values tracked by the space-saving algorithm
+
+    // selectivities used when the statistics cannot tell
+    private static final double DEFAULT_EQUALITY = 0.005;
+    private static final double DEFAULT_RANGE = 1.0 / 3;
+    private static final double DEFAULT_BETWEEN = 1.0 / 9;
+
+    /**
+     * Statistics of a field
+     */
+    public static class Column {
+        private final long distinct;
+        private final String min;
+        private final String max;
+        private final String[] common;
+        private final double[] frequencies;
+
+        public Column(long distinct, String min, String max, String[] common, double[] frequencies) {
+            this.distinct = distinct;
+            this.min = min;
+            this.max = max;
+            this.common = common;
+            this.frequencies = frequencies;
+        }
+
+        /**
+         * @return the estimated number of distinct values
+         */
+        public long getDistinct() {
+            return distinct;
+        }
+
+        /**
+         * @return the most common values, most common first
+         */
+        public String[] getCommonValues() {
+            return common.clone();
+        }
+
+        /**
+         * Function to estimate the fraction of rows where the field is equal to a value
+         * @param value the value
+         * @return the selectivity
+         */
+        public double equality(String value) {
+            double commonTotal = 0;
+            for(int i = 0; i < common.length; i++) {
+                if(common[i].equals(value)) return frequencies[i];
+                commonTotal += frequencies[i];
+            }
+
+            // the other values share the rest of the rows evenly
+            long others = distinct - common.length;
+            if(others <= 0) return 0;
+            return Math.max(0, 1 - commonTotal) / others;
+        }
+
+        /**
+         * Function to estimate the fraction of rows where a numeric field is between two values
+         * @param low the lower bound, null for none
+         * @param high the upper bound, null for none
+         * @return the selectivity, or -1 if unknown
+         */
+        private double range(FieldType type, String low, String high) {
+            if(!type.isNumeric() || min == null || max == null) return -1;
+
+            double from = Double.parseDouble(min);
+            double to = Double.parseDouble(max);
+            if(to <= from) return -1;
+
+            double l = low == null ? from : Math.max(from, Double.parseDouble(low));
+            double h = high == null ? to : Math.min(to, Double.parseDouble(high));
+            return Math.max(0, h - l) / (to - from);
+        }
+    }
+
+    private final long rows;
+    private final Map<String, Column> columns;
+
+    public Statistics(long rows, Map<String, Column> columns) {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * @return the number of rows when the statistics were collected
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @param field the name of a field
+     * @return the statistics of the field, or null if not collected
+     */
+    public Column getColumn(String field) {
+        return columns.get(field);
+    }
+
+    /**
+     * Function to estimate the fraction of rows satisfying a WHERE condition
+     * @param condition the condition
+     * @param type the type of the field of the condition
+     * @param column the statistics of the field, null if unknown
+     * @param other the statistics of the compared field when comparing two fields, null if unknown
+     * @return the selectivity, between 0 and 1
+     */
+    public static double selectivity(Predicate condition, FieldType type, Column column, Column other) {
+        Condition.Operator operator = condition.getOperator();
+
+        if(condition.getOtherField() != null) {
+            double equal = 1.0 / Math.max(1, Math.max(column == null ? 0 : column.distinct, other == null ? 0 : other.distinct));
+            if(column == null && other == null) equal = DEFAULT_EQUALITY;
+            return switch(operator) {
+                case EQUAL -> equal;
+                case NOT_EQUAL -> 1 - equal;
+                default -> DEFAULT_RANGE;
+            };
+        }
+
+        String value = condition.getValue();
+        double selectivity;
+        try {
+            selectivity = switch(operator) {
+                case EQUAL -> column == null ? DEFAULT_EQUALITY : column.equality(value);
+                case NOT_EQUAL -> 1 - (column == null ? DEFAULT_EQUALITY : column.equality(value));
+                case LESS, LESS_EQUAL -> column == null ? -1 : column.range(type, null, value);
+                case GREATER, GREATER_EQUAL -> column == null ? -1 : column.range(type, value, null);
+                case BETWEEN -> column == null ? -1 : column.range(type, value, condition.getUpper());
+            };
+        } catch (NumberFormatException ex) {
+            selectivity = -1;
+        }
+
+        if(selectivity < 0) selectivity = operator == Condition.Operator.BETWEEN ? DEFAULT_BETWEEN : DEFAULT_RANGE;
+        return Math.min(1, Math.max(0, selectivity));
+    }
+
+    /**
+     * Function to collect the statistics of a relation, the rows are split among the threads of the parallel pool
+     * @param relation the relation
+     * @return the statistics
+     */
+    public static Statistics collect(Relation relation) {
+        RowStore store = relation.getStore();
+        String[] names = relation.getFieldNames();
+        FieldType[] types = relation.getFieldTypes();
+        int size = store.size();
+        int tasks = Parallel.isParallel(size) ? Parallel.getParallelism() : 1;
+
+        HyperLogLog[][] sketches = new HyperLogLog[tasks][names.length];
+        HashMap<String, long[]>[][] counters = newCounters(tasks, names.length);
+        String[][] mins = new String[tasks][names.length];
+        String[][] maxs = new String[tasks][names.length];
+
+        Parallel.run(tasks, t -> {
+            for(int f = 0; f < names.length; f++) sketches[t][f] = new HyperLogLog();
+
+            int to = (int) ((long) size * (t + 1) / tasks);
+            for(int i = (int) ((long) size * t / tasks); i < to; i++) {
+                for(int f = 0; f < names.length; f++) {
+                    String value = store.get(i, f);
+                    sketches[t][f].add(value);
+                    count(counters[t][f], value);
+                    if(mins[t][f] == null || types[f].compare(value, mins[t][f]) < 0) mins[t][f] = value;
+                    if(maxs[t][f] == null || types[f].compare(value, maxs[t][f]) > 0) maxs[t][f] = value;
+                }
+            }
+        });
+
+        HashMap<String, Column> columns = new HashMap<>();
+        for(int f = 0; f < names.length; f++) {
+            HyperLogLog sketch = sketches[0][f];
+            HashMap<String, long[]> merged = new HashMap<>();
+            String min = null;
+            String max = null;
+            for(int t = 0; t < tasks; t++) {
+                if(t > 0) sketch.merge(sketches[t][f]);
+                for(Map.Entry<String, long[]> entry : counters[t][f].entrySet()) {
+                    long[] counter = merged.computeIfAbsent(entry.getKey(), k -> new long[2]);
+                    counter[0] += entry.getValue()[0];
+                    counter[1] += entry.getValue()[1];
+                }
+                if(min == null || (mins[t][f] != null && types[f].compare(mins[t][f], min) < 0)) min = mins[t][f];
+                if(max == null || (maxs[t][f] != null && types[f].compare(maxs[t][f], max) > 0)) max = maxs[t][f];
+            }
+
+            long distinct = Math.min(size, Math.max(size == 0 ? 0 : 1, sketch.estimate()));
+            columns.put(names[f], mostCommon(merged, distinct, size, min, max));
+        }
+
+        return new Statistics(size, columns);
+    }
+
+    private static HashMap<String, long[]>[][] newCounters(int tasks, int fields) {
+        @SuppressWarnings("unchecked")
+        HashMap<String, long[]>[][] counters = (HashMap<String, long[]>[][]) new HashMap<?, ?>[tasks][fields];
+        for(int t = 0; t < tasks; t++) {
+            for(int f = 0; f < fields; f++) counters[t][f] = new HashMap<>();
+        }
+        return counters;
+    }
+
+    /**
+     * Function to count a value with the space-saving algorithm: when all the counters are used,
+     * the value takes the place of the least counted one, inheriting its count as error
+     * @param counters the counters, value to {count, error}
+     * @param value the value
+     */
+    private static void count(HashMap<String, long[]> counters, String value) {
+        long[] counter = counters.get(value);
+        if(counter != null) {
+            counter[0]++;
+            return;
+        }
+        if(counters.size() < COUNTERS) {
+            counters.put(value, new long[] {1, 0});
+            return;
+        }
+
+        String least = null;
+        long[] leastCounter = null;
+        for(Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if(leastCounter == null || entry.getValue()[0] < leastCounter[0]) {
+                least = entry.getKey();
+                leastCounter = entry.getValue();
+            }
+        }
+        counters.remove(least);
+        counters.put(value, new long[] {leastCounter[0] + 1, leastCounter[0]});
+    }
+
+    /**
+     * Function to keep the values surely more common than the average one
+     */
+    private static Column mostCommon(HashMap<String, long[]> counters, long distinct, long rows, String min, String max) {
+        ArrayList<Map.Entry<String, long[]>> entries = new ArrayList<>(counters.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0] - b.getValue()[1], a.getValue()[0] - a.getValue()[1]));
+
+        ArrayList<String> common = new ArrayList<>();
+        ArrayList<Double> frequencies = new ArrayList<>();
+        for(Map.Entry<String, long[]> entry : entries) {
+            long guaranteed = entry.getValue()[0] - entry.getValue()[1];
+            if(common.size() == MOST_COMMON || guaranteed < 2 || guaranteed * distinct <= rows) break;
+            common.add(entry.getKey());
+            frequencies.add((double) guaranteed / rows);
+        }
+
+        double[] f = new double[frequencies.size()];
+        for(int i = 0; i < f.length; i++) f[i] = frequencies.get(i);
+        return new Column(distinct, min, max, common.toArray(new String[] {}), f);
+    }
+
+    /**
+     * Function to write the statistics to the .stats file of a relation
+     * Lines: rows,n then for each field field,name,distinct,min,max followed by common,name,value,frequency
+     * @param name the name of the relation
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String name) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("rows,").append(rows).append('\n');
+        for(Map.Entry<String, Column> entry : columns.entrySet()) {
+            Column column = entry.getValue();
+            sb.append(Relation.toCsvLine(new String[] {"field", entry.getKey(), Long.toString(column.distinct),
+                    column.min == null ? "" : column.min, column.max == null ? "" : column.max}));
+            for(int i = 0; i < column.common.length; i++) {
+                sb.append(Relation.toCsvLine(new String[] {"common", entry.getKey(), column.common[i], Double.toString(column.frequencies[i])}));
+            }
+        }
+
+        try(FileWriter fw = new FileWriter(Relation.getFile(name, ".stats"), StandardCharsets.UTF_8)) {
+            fw.write(sb.toString());
+        }
+    }
+
+    /**
+     * Function to read the statistics of a relation
+     * @param name the name of the relation
+     * @return the statistics, or null if never collected or not readable
+     */
+    public static Statistics read(String name) {
+        File file = Relation.getFile(name, ".stats");
+        if(!file.exists()) return null;
+
+        try {
+            long rows = 0;
+            HashMap<String, String[]> fields = new HashMap<>();
+            HashMap<String, List<String[]>> common = new HashMap<>();
+            for(String line : CsvReader.splitLines(Files.readString(file.toPath(), StandardCharsets.UTF_8))) {
+                String[] values = CsvReader.splitLine(line);
+                switch(values[0]) {
+                    case "rows" -> rows = Long.parseLong(values[1]);
+                    case "field" -> fields.put(values[1], values);
+                    case "common" -> common.computeIfAbsent(values[1], k -> new ArrayList<>()).add(values);
+                    default -> {}
+                }
+            }
+
+            HashMap<String, Column> columns = new HashMap<>();
+            for(String[] field : fields.values()) {
+                List<String[]> values = common.getOrDefault(field[1], List.of());
+                String[] commonValues = new String[values.size()];
+                double[] frequencies = new double[values.size()];
+                for(int i = 0; i < commonValues.length; i++) {
+                    commonValues[i] = values.get(i)[2];
+                    frequencies[i] = Double.parseDouble(values.get(i)[3]);
+                }
+
+                columns.put(field[1], new Column(Long.parseLong(field[2]), field[3].isEmpty() ? null : field[3],
+                        field[4].isEmpty() ? null : field[4], commonValues, frequencies));
+            }
+            return new Statistics(rows, columns);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+}
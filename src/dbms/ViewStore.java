@@ -0,0 +1,160 @@
+package dbms;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Read-only store whose rows are the ones of other stores, without copying them (the result of a union
+ * or of a projection). The sources are read-only views of the stores, so a view never changes and is its own snapshot.
+ * A relation over a view copies its rows into a store of its own only when it is written.
+ */
+public abstract class ViewStore extends RowStore {
+    /**
+     * Function to create the view of the union of two stores
+     * @param first the first store
+     * @param firstRows the positions of the rows of the first store in the union, null for all
+     * @param second the second store
+     * @param secondRows the positions of the rows of the second store in the union, null for all
+     * @return the view, the rows of the first store followed by the ones of the second one
+     */
+    public static ViewStore union(RowStore first, int[] firstRows, RowStore second, int[] secondRows) {
+        return new UnionView(first, firstRows, second, secondRows);
+    }
+
+    /**
+     * Function to create the view of a projection of a store
+     * @param source the store
+     * @param fields the index in the source of each field of the view
+     * @return the view, its rows are built when requested
+     */
+    public static ViewStore projection(RowStore source, int[] fields) {
+        return new ProjectionView(source, fields);
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.ROWS;
+    }
+
+    @Override
+    public void add(String[] row) {
+        throw new UnsupportedOperationException("views are read only");
+    }
+
+    @Override
+    public void commit() {}
+
+    @Override
+    public RowStore snapshot() {
+        return this;
+    }
+
+    @Override
+    public RowStore view() {
+        return this;
+    }
+
+    /**
+     * Concatenation of the rows of two stores, each one possibly restricted to some positions
+     */
+    private static class UnionView extends ViewStore {
+        private final RowStore first;
+        private final int[] firstRows;
+        private final RowStore second;
+        private final int[] secondRows;
+        private final int firstSize;
+        private final int size;
+
+        public UnionView(RowStore first, int[] firstRows, RowStore second, int[] secondRows) {
+            this.first = first;
+            this.firstRows = firstRows;
+            this.second = second;
+            this.secondRows = secondRows;
+            firstSize = firstRows == null ? first.size() : firstRows.length;
+            size = firstSize + (secondRows == null ? second.size() : secondRows.length);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public String[] get(int index) {
+            if(index < firstSize) return first.get(firstRows == null ? index : firstRows[index]);
+            index -= firstSize;
+            return second.get(secondRows == null ? index : secondRows[index]);
+        }
+
+        @Override
+        public String get(int index, int field) {
+            if(index < firstSize) return first.get(firstRows == null ? index : firstRows[index], field);
+            index -= firstSize;
+            return second.get(secondRows == null ? index : secondRows[index], field);
+        }
+
+        @Override
+        public boolean contains(String[] row) {
+            // the rows left out are duplicates of rows kept
+            return first.contains(row) || second.contains(row);
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return 64 + 4L * (firstRows == null ? 0 : firstRows.length) + 4L * (secondRows == null ? 0 : secondRows.length);
+        }
+    }
+
+    /**
+     * Some fields of the rows of a store, in any order
+     */
+    private static class ProjectionView extends ViewStore {
+        private final RowStore source;
+        private final int[] fields;
+        private volatile HashSet<List<String>> rowSet = null; // built by the first duplicate check
+
+        public ProjectionView(RowStore source, int[] fields) {
+            this.source = source;
+            this.fields = fields.clone();
+        }
+
+        @Override
+        public int size() {
+            return source.size();
+        }
+
+        @Override
+        public String[] get(int index) {
+            String[] row = new String[fields.length];
+            for(int i = 0; i < fields.length; i++) row[i] = source.get(index, fields[i]);
+            return row;
+        }
+
+        @Override
+        public String get(int index, int field) {
+            return source.get(index, fields[field]);
+        }
+
+        @Override
+        public boolean contains(String[] row) {
+            HashSet<List<String>> rows = rowSet;
+            if(rows == null) {
+                synchronized(this) {
+                    if(rowSet == null) {
+                        HashSet<List<String>> set = new HashSet<>();
+                        for(int i = 0; i < size(); i++) set.add(Arrays.asList(get(i)));
+                        rowSet = set;
+                    }
+                    rows = rowSet;
+                }
+            }
+            return rows.contains(Arrays.asList(row));
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return 64 + 4L * fields.length + (rowSet == null ? 0 : 100L * rowSet.size());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package dbms.commands;
+
+import dbms.Catalog;
+import dbms.Relation;
+import dbms.Statistics;
+
+import java.util.List;
+
+public class Analyze extends Command {
+    private final String name;
+
+    /**
+     * Command of type ANALYZE relation
+     * Collects the statistics of the relation used by the planner to choose the join order
+     */
+    public Analyze(String command) throws Exception {
+        String[] tokens = command.trim().split(" +");
+        if(tokens.length != 2) throw new Exception("ANALYZE: invalid syntax, expected ANALYZE relation");
+
+        name = tokens[1];
+    }
+
+    @Override
+    public List<String> getWrittenRelations() {
+        return List.of(name);
+    }
+
+    @Override
+    public String execute() throws Exception {
+        Relation relation = Catalog.get(name);
+        if(relation == null) throw new Exception("ANALYZE: relation not found");
+
+        Statistics statistics = relation.analyze();
+
+        StringBuilder sb = new StringBuilder("ANALYZE OK (" + statistics.getRows() + " rows; distinct values:");
+        for(String field : relation.getFieldNames()) {
+            sb.append(' ').append(field).append('=').append(statistics.getColumn(field).getDistinct());
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -1,16 +1,83 @@
 package dbms.commands;
 
+import dbms.Metrics;
+import dbms.RelationLocks;
+
+import java.io.Writer;
+import java.util.List;
+
 public abstract class Command {
     protected Command() {}
 
-    public static Command parse(String command) throws Exception {
+    /**
+     * Function to parse a statement
+     * @param command the text of the statement
+     * @param session the session running it (the prepared statements are kept per session)
+     * @return the command
+     */
+    public static Command parse(String command, Session session) throws Exception {
         String[] tokens = command.toUpperCase().split(" ");
 
-        if(tokens[0].equals("SELECT")) return new Select(command);
-        if((tokens[0] + tokens[1]).equals("INSERTINTO")) return new Insert(command);
+        if(tokens[0].equals("SELECT")) return StatementCache.select(command);
+        if(tokens[0].equals("COPY")) return new Copy(command);
+        if(tokens.length > 1 && (tokens[0] + tokens[1]).equals("INSERTINTO")) return new Insert(command);
+        if(tokens[0].equals("CONVERT")) return new Convert(command);
+        if(tokens.length > 1 && (tokens[0] + tokens[1]).equals("CREATEINDEX")) return new CreateIndex(command);
+        if(tokens.length > 1 && (tokens[0] + tokens[1]).equals("EXPLAINSELECT")) return new Explain(command);
+        if(tokens.length > 2 && (tokens[0] + tokens[1] + tokens[2]).equals("EXPLAINANALYZESELECT")) return new Explain(command);
+        if(tokens[0].equals("SET")) return new Set(command);
+        if(tokens[0].equals("PREPARE")) return new Prepare(command, session);
+        if(tokens[0].equals("EXECUTE")) return new Execute(command, session);
+        if(tokens[0].equals("ANALYZE")) return new Analyze(command);
 
         throw new Exception("Unknown command: " + tokens[0]);
     }
 
     public String execute() throws Exception { return "NO RESULT DEFINED"; }
+
+    /**
+     * @return the names of the relations the command reads under a shared lock
+     * (SELECT reads snapshots of the relations instead, without locking)
+     */
+    public List<String> getReadRelations() {
+        return List.of();
+    }
+
+    /**
+     * @return the names of the relations modified by the command
+     */
+    public List<String> getWrittenRelations() {
+        return List.of();
+    }
+
+    /**
+     * Function to execute the command holding the locks of the relations it uses,
+     * so that it can run together with the commands of other clients, and counting it in the metrics
+     * @param out the destination
+     */
+    public void run(Writer out) throws Exception {
+        boolean failed = true;
+        try {
+            RelationLocks.Held locks = RelationLocks.acquire(getReadRelations(), getWrittenRelations());
+            try {
+                execute(out);
+            } finally {
+                locks.close();
+            }
+            failed = false;
+        } finally {
+            Metrics.statement(failed);
+        }
+    }
+
+    /**
+     * Function to execute the command writing its result to a stream
+     * Commands producing large results override it to write them while they are produced
+     * @param out the destination
+     */
+    public void execute(Writer out) throws Exception {
+        out.write(execute());
+        out.write("\n");
+        out.flush();
+    }
 }
@@ -0,0 +1,38 @@
+package dbms.commands;
+
+import dbms.Catalog;
+import dbms.Relation;
+
+import java.util.List;
+
+public class Convert extends Command {
+    private final String name;
+    private final Relation.Format format;
+
+    /**
+     * Command of type CONVERT relation TO [CSV,BINARY]
+     */
+    public Convert(String command) throws Exception {
+        String[] tokens = command.trim().split(" +");
+        if(tokens.length != 4 || !tokens[2].equalsIgnoreCase("to")) throw new Exception("CONVERT: invalid syntax, expected CONVERT relation TO [CSV,BINARY]");
+
+        name = tokens[1].toLowerCase();
+        try {
+            format = Relation.Format.valueOf(tokens[3].toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new Exception("CONVERT: unknown format " + tokens[3]);
+        }
+    }
+
+    @Override
+    public List<String> getWrittenRelations() {
+        return List.of(name);
+    }
+
+    @Override
+    public String execute() throws Exception {
+        Relation.convert(name, format);
+        Catalog.invalidate(name);
+        return "CONVERT OK";
+    }
+}
@@ -0,0 +1,118 @@
+package dbms.commands;
+
+import dbms.Catalog;
+import dbms.CsvReader;
+import dbms.FieldType;
+import dbms.InsertLog;
+import dbms.Metrics;
+import dbms.Relation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Copy extends Command {
+    private static final Pattern SYNTAX = Pattern.compile("^\\s*COPY\\s+(\\w+)\\s+FROM\\s+'([^']+)'\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final int BATCH_SIZE = Integer.getInteger("dbms.copy.batch", 10_000);
+
+    private final String name;
+    private final File file;
+
+    /**
+     * Command of type COPY relation FROM 'file.csv'
+     * The file has a row per line with the values separated by commas, quoted as in the files of the relations,
+     * a first line equal to the fields of the relation is skipped. The file is parsed as the files of the relations
+     * are loaded, and the rows are inserted in batches, each one checked for duplicates and written to the insert log at once.
+     * Rows already present are skipped, a line with a wrong number of fields or an invalid value stops the copy
+     * (the rows given by the parser before it stay inserted, see CsvReader.read).
+     */
+    public Copy(String command) throws Exception {
+        Matcher m = SYNTAX.matcher(command);
+        if(!m.matches()) throw new Exception("COPY: invalid syntax, expected COPY relation FROM 'file.csv'");
+
+        name = m.group(1).toLowerCase();
+        file = new File(m.group(2));
+    }
+
+    @Override
+    public List<String> getWrittenRelations() {
+        return List.of(name);
+    }
+
+    @Override
+    public String execute() throws Exception {
+        Relation relation = Catalog.get(name);
+        if(relation == null) throw new Exception("COPY: relation not found");
+        if(!file.isFile()) throw new Exception("COPY: file " + file + " not found");
+
+        String[] fields = relation.getFieldNames();
+        boolean[] keep = new boolean[fields.length];
+        Arrays.fill(keep, true);
+        boolean header = file.length() > 0 && isHeader(CsvReader.readHeader(file), fields);
+
+        long start = System.nanoTime();
+        long[] counts = new long[2]; // rows read, rows inserted
+        Exception[] insertError = new Exception[1];
+        ArrayList<String[]> batch = new ArrayList<>(BATCH_SIZE);
+
+        try {
+            CsvReader.read(file, header, keep, relation.getFieldTypes(), row -> {
+                batch.add(row);
+                counts[0]++;
+                if(batch.size() == BATCH_SIZE) {
+                    try {
+                        counts[1] += insertBatch(relation, batch);
+                    } catch (Exception ex) {
+                        insertError[0] = ex;
+                        throw ex;
+                    }
+                }
+            });
+        } catch (Exception ex) {
+            if(insertError[0] != null) throw insertError[0];
+            throw new Exception("COPY: " + ex.getMessage() + " (" + (counts[1] + insertBatch(relation, batch)) + " rows copied)");
+        }
+        counts[1] += insertBatch(relation, batch);
+        Metrics.bytesRead(file.length());
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return String.format("COPY %d rows (%d duplicates skipped) in %.3f s, %.0f rows/s",
+                counts[1], counts[0] - counts[1], seconds, counts[1] / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * @return true if the line is the header of a relation file with the given fields, with or without their types
+     */
+    private static boolean isHeader(String[] row, String[] fields) {
+        if(row.length != fields.length) return false;
+        for(int i = 0; i < row.length; i++) {
+            if(!FieldType.nameOf(row[i]).equals(fields[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Function to insert a batch of rows in the relation and in its log, then empty the batch
+     * @return the number of rows inserted
+     */
+    private static int insertBatch(Relation relation, List<String[]> batch) throws Exception {
+        if(batch.isEmpty()) return 0;
+
+        try {
+            List<String[]> inserted = relation.insert(batch, true);
+            InsertLog.append(relation.getName(), inserted);
+            relation.commit();
+            Catalog.update(relation);
+            batch.clear();
+            return inserted.size();
+        } catch (IOException e) {
+            // the rows are in memory but not on disk, drop the cached copy
+            Catalog.invalidate(relation.getName());
+            throw e;
+        }
+    }
+}
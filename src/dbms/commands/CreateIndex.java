@@ -0,0 +1,50 @@
+package dbms.commands;
+
+import dbms.Catalog;
+import dbms.Index;
+import dbms.Relation;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class CreateIndex extends Command {
+    private static final Pattern SYNTAX = Pattern.compile("CREATE\\s+INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)\\s*\\(\\s*(\\w+)\\s*\\)(?:\\s+USING\\s+(\\w+))?\\s*", Pattern.CASE_INSENSITIVE);
+
+    private final String name;
+    private final String relation;
+    private final String field;
+    private final Index.Type type;
+
+    /**
+     * Command of type CREATE INDEX name ON relation(field) [USING HASH|BTREE]
+     */
+    public CreateIndex(String command) throws Exception {
+        Matcher m = SYNTAX.matcher(command.trim());
+        if(!m.matches()) throw new Exception("CREATE INDEX: invalid syntax, expected CREATE INDEX name ON relation(field) [USING HASH|BTREE]");
+
+        name = m.group(1);
+        field = m.group(3);
+
+        relation = m.group(2);
+
+        String using = m.group(4) == null ? "HASH" : m.group(4).toUpperCase();
+        if(using.equals("HASH")) type = Index.Type.HASH;
+        else if(using.equals("BTREE") || using.equals("ORDERED")) type = Index.Type.ORDERED;
+        else throw new Exception("CREATE INDEX: unknown index type " + m.group(4));
+    }
+
+    @Override
+    public List<String> getWrittenRelations() {
+        return List.of(relation);
+    }
+
+    @Override
+    public String execute() throws Exception {
+        Relation relation = Catalog.get(this.relation);
+        if(relation == null) throw new Exception("CREATE INDEX: relation not found");
+
+        relation.createIndex(name, field, type);
+        return "CREATE INDEX OK";
+    }
+}
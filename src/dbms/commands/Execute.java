@@ -0,0 +1,69 @@
+package dbms.commands;
+
+import dbms.Utils;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Execute extends Command {
+    private static final Pattern SYNTAX = Pattern.compile("^\\s*EXECUTE\\s+(\\w+)\\s*(?:\\((.*)\\))?\\s*$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final Select select;
+
+    /**
+     * Command of type EXECUTE name ('value', ...), running a statement prepared with PREPARE
+     * by the same session, with a value for each of its parameters, in order
+     */
+    public Execute(String command, Session session) throws Exception {
+        Matcher m = SYNTAX.matcher(command);
+        if(!m.matches()) throw new Exception("EXECUTE: invalid syntax, expected EXECUTE name ('value', ...)");
+
+        Select prepared = session.getPrepared(m.group(1));
+        if(prepared == null) throw new Exception("EXECUTE: prepared statement " + m.group(1) + " not found");
+
+        select = prepared.bind(parseValues(m.group(2)));
+    }
+
+    /**
+     * Function to split the list of values of an EXECUTE
+     * @param list the values separated by commas, quoted or not (quoted values can contain commas)
+     * @return the values
+     */
+    private static String[] parseValues(String list) throws Exception {
+        ArrayList<String> values = new ArrayList<>();
+        if(list == null || list.isBlank()) return new String[] {};
+
+        int pos = 0;
+        while(true) {
+            while(pos < list.length() && list.charAt(pos) == ' ') pos++;
+
+            int end;
+            if(pos < list.length() && list.charAt(pos) == '\'') {
+                end = list.indexOf('\'', pos + 1);
+                if(end == -1) throw new Exception("EXECUTE: invalid string value " + list.substring(pos));
+                values.add(Utils.getValueFromString(list.substring(pos, end + 1)));
+                end = list.indexOf(',', end);
+            } else {
+                end = list.indexOf(',', pos);
+                values.add(list.substring(pos, end == -1 ? list.length() : end).trim());
+            }
+
+            if(end == -1) break;
+            pos = end + 1;
+        }
+
+        return values.toArray(new String[] {});
+    }
+
+    @Override
+    public String execute() throws Exception {
+        return select.execute();
+    }
+
+    @Override
+    public void execute(Writer out) throws Exception {
+        select.execute(out);
+    }
+}
@@ -0,0 +1,24 @@
+package dbms.commands;
+
+public class Explain extends Command {
+    private final Select select;
+    private final boolean analyze;
+
+    /**
+     * Command of type EXPLAIN [ANALYZE] SELECT ...
+     * With ANALYZE the query is executed (the result is discarded) and each node of the plan
+     * shows its actual rows, its time and the bytes it allocated
+     */
+    public Explain(String command) throws Exception {
+        String statement = command.trim().substring("EXPLAIN".length()).trim();
+        analyze = statement.toUpperCase().startsWith("ANALYZE ");
+        if(analyze) statement = statement.substring("ANALYZE".length()).trim();
+
+        select = new Select(statement);
+    }
+
+    @Override
+    public String execute() throws Exception {
+        return analyze ? select.analyze() : select.explain();
+    }
+}
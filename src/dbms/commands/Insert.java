@@ -1,42 +1,74 @@
 package dbms.commands;
 
+import dbms.Catalog;
+import dbms.InsertLog;
 import dbms.Relation;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
 
 public class Insert extends Command {
-    private Relation relation;
-    private ArrayList<String> values = new ArrayList<>();
+    private String name;
+    private ArrayList<String[]> rows = new ArrayList<>();
 
+    /**
+     * Command of type INSERT INTO relation VALUES (v1, v2, ...), (v1, v2, ...) ...
+     */
     public Insert(String command) throws Exception {
         String[] tokens = command.toLowerCase().split(" ");
 
-        // get the relation
-        relation = Relation.load(tokens[2]);
-        if(relation == null) throw new Exception("INSERT: relation not found");
+        // get the relation, looked up when the insert runs
+        name = tokens[2];
 
         // check if VALUES keyword exists
         if(!tokens[3].equals("values")) throw new Exception("VALUES keyword not found in insert statement");
 
-        // extract values
-        int openParethesisIndex = command.indexOf("(");
-        int closeParenthesisIndex = command.indexOf(")");
-        String valStr = command.substring(openParethesisIndex + 1, closeParenthesisIndex).replace(" ", "").replace("'", "");
-        values.addAll(Arrays.asList(valStr.split(",")));
+        // extract the values of each tuple, one after the other
+        int pos = tokens[0].length() + tokens[1].length() + tokens[2].length() + tokens[3].length() + 4;
+        while(pos < command.length()) {
+            int openParethesisIndex = command.indexOf("(", pos);
+            if(openParethesisIndex == -1) break;
+
+            String separator = command.substring(pos, openParethesisIndex).trim();
+            if(!separator.equals(rows.isEmpty() ? "" : ",")) throw new Exception("INSERT: expected a comma between the tuples");
+
+            int closeParenthesisIndex = command.indexOf(")", openParethesisIndex);
+            if(closeParenthesisIndex == -1) throw new Exception("INSERT: missing closing parenthesis");
+
+            String valStr = command.substring(openParethesisIndex + 1, closeParenthesisIndex).replace(" ", "").replace("'", "");
+            rows.add(valStr.split(","));
+            pos = closeParenthesisIndex + 1;
+        }
+
+        if(rows.isEmpty()) throw new Exception("INSERT: no values to insert");
+        if(!command.substring(pos).isBlank()) throw new Exception("INSERT: invalid syntax near " + command.substring(pos).trim());
+    }
+
+    @Override
+    public List<String> getWrittenRelations() {
+        return List.of(name);
     }
 
     @Override
     public String execute() {
-        String[] values = this.values.toArray(new String[]{});
+        Relation relation = Catalog.get(name);
+        if(relation == null) return "INSERT: relation not found";
 
         try {
-            relation.insert(values);
-            relation.save();
+            // the whole statement is checked, applied and logged as a single batch
+            List<String[]> inserted = relation.insert(rows, false);
+            InsertLog.append(relation.getName(), inserted);
+            relation.commit();
+            Catalog.update(relation);
+        } catch (IOException e) {
+            // the rows are in memory but not on disk, drop the cached copy
+            Catalog.invalidate(relation.getName());
+            return e.getMessage();
         } catch (Exception e) {
             return e.getMessage();
         }
 
-        return "INSERT OK";
+        return rows.size() == 1 ? "INSERT OK" : "INSERT OK (" + rows.size() + " rows)";
     }
 }
@@ -0,0 +1,32 @@
+package dbms.commands;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Prepare extends Command {
+    private static final Pattern SYNTAX = Pattern.compile("^\\s*PREPARE\\s+(\\w+)\\s+AS\\s+(SELECT\\s.*)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final Session session;
+    private final String name;
+    private final Select select;
+
+    /**
+     * Command of type PREPARE name AS SELECT ... WHERE field = ? ...
+     * The statement is parsed once and executed any number of times with EXECUTE name (value, ...)
+     * by the same session
+     */
+    public Prepare(String command, Session session) throws Exception {
+        Matcher m = SYNTAX.matcher(command);
+        if(!m.matches()) throw new Exception("PREPARE: invalid syntax, expected PREPARE name AS SELECT ...");
+
+        this.session = session;
+        name = m.group(1).toLowerCase();
+        select = new Select(m.group(2));
+    }
+
+    @Override
+    public String execute() {
+        session.prepare(name, select);
+        return "PREPARE OK";
+    }
+}
@@ -1,31 +1,92 @@
 package dbms.commands;
 
-import dbms.Condition;
+import dbms.Aggregate;
+import dbms.Catalog;
+import dbms.Predicate;
 import dbms.Relation;
+import dbms.exec.ResultWriter;
+import dbms.plan.PlanNode;
+import dbms.plan.Planner;
+import dbms.plan.SortKey;
 
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 public class Select extends Command {
-    private static final String[] KEYWORDS = {"from", "join", "where"};
+    private static final String[] KEYWORDS = {"from", "join", "where", "group", "order", "limit"};
 
     private static class Join {
-        public Relation relation;
+        public String relation;
         public String condition;
 
-        public Join(Relation relation, String condition) {
+        public Join(String relation, String condition) {
             this.relation = relation;
             this.condition = condition;
         }
     }
 
-    private Relation relation;
+    private String relation;
     private ArrayList<Join> joins = new ArrayList<>();
     private ArrayList<String> fields = new ArrayList<>();
-    private ArrayList<String> conditions = new ArrayList<>();
+    private ArrayList<Predicate> conditions = new ArrayList<>();
+    private ArrayList<String> groupBy = new ArrayList<>();
+    private ArrayList<SortKey> order = new ArrayList<>();
+    private long limit = -1;
+    private int parameters = 0;
 
+    /**
+     * Command of type SELECT fields FROM relation [JOIN relation ON condition ...] [WHERE condition AND ...]
+     * [GROUP BY field, ...] [ORDER BY field [ASC|DESC], ...] [LIMIT n]
+     * The fields can be aggregates: COUNT(*), COUNT(field), SUM(field), MIN(field), MAX(field), AVG(field).
+     * WHERE conditions compare with = <> < <= > >= or BETWEEN low AND high.
+     * The values of the WHERE conditions can be parameters (?), given later with bind.
+     * The statement is only parsed here, the relations are looked up when it is executed.
+     */
     public Select(String command) throws Exception {
-        String[] tokens = command.split(" ");
+        String[] tokens = command.trim().split(" +");
+
+        // get LIMIT, always the last clause
+        for(int i = 1; i < tokens.length; i++) {
+            if(!tokens[i].equalsIgnoreCase("limit")) continue;
+            if(i != tokens.length - 2) throw new Exception("select: invalid LIMIT syntax");
+
+            try {
+                limit = Long.parseLong(tokens[i + 1]);
+            } catch (NumberFormatException ex) {
+                throw new Exception("select: invalid LIMIT value " + tokens[i + 1]);
+            }
+            if(limit < 0) throw new Exception("select: invalid LIMIT value " + tokens[i + 1]);
+            tokens = Arrays.copyOf(tokens, i);
+            break;
+        }
+
+        // get ORDER BY, always after FROM, JOIN and WHERE
+        for(int i = 1; i < tokens.length - 1; i++) {
+            if(!tokens[i].equalsIgnoreCase("order") || !tokens[i + 1].equalsIgnoreCase("by")) continue;
+            if(i + 2 == tokens.length) throw new Exception("select: no fields in ORDER BY");
+
+            for(String key : String.join(" ", Arrays.asList(tokens).subList(i + 2, tokens.length)).split(",")) {
+                order.add(SortKey.parse(key));
+            }
+            tokens = Arrays.copyOf(tokens, i);
+            break;
+        }
+
+        // get GROUP BY, after FROM, JOIN and WHERE
+        for(int i = 1; i < tokens.length - 1; i++) {
+            if(!tokens[i].equalsIgnoreCase("group") || !tokens[i + 1].equalsIgnoreCase("by")) continue;
+            if(i + 2 == tokens.length) throw new Exception("select: no fields in GROUP BY");
+
+            for(String field : String.join("", Arrays.asList(tokens).subList(i + 2, tokens.length)).split(",")) {
+                if(field.isEmpty()) throw new Exception("select: invalid GROUP BY syntax");
+                groupBy.add(field);
+            }
+            tokens = Arrays.copyOf(tokens, i);
+            break;
+        }
 
         // get FROM index
         int fromIndex = -1;
@@ -34,34 +95,30 @@ public class Select extends Command {
         }
         if(fromIndex == -1) throw new Exception("FROM keyword not found in select statement");
 
-        // load the relation
+        // get the relation
         if(tokens.length <= fromIndex + 1) throw new Exception("relation name not found in select statement");
-        relation = Relation.load(tokens[fromIndex + 1]);
-        if(relation == null) throw new Exception("SELECT: relation not found");
+        relation = tokens[fromIndex + 1];
 
         // get fields to extract
-        String fieldsStr = "";
-        for(int i = 1; i < fromIndex; i++) {
-            fieldsStr += tokens[i];
+        String fieldsStr = String.join("", Arrays.asList(tokens).subList(1, fromIndex));
+        for(String field : fieldsStr.split(",")) {
+            // aggregates are named as FUNCTION(field)
+            Aggregate.parse(field);
+            fields.add(Aggregate.canonical(field));
         }
-        fields.addAll(Arrays.asList(fieldsStr.split(",")));
         if(fields.isEmpty()) throw new Exception("no fields to extract in select statement");
 
         // find JOIN keywords and extract joins
         for(int i = 1; i < tokens.length; i++) {
             if(tokens[i].equalsIgnoreCase("join")) {
-                if(!tokens[i + 2].equalsIgnoreCase("on")) {
+                if(i + 2 >= tokens.length || !tokens[i + 2].equalsIgnoreCase("on")) {
                     throw new Exception("select: invalid JOIN syntax");
                 }
 
                 int endJoinIndex = getNextKeywordIndex(tokens, i + 3);
-                String joinCondition = "";
-
-                for(int j = i + 3; j < endJoinIndex; j++) {
-                    joinCondition += tokens[j] + " ";
-                }
+                String joinCondition = String.join(" ", Arrays.asList(tokens).subList(i + 3, endJoinIndex));
 
-                joins.add(new Join(Relation.load(tokens[i + 1]), joinCondition.trim()));
+                joins.add(new Join(tokens[i + 1], joinCondition));
             }
         }
 
@@ -72,12 +129,63 @@ public class Select extends Command {
         }
         if(whereIndex == -1) return;
 
-        // insert conditions
-        String conditionStr = "";
-        for(int i = whereIndex + 1; i < tokens.length; i++) {
-            conditionStr += tokens[i] + " ";
+        // parse conditions, numbering the parameters in order
+        // (the AND of BETWEEN low AND high belongs to the condition)
+        String conditionStr = String.join(" ", Arrays.asList(tokens).subList(whereIndex + 1, tokens.length));
+        String pending = null;
+        for(String condition : conditionStr.split("(?i) and ")) {
+            if(pending != null) {
+                condition = pending + " AND " + condition;
+                pending = null;
+            } else if(condition.matches("(?i)\\S+ between \\S+")) {
+                pending = condition;
+                continue;
+            }
+
+            Predicate predicate = Predicate.parse(condition, parameters);
+            parameters += predicate.getParameterCount();
+            conditions.add(predicate);
+        }
+        if(pending != null) throw new Exception("select: BETWEEN without AND in " + pending);
+    }
+
+    /**
+     * Copy of a statement with other conditions
+     */
+    private Select(Select template, ArrayList<Predicate> conditions) {
+        this.relation = template.relation;
+        this.joins = template.joins;
+        this.fields = template.fields;
+        this.conditions = conditions;
+        this.groupBy = template.groupBy;
+        this.order = template.order;
+        this.limit = template.limit;
+    }
+
+    /**
+     * @return the number of parameters (?) of the statement
+     */
+    public int getParameterCount() {
+        return parameters;
+    }
+
+    /**
+     * Function to give a value to the parameters of the statement
+     * The parsed statement is shared, only the conditions with a parameter are replaced
+     * @param values the values of the parameters, in the order they appear
+     * @return the statement ready to be executed
+     * @throws Exception if the number of values is not the number of parameters
+     */
+    public Select bind(String[] values) throws Exception {
+        if(values.length != parameters) throw new Exception("select: expected " + parameters + " parameters, got " + values.length);
+        if(parameters == 0) return this;
+
+        ArrayList<Predicate> bound = new ArrayList<>(conditions.size());
+        for(Predicate condition : conditions) {
+            bound.add(condition.bind(values));
         }
-        conditions.addAll(Arrays.asList(conditionStr.split(" and ")));
+
+        return new Select(this, bound);
     }
 
     private int getNextKeywordIndex(String[] tokens, int startIndex) {
@@ -90,22 +198,87 @@ public class Select extends Command {
         return tokens.length;
     }
 
-    @Override
-    public String execute() throws Exception {
-        if(relation == null) return "no relation loaded";
+    /**
+     * Function to get the names that the query can use as fields: the words of the field list (also inside aggregates),
+     * of the conditions, of the join conditions, of GROUP BY and of ORDER BY
+     * @return the names, or null if the query needs all the fields (SELECT *)
+     */
+    private Set<String> getUsedFields() {
+        if(fields.contains("*")) return null;
 
-        for(Join join : joins) {
-            relation = relation.join(join.relation, join.condition);
+        ArrayList<String> texts = new ArrayList<>(fields);
+        for(Predicate condition : conditions) {
+            texts.add(condition.getField());
+            if(condition.getOtherField() != null) texts.add(condition.getOtherField());
         }
+        for(Join join : joins) texts.add(join.condition);
+        texts.addAll(groupBy);
+        for(SortKey key : order) texts.add(key.getField());
 
-        if(!fields.getFirst().equals("*")) {
-            relation = relation.projection(fields.toArray(new String[] {}));
+        HashSet<String> used = new HashSet<>();
+        for(String text : texts) {
+            for(String word : text.split("[\\s(),=<>!']+")) {
+                if(!word.isEmpty()) used.add(word);
+            }
         }
+        return used;
+    }
+
+    /**
+     * Function to build the logical plan of the query
+     * @return the root of the plan
+     */
+    public PlanNode plan() throws Exception {
+        ArrayList<Relation> relations = new ArrayList<>();
+        ArrayList<String> joinConditions = new ArrayList<>();
 
-        for(String condition : conditions) {
-            relation = relation.selection(condition);
+        // the statement reads snapshots of the relations as they are now, without locking them,
+        // loaded with only the fields the query uses
+        Set<String> columns = getUsedFields();
+        Relation from = Catalog.get(relation, columns);
+        if(from == null) throw new Exception("SELECT: relation not found");
+        relations.add(from.snapshot());
+
+        for(Join join : joins) {
+            Relation joined = Catalog.get(join.relation, columns);
+            if(joined == null) throw new Exception("SELECT: joined relation not found");
+            relations.add(joined.snapshot());
+            joinConditions.add(join.condition);
         }
 
-        return relation.toString();
+        return Planner.plan(relations, joinConditions, fields, conditions, groupBy, order, limit);
+    }
+
+    @Override
+    public String execute() throws Exception {
+        return plan().execute().toString();
+    }
+
+    @Override
+    public void execute(Writer out) throws Exception {
+        PlanNode root = plan();
+        new ResultWriter(out).write(root.getName(), root.open());
+        out.write("\n");
+        out.flush();
+    }
+
+    /**
+     * Function to describe the plan of the query without executing it
+     * @return the plan tree
+     */
+    public String explain() throws Exception {
+        return plan().explain();
+    }
+
+    /**
+     * Function to execute the query measuring the time and the rows of each node of the plan
+     * @return the plan tree with the measures, and the time spent loading the relations and planning
+     */
+    public String analyze() throws Exception {
+        long start = System.nanoTime();
+        PlanNode root = plan();
+        long planning = System.nanoTime() - start;
+
+        return root.analyze() + String.format("Planning (with the load of the relations): %.3f ms%n", planning / 1e6);
     }
 }
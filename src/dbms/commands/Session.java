@@ -0,0 +1,30 @@
+package dbms.commands;
+
+import java.util.HashMap;
+
+/**
+ * State of a client: the console or a connection of the server.
+ * The statements of a session run one after the other, on the thread serving it,
+ * so its state is never shared with the statements of other clients.
+ */
+public class Session {
+    private final HashMap<String, Select> prepared = new HashMap<>();
+
+    /**
+     * Function to keep a prepared statement, replacing the one with the same name if any
+     * @param name the name of the statement
+     * @param select the statement
+     */
+    void prepare(String name, Select select) {
+        prepared.put(name.toLowerCase(), select);
+    }
+
+    /**
+     * Function to get a prepared statement
+     * @param name the name of the statement
+     * @return the statement, or null if no statement of the session has that name
+     */
+    Select getPrepared(String name) {
+        return prepared.get(name.toLowerCase());
+    }
+}
@@ -0,0 +1,75 @@
+package dbms.commands;
+
+import dbms.Catalog;
+import dbms.ExternalSorter;
+import dbms.Parallel;
+import dbms.Relation;
+import dbms.RowStore;
+import dbms.exec.ResultWriter;
+
+import java.util.List;
+
+public class Set extends Command {
+    private final String option;
+    private final String value;
+
+    /**
+     * Command of type SET OUTPUT [TABLE,CSV,TSV], SET PAGESIZE n (0 for no pages)
+     * SET LAYOUT [ROWS,COLUMNS] (memory layout of the relations loaded from now on),
+     * SET PARALLELISM n (threads of the parallel scans), SET PARALLEL_THRESHOLD n (rows needed to go parallel)
+     * or SET SORT_MEMORY n (megabytes of rows each sort or aggregation keeps in memory before spilling to disk)
+     */
+    public Set(String command) throws Exception {
+        String[] tokens = command.trim().split(" +");
+        if(tokens.length != 3) throw new Exception("SET: invalid syntax, expected SET option value");
+
+        option = tokens[1].toUpperCase();
+        value = tokens[2].toUpperCase();
+        if(!List.of("OUTPUT", "PAGESIZE", "LAYOUT", "PARALLELISM", "PARALLEL_THRESHOLD", "SORT_MEMORY").contains(option)) throw new Exception("SET: unknown option " + tokens[1]);
+    }
+
+    @Override
+    public String execute() throws Exception {
+        if(option.equals("OUTPUT")) {
+            try {
+                ResultWriter.setDefaultMode(ResultWriter.Mode.valueOf(value));
+            } catch (IllegalArgumentException ex) {
+                throw new Exception("SET: unknown output mode " + value);
+            }
+        } else if(option.equals("LAYOUT")) {
+            try {
+                Relation.setDefaultLayout(RowStore.Layout.valueOf(value));
+            } catch (IllegalArgumentException ex) {
+                throw new Exception("SET: unknown layout " + value);
+            }
+            // cached relations are reloaded with the new layout
+            Catalog.clear();
+        } else if(option.equals("PARALLELISM")) {
+            Parallel.setParallelism(parsePositive(value));
+        } else if(option.equals("PARALLEL_THRESHOLD")) {
+            Parallel.setThreshold(parsePositive(value));
+        } else if(option.equals("SORT_MEMORY")) {
+            ExternalSorter.setMemoryBudget(parsePositive(value) * 1024L * 1024L);
+        } else {
+            try {
+                int pageSize = Integer.parseInt(value);
+                if(pageSize < 0) throw new NumberFormatException();
+                ResultWriter.setDefaultPageSize(pageSize);
+            } catch (NumberFormatException ex) {
+                throw new Exception("SET: invalid page size " + value);
+            }
+        }
+
+        return "SET OK";
+    }
+
+    private static int parsePositive(String value) throws Exception {
+        try {
+            int n = Integer.parseInt(value);
+            if(n < 1) throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException ex) {
+            throw new Exception("SET: invalid value " + value);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package dbms.commands;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of the parsed SELECT statements, so that statements repeated with different values
+ * (such as point lookups) are parsed only once. The key is the normalized text of the statement:
+ * blanks collapsed and every quoted value replaced by a parameter (?), the values are then bound
+ * to the cached statement. The size is set by the system property dbms.statementCache.size
+ * and the least recently used statements are evicted first.
+ */
+public class StatementCache {
+    private static int capacity = Integer.getInteger("dbms.statementCache.size", 256);
+
+    private static final LinkedHashMap<String, Select> statements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Select> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private static long hits = 0;
+    private static long misses = 0;
+
+    private StatementCache() {}
+
+    /**
+     * Function to get a SELECT statement ready to be executed, parsing it only if not cached
+     * @param command the text of the statement
+     * @return the statement with its values bound
+     */
+    public static Select select(String command) throws Exception {
+        ArrayList<String> values = new ArrayList<>();
+        String key = normalize(command, values);
+
+        Select select = lookup(key);
+        if(select == null) {
+            select = new Select(key);
+            store(key, select);
+        }
+
+        return select.bind(values.toArray(new String[] {}));
+    }
+
+    private static synchronized Select lookup(String key) {
+        Select select = statements.get(key);
+        if(select != null) hits++;
+        else misses++;
+        return select;
+    }
+
+    private static synchronized void store(String key, Select select) {
+        statements.put(key, select);
+    }
+
+    /**
+     * Function to normalize the text of a statement
+     * @param command the text of the statement
+     * @param values the list where the quoted values are added, in order
+     * @return the text with single blanks and a ? in place of each quoted value
+     */
+    static String normalize(String command, List<String> values) {
+        StringBuilder sb = new StringBuilder(command.length());
+        boolean blank = false;
+
+        for(int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+
+            if(Character.isWhitespace(c)) {
+                blank = true;
+                continue;
+            }
+            if(blank && !sb.isEmpty()) sb.append(' ');
+            blank = false;
+
+            int close = c == '\'' ? command.indexOf('\'', i + 1) : -1;
+            if(close == -1) {
+                sb.append(c);
+                continue;
+            }
+
+            values.add(command.substring(i + 1, close));
+            sb.append('?');
+            i = close;
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Function to drop every statement from the cache
+     */
+    public static synchronized void clear() {
+        statements.clear();
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,69 @@
+package dbms.exec;
+
+import dbms.FieldType;
+import dbms.Predicate;
+
+import java.util.Arrays;
+
+/**
+ * Operator producing the rows of its child that satisfy a condition
+ * of type field op 'value', field op field or field BETWEEN 'low' AND 'high',
+ * comparing the values as the types of the fields
+ */
+public class FilterOperator extends Operator {
+    private final Operator child;
+    private final Predicate condition;
+    private final FieldType type; // type the values are compared as
+    private final int field1Index;
+    private final int field2Index; // -1 when comparing with a value
+    private final String value;
+
+    /**
+     * @param child the operator producing the rows
+     * @param condition the condition, with its parameters bound
+     * @param types the types of the fields of the child
+     * @throws Exception if a field is not found, a parameter is not bound or a value is not valid for the type of the field
+     */
+    public FilterOperator(Operator child, Predicate condition, FieldType[] types) throws Exception {
+        this.child = child;
+        if(condition.isParameter()) throw new Exception("selection: missing value for parameter in " + condition);
+
+        // getting the fields or value
+        String[] fields = child.getFieldNames();
+        field1Index = Arrays.asList(fields).indexOf(condition.getField());
+        if(field1Index == -1) throw new Exception("selection: field " + condition.getField() + " not found");
+
+        if(condition.getOtherField() == null) {
+            condition = condition.normalize(types[field1Index]);
+            value = condition.getValue();
+            field2Index = -1;
+            type = types[field1Index];
+        } else {
+            value = null;
+            field2Index = Arrays.asList(fields).indexOf(condition.getOtherField());
+            if(field2Index == -1) throw new Exception("selection: field " + condition.getOtherField() + " not found");
+            type = FieldType.common(types[field1Index], types[field2Index]);
+        }
+        this.condition = condition;
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return child.getFieldNames();
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        String[] row;
+        while((row = child.next()) != null) {
+            String other = field2Index == -1 ? value : row[field2Index];
+            if(condition.test(type, row[field1Index], other)) return row;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        child.close();
+    }
+}
@@ -0,0 +1,333 @@
+package dbms.exec;
+
+import dbms.Aggregate;
+import dbms.ExternalSorter;
+import dbms.FieldType;
+import dbms.Metrics;
+import dbms.Parallel;
+import dbms.SpillFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hash aggregation (GROUP BY): the rows of the child are read in batches and each batch is split
+ * among the threads of the parallel pool, every thread updating its own partial table of groups;
+ * at the end the partial tables are merged into one.
+ * When the groups in memory exceed the memory budget (the one of the sorts) the partial tables are spilled
+ * to PARTITIONS files by hash of the group key and emptied; each partition is then merged and produced on its own,
+ * so only the groups of one partition are in memory at a time.
+ * The rows produced are the group fields followed by the aggregates.
+ */
+public class HashAggregateOperator extends Operator {
+    private static final int PARTITIONS = 16;
+
+    /**
+     * Running state of the aggregates of a group
+     */
+    private static class Group {
+        public final String[] key;
+        public long count = 0;
+        public final long[] longs; // integer sums
+        public final double[] doubles; // double sums
+        public final String[] values; // minimum or maximum
+
+        public Group(String[] key, int aggregates) {
+            this.key = key;
+            longs = new long[aggregates];
+            doubles = new double[aggregates];
+            values = new String[aggregates];
+        }
+    }
+
+    private final Operator child;
+    private final int[] groupFields;
+    private final Aggregate[] aggregates;
+    private final int[] aggregateFields; // -1 for COUNT(*)
+    private final FieldType[] types; // types of the aggregated fields
+    private final String[] fields;
+
+    private final HashMap<List<String>, Group>[] partials;
+    private final long[] partialBytes;
+    private File[] partitions = null;
+    private DataOutputStream[] partitionOut = null;
+    private long[] partitionGroups = null;
+    private int nextPartition = 0;
+
+    private boolean aggregated = false;
+    private Iterator<Group> output = null;
+
+    /**
+     * @param child the operator producing the rows
+     * @param groupFields the indexes of the group fields in the rows of the child
+     * @param aggregates the aggregates to compute
+     * @param aggregateFields the index of the field of each aggregate, -1 for COUNT(*)
+     * @param types the type of the field of each aggregate
+     * @param fields the names of the fields of the rows produced
+     */
+    public HashAggregateOperator(Operator child, int[] groupFields, Aggregate[] aggregates, int[] aggregateFields, FieldType[] types, String[] fields) {
+        this.child = child;
+        this.groupFields = groupFields.clone();
+        this.aggregates = aggregates.clone();
+        this.aggregateFields = aggregateFields.clone();
+        this.types = types.clone();
+        this.fields = fields.clone();
+
+        @SuppressWarnings("unchecked")
+        HashMap<List<String>, Group>[] tables = (HashMap<List<String>, Group>[]) new HashMap<?, ?>[Parallel.getParallelism()];
+        partials = tables;
+        for(int t = 0; t < partials.length; t++) partials[t] = new HashMap<>();
+        partialBytes = new long[partials.length];
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return fields.clone();
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        if(!aggregated) {
+            aggregate();
+            aggregated = true;
+        }
+
+        while(true) {
+            if(output.hasNext()) return result(output.next());
+            if(partitions == null || nextPartition == PARTITIONS) return null;
+
+            output = loadPartition(nextPartition++).values().iterator();
+        }
+    }
+
+    /**
+     * Function to read the whole child into the partial tables, spilling them when needed
+     */
+    private void aggregate() throws Exception {
+        int batchSize = Parallel.getBatchSize();
+        ArrayList<String[]> batch = new ArrayList<>(batchSize);
+
+        String[] row;
+        while((row = child.next()) != null) {
+            batch.add(row);
+            if(batch.size() == batchSize) {
+                aggregateBatch(batch);
+                batch.clear();
+            }
+        }
+        aggregateBatch(batch);
+        child.close();
+
+        if(partitions != null) {
+            spill();
+            for(DataOutputStream out : partitionOut) out.close();
+            for(File file : partitions) Metrics.bytesWritten(file.length());
+            partitionOut = null;
+            output = List.<Group>of().iterator();
+            return;
+        }
+
+        // merging the partial tables into the first one
+        HashMap<List<String>, Group> groups = partials[0];
+        for(int t = 1; t < partials.length; t++) {
+            for(Group group : partials[t].values()) merge(groups, group);
+            partials[t].clear();
+        }
+
+        // without GROUP BY there is always one row, even with no input
+        if(groups.isEmpty() && groupFields.length == 0) groups.put(List.of(), new Group(new String[0], aggregates.length));
+        output = groups.values().iterator();
+    }
+
+    private void aggregateBatch(List<String[]> batch) throws IOException {
+        if(batch.isEmpty()) return;
+
+        int tasks = Parallel.isParallel(batch.size()) ? partials.length : 1;
+        Parallel.run(tasks, t -> {
+            HashMap<List<String>, Group> groups = partials[t];
+            int to = (int) ((long) batch.size() * (t + 1) / tasks);
+            for(int i = (int) ((long) batch.size() * t / tasks); i < to; i++) {
+                String[] row = batch.get(i);
+
+                String[] key = new String[groupFields.length];
+                for(int k = 0; k < key.length; k++) key[k] = row[groupFields[k]];
+                List<String> hashKey = Arrays.asList(key);
+
+                Group group = groups.get(hashKey);
+                if(group == null) {
+                    group = new Group(key, aggregates.length);
+                    groups.put(hashKey, group);
+                    partialBytes[t] += 100 + 32L * aggregates.length + ExternalSorter.estimatedBytes(key);
+                }
+                update(group, row);
+            }
+        });
+
+        long bytes = 0;
+        for(long b : partialBytes) bytes += b;
+        if(bytes > ExternalSorter.getMemoryBudget()) spill();
+    }
+
+    private void update(Group group, String[] row) {
+        group.count++;
+        for(int a = 0; a < aggregates.length; a++) {
+            switch(aggregates[a].getFunction()) {
+                case SUM, AVG -> {
+                    if(types[a] == FieldType.DOUBLE) group.doubles[a] += Double.parseDouble(row[aggregateFields[a]]);
+                    else group.longs[a] += Long.parseLong(row[aggregateFields[a]]);
+                }
+                case MIN, MAX -> group.values[a] = best(a, group.values[a], row[aggregateFields[a]]);
+                case COUNT -> {}
+            }
+        }
+    }
+
+    /**
+     * @return the value to keep between the current minimum (or maximum) and a new value
+     */
+    private String best(int a, String current, String value) {
+        if(current == null) return value;
+        if(value == null) return current;
+
+        int c = types[a].compare(value, current);
+        boolean min = aggregates[a].getFunction() == Aggregate.Function.MIN;
+        return (min ? c < 0 : c > 0) ? value : current;
+    }
+
+    /**
+     * Function to add the state of a group to the table of groups
+     */
+    private void merge(HashMap<List<String>, Group> groups, Group group) {
+        Group into = groups.putIfAbsent(Arrays.asList(group.key), group);
+        if(into == null) return;
+
+        into.count += group.count;
+        for(int a = 0; a < aggregates.length; a++) {
+            into.longs[a] += group.longs[a];
+            into.doubles[a] += group.doubles[a];
+            into.values[a] = best(a, into.values[a], group.values[a]);
+        }
+    }
+
+    /**
+     * Function to write the groups of the partial tables to the partition files and empty the tables
+     */
+    private void spill() throws IOException {
+        if(partitions == null) {
+            partitions = new File[PARTITIONS];
+            partitionOut = new DataOutputStream[PARTITIONS];
+            partitionGroups = new long[PARTITIONS];
+            for(int p = 0; p < PARTITIONS; p++) {
+                partitions[p] = SpillFile.create("aggregate");
+                partitionOut[p] = SpillFile.writer(partitions[p]);
+            }
+        }
+
+        for(int t = 0; t < partials.length; t++) {
+            for(Group group : partials[t].values()) {
+                int p = partitionOf(group.key);
+                SpillFile.writeRow(partitionOut[p], serialize(group));
+                partitionGroups[p]++;
+            }
+            partials[t].clear();
+            partialBytes[t] = 0;
+        }
+    }
+
+    private static int partitionOf(String[] key) {
+        int h = Arrays.hashCode(key) * 0x9E3779B9;
+        return (h >>> 16) % PARTITIONS;
+    }
+
+    /**
+     * Function to merge the groups of a spilled partition
+     * @return the groups of the partition
+     */
+    private HashMap<List<String>, Group> loadPartition(int p) throws IOException {
+        HashMap<List<String>, Group> groups = new HashMap<>();
+        try(DataInputStream in = SpillFile.reader(partitions[p])) {
+            for(long i = 0; i < partitionGroups[p]; i++) {
+                merge(groups, deserialize(SpillFile.readRow(in, groupFields.length + 1 + aggregates.length)));
+            }
+        }
+        partitions[p].delete();
+        return groups;
+    }
+
+    /**
+     * @return the state of a group as a row: the key, the count, and the state of each aggregate
+     */
+    private String[] serialize(Group group) {
+        String[] row = Arrays.copyOf(group.key, group.key.length + 1 + aggregates.length);
+        row[group.key.length] = Long.toString(group.count);
+        for(int a = 0; a < aggregates.length; a++) {
+            row[group.key.length + 1 + a] = switch(aggregates[a].getFunction()) {
+                case SUM, AVG -> types[a] == FieldType.DOUBLE ? Double.toString(group.doubles[a]) : Long.toString(group.longs[a]);
+                case MIN, MAX -> group.values[a];
+                case COUNT -> "";
+            };
+        }
+        return row;
+    }
+
+    private Group deserialize(String[] row) {
+        Group group = new Group(Arrays.copyOf(row, groupFields.length), aggregates.length);
+        group.count = Long.parseLong(row[groupFields.length]);
+        for(int a = 0; a < aggregates.length; a++) {
+            String state = row[groupFields.length + 1 + a];
+            switch(aggregates[a].getFunction()) {
+                case SUM, AVG -> {
+                    if(types[a] == FieldType.DOUBLE) group.doubles[a] = Double.parseDouble(state);
+                    else group.longs[a] = Long.parseLong(state);
+                }
+                case MIN, MAX -> group.values[a] = state;
+                case COUNT -> {}
+            }
+        }
+        return group;
+    }
+
+    /**
+     * @return the row of a group, with the values of its aggregates (empty for SUM, AVG, MIN and MAX of no rows)
+     */
+    private String[] result(Group group) {
+        String[] row = Arrays.copyOf(group.key, group.key.length + aggregates.length);
+        for(int a = 0; a < aggregates.length; a++) {
+            boolean doubles = types[a] == FieldType.DOUBLE;
+            String value = switch(aggregates[a].getFunction()) {
+                case COUNT -> Long.toString(group.count);
+                case SUM -> doubles ? Double.toString(group.doubles[a]) : Long.toString(group.longs[a]);
+                case AVG -> Double.toString((doubles ? group.doubles[a] : group.longs[a]) / group.count);
+                case MIN, MAX -> group.values[a];
+            };
+            row[group.key.length + a] = group.count == 0 && aggregates[a].getFunction() != Aggregate.Function.COUNT ? "" : value;
+        }
+        return row;
+    }
+
+    @Override
+    public void close() {
+        child.close();
+        for(HashMap<List<String>, Group> groups : partials) groups.clear();
+
+        if(partitionOut != null) {
+            for(DataOutputStream out : partitionOut) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {}
+            }
+            partitionOut = null;
+        }
+        if(partitions != null) {
+            for(File file : partitions) file.delete();
+        }
+        output = List.<Group>of().iterator();
+    }
+}
@@ -0,0 +1,52 @@
+package dbms.exec;
+
+import dbms.JoinCondition;
+import dbms.PartitionedHashTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Join building a hash table on the equality fields of the right child (the first time a row is requested)
+ * and probing it with the rows of the left child. A large right child gives a partitioned table built in parallel.
+ */
+public class HashJoinOperator extends JoinOperator {
+    private final Operator right;
+    private ArrayList<String[]> rightRows = null;
+    private PartitionedHashTable table = null;
+
+    public HashJoinOperator(Operator left, Operator right, JoinCondition condition) {
+        super(left, right.getFieldNames(), condition);
+        this.right = right;
+    }
+
+    @Override
+    protected void prepare() throws Exception {
+        rightRows = new ArrayList<>();
+
+        String[] row;
+        while((row = right.next()) != null) rightRows.add(row);
+        right.close();
+
+        table = new PartitionedHashTable(rightRows.size(), i -> condition.rightKey(rightRows.get(i)));
+    }
+
+    @Override
+    protected void probe(String[] row, List<String[]> rows) {
+        List<Integer> matches = table.lookup(condition.leftKey(row));
+        if(matches == null) return;
+
+        for(int position : matches) {
+            String[] match = rightRows.get(position);
+            if(condition.matchesResidual(row, match)) rows.add(concat(row, match));
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        right.close();
+        rightRows = null;
+        table = null;
+    }
+}
@@ -0,0 +1,41 @@
+package dbms.exec;
+
+import dbms.Index;
+import dbms.JoinCondition;
+import dbms.Relation;
+
+import java.util.List;
+
+/**
+ * Join streaming the rows of the left child against an index of the right relation,
+ * so that no hash table has to be built
+ */
+public class IndexJoinOperator extends JoinOperator {
+    private final Relation right;
+    private final Index index;
+    private final int probeKey;
+    private final int size;
+
+    /**
+     * @param left the left child
+     * @param right the right relation
+     * @param index the index of the right relation, on one of the equality fields
+     * @param probeKey the index of the field of the left rows matched against the index
+     * @param condition the join condition, all of it is checked on each candidate pair
+     */
+    public IndexJoinOperator(Operator left, Relation right, Index index, int probeKey, JoinCondition condition) {
+        super(left, right.getFieldNames(), condition);
+        this.right = right;
+        this.index = index;
+        this.probeKey = probeKey;
+        this.size = right.size();
+    }
+
+    @Override
+    protected void probe(String[] row, List<String[]> rows) {
+        for(int position : index.lookup(row[probeKey], size)) {
+            String[] match = right.getRow(position);
+            if(condition.matches(row, match)) rows.add(concat(row, match));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package dbms.exec;
+
+import dbms.Index;
+import dbms.Metrics;
+import dbms.Predicate;
+import dbms.Relation;
+
+import java.util.List;
+
+/**
+ * Operator producing the rows of a relation satisfying a condition on a field, found through an index
+ * (the rows with a value, or with a value in a range for an ordered index), in the order of the relation
+ */
+public class IndexScanOperator extends Operator {
+    private final Relation relation;
+    private final List<Integer> positions;
+    private int next = 0;
+    private int counted = 0;
+
+    /**
+     * @param relation the relation
+     * @param index the index to use, on a field of the relation
+     * @param condition the resolved condition on the indexed field, supported by the index
+     */
+    public IndexScanOperator(Relation relation, Index index, Predicate condition) {
+        this.relation = relation;
+        this.positions = index.lookup(condition, relation.size());
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return relation.getFieldNames();
+    }
+
+    @Override
+    public String[] next() {
+        if(next >= positions.size()) return null;
+        return relation.getRow(positions.get(next++));
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return next;
+    }
+
+    @Override
+    public void close() {
+        Metrics.rowsScanned(next - counted);
+        counted = next;
+    }
+}
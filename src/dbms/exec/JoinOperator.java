@@ -0,0 +1,97 @@
+package dbms.exec;
+
+import dbms.JoinCondition;
+import dbms.Parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base of the join operators: the rows produced are the ones of the left child followed by the ones of the right child.
+ * The left rows are read in batches and each batch is probed against the right side by the threads
+ * of the parallel pool (when large enough), the joined rows are then produced in the order of the left rows.
+ */
+public abstract class JoinOperator extends Operator {
+    protected final Operator left;
+    protected final JoinCondition condition;
+    private final String[] fields;
+
+    private boolean prepared = false;
+    private boolean leftDone = false;
+    private List<String[]> buffered = List.of();
+    private int nextBuffered = 0;
+
+    protected JoinOperator(Operator left, String[] rightFields, JoinCondition condition) {
+        this.left = left;
+        this.condition = condition;
+
+        String[] leftFields = left.getFieldNames();
+        fields = new String[leftFields.length + rightFields.length];
+        System.arraycopy(leftFields, 0, fields, 0, leftFields.length);
+        System.arraycopy(rightFields, 0, fields, leftFields.length, rightFields.length);
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return fields.clone();
+    }
+
+    /**
+     * Function to prepare the right side of the join, called before the first row is probed
+     */
+    protected void prepare() throws Exception {}
+
+    /**
+     * Function to find the joined rows of a left row, called concurrently from several threads
+     * @param row the left row
+     * @param rows the list where the joined rows are added
+     */
+    protected abstract void probe(String[] row, List<String[]> rows);
+
+    /**
+     * @return the work needed to probe a left row, in rows
+     */
+    protected long probeCost() {
+        return 1;
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        if(!prepared) {
+            prepare();
+            prepared = true;
+        }
+
+        while(nextBuffered >= buffered.size()) {
+            if(leftDone) return null;
+
+            int batchSize = Parallel.getBatchSize();
+            ArrayList<String[]> batch = new ArrayList<>();
+            String[] row;
+            while(batch.size() < batchSize && (row = left.next()) != null) batch.add(row);
+            leftDone = batch.size() < batchSize;
+
+            buffered = Parallel.flatMap(0, batch.size(), probeCost(), (rows, i) -> probe(batch.get(i), rows));
+            nextBuffered = 0;
+        }
+
+        return buffered.get(nextBuffered++);
+    }
+
+    /**
+     * Function to build a joined row
+     * @return a new row with the fields of data1 followed by the ones of data2
+     */
+    protected String[] concat(String[] data1, String[] data2) {
+        String[] newRow = new String[fields.length];
+        System.arraycopy(data1, 0, newRow, 0, data1.length);
+        System.arraycopy(data2, 0, newRow, data1.length, data2.length);
+        return newRow;
+    }
+
+    @Override
+    public void close() {
+        left.close();
+        buffered = List.of();
+    }
+}
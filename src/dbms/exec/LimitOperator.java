@@ -0,0 +1,34 @@
+package dbms.exec;
+
+/**
+ * Operator producing at most a given number of rows of its child, and stopping the child after that
+ */
+public class LimitOperator extends Operator {
+    private final Operator child;
+    private final long limit;
+    private long produced = 0;
+
+    public LimitOperator(Operator child, long limit) {
+        this.child = child;
+        this.limit = limit;
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return child.getFieldNames();
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        if(produced >= limit) return null;
+
+        String[] row = child.next();
+        if(row != null) produced++;
+        return row;
+    }
+
+    @Override
+    public void close() {
+        child.close();
+    }
+}
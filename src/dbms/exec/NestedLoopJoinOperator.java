@@ -0,0 +1,47 @@
+package dbms.exec;
+
+import dbms.JoinCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Join comparing each row of the left child with every row of the right child, which is kept in memory
+ * Used only when there is no equality condition to hash on
+ */
+public class NestedLoopJoinOperator extends JoinOperator {
+    private final Operator right;
+    private ArrayList<String[]> rightRows = null;
+
+    public NestedLoopJoinOperator(Operator left, Operator right, JoinCondition condition) {
+        super(left, right.getFieldNames(), condition);
+        this.right = right;
+    }
+
+    @Override
+    protected void prepare() throws Exception {
+        rightRows = new ArrayList<>();
+        String[] row;
+        while((row = right.next()) != null) rightRows.add(row);
+        right.close();
+    }
+
+    @Override
+    protected void probe(String[] row, List<String[]> rows) {
+        for(String[] match : rightRows) {
+            if(condition.matchesResidual(row, match)) rows.add(concat(row, match));
+        }
+    }
+
+    @Override
+    protected long probeCost() {
+        return rightRows.size();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        right.close();
+        rightRows = null;
+    }
+}
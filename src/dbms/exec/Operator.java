@@ -0,0 +1,34 @@
+package dbms.exec;
+
+/**
+ * Pull based (Volcano style) operator: each call to next produces one row, pulling rows from the
+ * children only when needed. Rows flow through the pipeline without building intermediate relations,
+ * only the operators that need the whole input (the build side of a join) keep rows in memory.
+ * The rows returned must not be modified by the caller.
+ */
+public abstract class Operator {
+    /**
+     * @return the names of the fields of the rows produced
+     */
+    public abstract String[] getFieldNames();
+
+    /**
+     * Function to produce the next row
+     * @return the row, or null if there are no more rows
+     * @throws Exception if the operator fails
+     */
+    public abstract String[] next() throws Exception;
+
+    /**
+     * @return the number of rows read so far by the operator from a stored relation,
+     * 0 for the operators reading only the rows of their children
+     */
+    public long getRowsScanned() {
+        return 0;
+    }
+
+    /**
+     * Function to release the resources of the operator and of its children
+     */
+    public void close() {}
+}
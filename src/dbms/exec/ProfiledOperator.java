@@ -0,0 +1,93 @@
+package dbms.exec;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Operator measuring another one for EXPLAIN ANALYZE: the rows it produces, the wall time spent in it
+ * and the bytes allocated meanwhile by the thread running the statement. The measures include the time
+ * spent in the children, which are measured by their own ProfiledOperator.
+ * The work done by the threads of the parallel pool is included in the time, not in the allocated bytes.
+ */
+public class ProfiledOperator extends Operator {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final Operator op;
+    private long rows = 0;
+    private long nanos;
+    private long bytes;
+
+    /**
+     * @param op the measured operator
+     * @param openNanos the time spent building the operator
+     * @param openBytes the bytes allocated building the operator
+     */
+    public ProfiledOperator(Operator op, long openNanos, long openBytes) {
+        this.op = op;
+        this.nanos = openNanos;
+        this.bytes = openBytes;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)) return null;
+        if(!threads.isThreadAllocatedMemorySupported()) return null;
+
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, 0 if the JVM cannot tell
+     */
+    public static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return op.getFieldNames();
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        long start = System.nanoTime();
+        long allocated = allocatedBytes();
+
+        String[] row = op.next();
+
+        nanos += System.nanoTime() - start;
+        bytes += allocatedBytes() - allocated;
+        if(row != null) rows++;
+        return row;
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return op.getRowsScanned();
+    }
+
+    @Override
+    public void close() {
+        op.close();
+    }
+
+    /**
+     * @return the rows produced
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the wall time spent building the operator and producing its rows, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return the bytes allocated building the operator and producing its rows
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,62 @@
+package dbms.exec;
+
+/**
+ * Operator keeping only some fields of the rows of its child
+ * When a name appears more than once in the child, the last field with that name is taken
+ */
+public class ProjectOperator extends Operator {
+    private final Operator child;
+    private final String[] fields;
+    private final int[] indexes;
+
+    public ProjectOperator(Operator child, String[] fields) throws Exception {
+        this.child = child;
+        this.fields = fields.clone();
+
+        // getting the indexes
+        String[] childFields = child.getFieldNames();
+        indexes = new int[fields.length];
+        for(int i = 0; i < fields.length; i++) {
+            indexes[i] = -1;
+            for(int j = 0; j < childFields.length; j++) {
+                if(fields[i].equals(childFields[j])) indexes[i] = j;
+            }
+            if(indexes[i] == -1) throw new Exception("projection: field " + fields[i] + " not found");
+        }
+    }
+
+    /**
+     * @param child the operator producing the rows
+     * @param indexes the positions of the fields to keep, in the order they are produced
+     */
+    public ProjectOperator(Operator child, int[] indexes) {
+        this.child = child;
+        this.indexes = indexes.clone();
+
+        String[] childFields = child.getFieldNames();
+        fields = new String[indexes.length];
+        for(int i = 0; i < indexes.length; i++) fields[i] = childFields[indexes[i]];
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return fields.clone();
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        String[] row = child.next();
+        if(row == null) return null;
+
+        String[] newRow = new String[indexes.length];
+        for(int i = 0; i < indexes.length; i++) {
+            newRow[i] = row[indexes[i]];
+        }
+        return newRow;
+    }
+
+    @Override
+    public void close() {
+        child.close();
+    }
+}
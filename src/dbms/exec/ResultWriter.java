@@ -0,0 +1,148 @@
+package dbms.exec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes the rows produced by an operator to a stream while they are produced, so that
+ * the first rows are printed before the query ends and the result is never held in memory.
+ * Supported formats are the boxed table (the same layout of Relation.toString), CSV and TSV.
+ * With a page size, the output is flushed (and in table mode the column header repeated) every page.
+ */
+public class ResultWriter {
+    public enum Mode {
+        TABLE, CSV, TSV
+    }
+
+    private static final int CELL_WIDTH = 20;
+    private static final char[] SPACES = new char[CELL_WIDTH];
+    private static final char[] DASHES = new char[CELL_WIDTH];
+    static {
+        Arrays.fill(SPACES, ' ');
+        Arrays.fill(DASHES, '-');
+    }
+
+    private static Mode defaultMode = Mode.TABLE;
+    private static int defaultPageSize = 0;
+
+    private final Writer out;
+    private final Mode mode;
+    private final int pageSize;
+
+    /**
+     * @param out the destination, should be buffered
+     * @param mode the output format
+     * @param pageSize the number of rows of a page, 0 for no pages
+     */
+    public ResultWriter(Writer out, Mode mode, int pageSize) {
+        this.out = out;
+        this.mode = mode;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Creates a writer with the format and page size set with SET OUTPUT and SET PAGESIZE
+     * @param out the destination, should be buffered
+     */
+    public ResultWriter(Writer out) {
+        this(out, defaultMode, defaultPageSize);
+    }
+
+    public static synchronized void setDefaultMode(Mode mode) {
+        defaultMode = mode;
+    }
+
+    public static synchronized void setDefaultPageSize(int pageSize) {
+        defaultPageSize = pageSize;
+    }
+
+    /**
+     * Function to write all the rows of an operator
+     * @param name the name of the result, shown in table mode
+     * @param op the operator producing the rows, closed at the end
+     * @return the number of rows written
+     * @throws Exception if the operator or the stream fail
+     */
+    public long write(String name, Operator op) throws Exception {
+        String[] fields = op.getFieldNames();
+        long rows = 0;
+
+        try {
+            writeHeader(name, fields);
+
+            String[] row;
+            while((row = op.next()) != null) {
+                // new page
+                if(pageSize > 0 && rows > 0 && rows % pageSize == 0 && mode == Mode.TABLE) {
+                    writeBorder(fields.length);
+                    writeRow(fields);
+                }
+
+                writeRow(row);
+                rows++;
+
+                if(pageSize > 0 && rows % pageSize == 0) out.flush();
+            }
+
+            if(mode == Mode.TABLE) writeBorder(fields.length);
+            out.flush();
+        } finally {
+            op.close();
+        }
+
+        return rows;
+    }
+
+    private void writeHeader(String name, String[] fields) throws IOException {
+        if(mode != Mode.TABLE) {
+            writeRow(fields);
+            return;
+        }
+
+        // intestazione
+        int full_len = fields.length * (CELL_WIDTH + 1) - 1;
+        out.write('+');
+        repeat('-', full_len);
+        out.write("+\n|");
+        out.write(name);
+        repeat(' ', full_len - name.length());
+        out.write("|\n");
+
+        writeBorder(fields.length);
+        writeRow(fields);
+    }
+
+    private void writeRow(String[] row) throws IOException {
+        if(mode == Mode.TABLE) {
+            out.write('|');
+            for(String value : row) {
+                out.write(value);
+                if(value.length() < CELL_WIDTH) out.write(SPACES, 0, CELL_WIDTH - value.length());
+                out.write('|');
+            }
+        } else {
+            char separator = mode == Mode.CSV ? ',' : '\t';
+            for(int i = 0; i < row.length; i++) {
+                if(i > 0) out.write(separator);
+                out.write(row[i]);
+            }
+        }
+        out.write('\n');
+    }
+
+    private void writeBorder(int fields) throws IOException {
+        out.write('+');
+        for(int i = 0; i < fields; i++) {
+            out.write(DASHES);
+            out.write('+');
+        }
+        out.write('\n');
+    }
+
+    private void repeat(char c, int times) throws IOException {
+        for(int i = 0; i < times; i++) {
+            out.write(c);
+        }
+    }
+}
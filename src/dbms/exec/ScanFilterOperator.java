@@ -0,0 +1,66 @@
+package dbms.exec;
+
+import dbms.BatchFilter;
+import dbms.Metrics;
+import dbms.Parallel;
+import dbms.Relation;
+
+/**
+ * Scan of a relation producing only the rows that satisfy a condition compiled by the relation.
+ * The rows are tested in batches: each batch is split among the threads of the parallel pool
+ * (when large enough), which run the kernels of the condition on blocks of BatchFilter.BATCH rows,
+ * and the matching rows are then produced in order. Working in batches keeps the memory bounded
+ * and lets a LIMIT stop the scan early.
+ */
+public class ScanFilterOperator extends Operator {
+    private final Relation relation;
+    private final BatchFilter test;
+    private final int end;
+    private final int batch;
+
+    private int scanned = 0;
+    private int counted = 0;
+    private int[] positions = new int[0];
+    private int next = 0;
+
+    /**
+     * @param relation the relation
+     * @param test the condition compiled with Relation.compileCondition (several conditions ANDed with BatchFilter.and)
+     */
+    public ScanFilterOperator(Relation relation, BatchFilter test) {
+        this.relation = relation;
+        this.test = test;
+        this.end = relation.size();
+        this.batch = Parallel.getBatchSize();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return relation.getFieldNames();
+    }
+
+    @Override
+    public String[] next() {
+        while(next >= positions.length) {
+            if(scanned >= end) return null;
+
+            int to = (int) Math.min(end, (long) scanned + batch);
+            positions = Parallel.filter(scanned, to, test);
+            next = 0;
+            scanned = to;
+        }
+
+        return relation.getRow(positions[next++]);
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return scanned;
+    }
+
+    @Override
+    public void close() {
+        Metrics.rowsScanned(scanned - counted);
+        counted = scanned;
+    }
+}
@@ -0,0 +1,41 @@
+package dbms.exec;
+
+import dbms.Metrics;
+import dbms.Relation;
+
+/**
+ * Operator producing the rows of a relation, as they were when the scan was created
+ */
+public class ScanOperator extends Operator {
+    private final Relation relation;
+    private final int end;
+    private int position = 0;
+    private int counted = 0;
+
+    public ScanOperator(Relation relation) {
+        this.relation = relation;
+        this.end = relation.size();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return relation.getFieldNames();
+    }
+
+    @Override
+    public String[] next() {
+        if(position >= end) return null;
+        return relation.getRow(position++);
+    }
+
+    @Override
+    public long getRowsScanned() {
+        return position;
+    }
+
+    @Override
+    public void close() {
+        Metrics.rowsScanned(position - counted);
+        counted = position;
+    }
+}
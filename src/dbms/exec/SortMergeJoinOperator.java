@@ -0,0 +1,134 @@
+package dbms.exec;
+
+import dbms.FieldType;
+import dbms.JoinCondition;
+import dbms.RowComparator;
+
+import java.util.ArrayList;
+
+/**
+ * Join merging the two children sorted on the equality fields: no hash table is built, only the right
+ * rows sharing the current key are kept in memory. A child that is not already sorted on the keys is
+ * sorted by a SortOperator, so large inputs are spilled to disk instead of being held in the heap.
+ * The rows are produced in the order of the keys.
+ */
+public class SortMergeJoinOperator extends Operator {
+    private final Operator left;
+    private final Operator right;
+    private final JoinCondition condition;
+    private final int[] leftKeys;
+    private final int[] rightKeys;
+    private final FieldType[] types;
+    private final String[] fields;
+
+    private boolean started = false;
+    private String[] leftRow = null;
+    private String[] rightRow = null;
+    private String[] groupKey = null; // a right row with the key of the group, null if there is no group
+    private final ArrayList<String[]> group = new ArrayList<>();
+    private final ArrayList<String[]> buffered = new ArrayList<>();
+    private int nextBuffered = 0;
+
+    /**
+     * @param left the left child
+     * @param right the right child
+     * @param condition the join condition, with at least one equality
+     * @param types the type each pair of equality fields is compared as
+     * @param leftSorted true if the left child is already sorted on its keys (compared as types)
+     * @param rightSorted true if the right child is already sorted on its keys (compared as types)
+     */
+    public SortMergeJoinOperator(Operator left, Operator right, JoinCondition condition, FieldType[] types, boolean leftSorted, boolean rightSorted) {
+        this.leftKeys = condition.getLeftKeys();
+        this.rightKeys = condition.getRightKeys();
+        this.left = leftSorted ? left : new SortOperator(left, RowComparator.ascending(leftKeys, types));
+        this.right = rightSorted ? right : new SortOperator(right, RowComparator.ascending(rightKeys, types));
+        this.condition = condition;
+        this.types = types.clone();
+
+        String[] leftFields = left.getFieldNames();
+        String[] rightFields = right.getFieldNames();
+        fields = new String[leftFields.length + rightFields.length];
+        System.arraycopy(leftFields, 0, fields, 0, leftFields.length);
+        System.arraycopy(rightFields, 0, fields, leftFields.length, rightFields.length);
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return fields.clone();
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        if(!started) {
+            leftRow = left.next();
+            rightRow = right.next();
+            started = true;
+        }
+
+        while(nextBuffered >= buffered.size()) {
+            buffered.clear();
+            nextBuffered = 0;
+            if(leftRow == null) return null;
+
+            // left row with the key of the current group: joined with all of it
+            if(groupKey != null && compareKeys(leftRow, groupKey) == 0) {
+                for(String[] match : group) {
+                    if(condition.matchesResidual(leftRow, match)) buffered.add(concat(leftRow, match));
+                }
+                leftRow = left.next();
+                continue;
+            }
+
+            groupKey = null;
+            group.clear();
+            if(rightRow == null) return null;
+
+            int c = compareKeys(leftRow, rightRow);
+            if(c < 0) {
+                leftRow = left.next();
+            } else if(c > 0) {
+                rightRow = right.next();
+            } else {
+                // the right rows with this key become the new group
+                groupKey = rightRow;
+                while(rightRow != null && compareRight(rightRow, groupKey) == 0) {
+                    group.add(rightRow);
+                    rightRow = right.next();
+                }
+            }
+        }
+
+        return buffered.get(nextBuffered++);
+    }
+
+    private int compareKeys(String[] leftRow, String[] rightRow) {
+        for(int k = 0; k < leftKeys.length; k++) {
+            int c = types[k].compare(leftRow[leftKeys[k]], rightRow[rightKeys[k]]);
+            if(c != 0) return c;
+        }
+        return 0;
+    }
+
+    private int compareRight(String[] a, String[] b) {
+        for(int k = 0; k < rightKeys.length; k++) {
+            int c = types[k].compare(a[rightKeys[k]], b[rightKeys[k]]);
+            if(c != 0) return c;
+        }
+        return 0;
+    }
+
+    private String[] concat(String[] data1, String[] data2) {
+        String[] newRow = new String[fields.length];
+        System.arraycopy(data1, 0, newRow, 0, data1.length);
+        System.arraycopy(data2, 0, newRow, data1.length, data2.length);
+        return newRow;
+    }
+
+    @Override
+    public void close() {
+        left.close();
+        right.close();
+        group.clear();
+        buffered.clear();
+    }
+}
@@ -0,0 +1,57 @@
+package dbms.exec;
+
+import dbms.ExternalSorter;
+
+import java.util.Comparator;
+
+/**
+ * Operator producing the rows of its child in order. The whole child is read (the first time a row
+ * is requested) into an external sorter, so the rows that do not fit in the memory budget of the sort
+ * are spilled to disk in sorted runs and merged while the rows are produced.
+ */
+public class SortOperator extends Operator {
+    private final Operator child;
+    private final ExternalSorter sorter;
+    private boolean sorted = false;
+
+    /**
+     * @param child the operator producing the rows
+     * @param comparator the order of the rows
+     */
+    public SortOperator(Operator child, Comparator<String[]> comparator) {
+        this.child = child;
+        this.sorter = new ExternalSorter(comparator, child.getFieldNames().length);
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return child.getFieldNames();
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        if(!sorted) {
+            String[] row;
+            while((row = child.next()) != null) sorter.add(row);
+            child.close();
+
+            sorter.finish();
+            sorted = true;
+        }
+
+        return sorter.next();
+    }
+
+    /**
+     * @return the number of sorted runs spilled to disk so far
+     */
+    public int getSpilledRuns() {
+        return sorter.getSpilledRuns();
+    }
+
+    @Override
+    public void close() {
+        child.close();
+        sorter.close();
+    }
+}
@@ -0,0 +1,89 @@
+package dbms.exec;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Operator producing the first k rows of its child in order (ORDER BY with LIMIT k).
+ * The child is read once keeping only the best k rows in a bounded heap, whose top is the worst
+ * of them: memory is proportional to k instead of the rows of the child, and nothing is spilled.
+ * Among rows with equal keys the ones read first are kept, as a full stable sort would do.
+ */
+public class TopKOperator extends Operator {
+    private final Operator child;
+    private final Comparator<String[]> comparator;
+    private final int k;
+    private ArrayList<String[]> rows = null;
+    private int next = 0;
+
+    /**
+     * Row of the heap with its position in the input, to break the ties
+     */
+    private static class Entry {
+        public final String[] row;
+        public final long position;
+
+        public Entry(String[] row, long position) {
+            this.row = row;
+            this.position = position;
+        }
+    }
+
+    /**
+     * @param child the operator producing the rows
+     * @param comparator the order of the rows
+     * @param k the number of rows to produce
+     */
+    public TopKOperator(Operator child, Comparator<String[]> comparator, int k) {
+        this.child = child;
+        this.comparator = comparator;
+        this.k = k;
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return child.getFieldNames();
+    }
+
+    @Override
+    public String[] next() throws Exception {
+        if(rows == null) select();
+        return next < rows.size() ? rows.get(next++) : null;
+    }
+
+    private void select() throws Exception {
+        Comparator<Entry> order = (a, b) -> {
+            int c = comparator.compare(a.row, b.row);
+            return c != 0 ? c : Long.compare(a.position, b.position);
+        };
+        PriorityQueue<Entry> heap = new PriorityQueue<>(Math.max(1, Math.min(k, 1 << 16)), order.reversed());
+
+        if(k > 0) {
+            long position = 0;
+            String[] row;
+            while((row = child.next()) != null) {
+                if(heap.size() < k) {
+                    heap.add(new Entry(row, position));
+                } else if(comparator.compare(row, heap.peek().row) < 0) {
+                    // better than the worst kept row (a tie would lose to the rows read before)
+                    heap.poll();
+                    heap.add(new Entry(row, position));
+                }
+                position++;
+            }
+        }
+        child.close();
+
+        ArrayList<Entry> best = new ArrayList<>(heap);
+        best.sort(order);
+        rows = new ArrayList<>(best.size());
+        for(Entry entry : best) rows.add(entry.row);
+    }
+
+    @Override
+    public void close() {
+        child.close();
+        rows = null;
+    }
+}
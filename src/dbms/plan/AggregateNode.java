@@ -0,0 +1,115 @@
+package dbms.plan;
+
+import dbms.Aggregate;
+import dbms.ExternalSorter;
+import dbms.FieldType;
+import dbms.Parallel;
+import dbms.Statistics;
+import dbms.exec.HashAggregateOperator;
+import dbms.exec.Operator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Grouping of the rows of a subplan (GROUP BY) computing aggregates for each group.
+ * The rows produced are the group fields followed by the aggregates, named as FUNCTION(field);
+ * without group fields there is a single group, and a single row even with no input.
+ */
+public class AggregateNode extends PlanNode {
+    private final PlanNode child;
+    private final String[] groupBy;
+    private final Aggregate[] aggregates;
+    private final int[] groupFields;
+    private final int[] aggregateFields;
+    private final FieldType[] aggregateTypes;
+    private final FieldType[] types;
+
+    /**
+     * @param child the subplan
+     * @param groupBy the group fields, resolved as the final projection does (last field with the name)
+     * @param aggregates the aggregates
+     * @throws Exception if a field is not found or an aggregate cannot be computed on its field
+     */
+    public AggregateNode(PlanNode child, List<String> groupBy, List<Aggregate> aggregates) throws Exception {
+        this.child = child;
+        this.groupBy = groupBy.toArray(new String[] {});
+        this.aggregates = aggregates.toArray(new Aggregate[] {});
+
+        List<String> childFields = Arrays.asList(child.getFieldNames());
+        FieldType[] childTypes = child.getFieldTypes();
+        types = new FieldType[this.groupBy.length + this.aggregates.length];
+
+        groupFields = new int[this.groupBy.length];
+        for(int k = 0; k < groupFields.length; k++) {
+            groupFields[k] = childFields.lastIndexOf(this.groupBy[k]);
+            if(groupFields[k] == -1) throw new Exception("select: GROUP BY field " + this.groupBy[k] + " not found");
+            types[k] = childTypes[groupFields[k]];
+        }
+
+        aggregateFields = new int[this.aggregates.length];
+        aggregateTypes = new FieldType[this.aggregates.length];
+        for(int a = 0; a < aggregateFields.length; a++) {
+            String field = this.aggregates[a].getField();
+            aggregateFields[a] = field == null ? -1 : childFields.lastIndexOf(field);
+            if(field != null && aggregateFields[a] == -1) throw new Exception("select: field " + field + " of " + this.aggregates[a] + " not found");
+
+            aggregateTypes[a] = field == null ? FieldType.VARCHAR : childTypes[aggregateFields[a]];
+            types[groupFields.length + a] = this.aggregates[a].resultType(aggregateTypes[a]);
+        }
+    }
+
+    @Override
+    protected Operator openOperator() throws Exception {
+        return new HashAggregateOperator(child.open(), groupFields, aggregates, aggregateFields, aggregateTypes, getFieldNames());
+    }
+
+    @Override
+    public String getName() {
+        return "aggregate_" + child.getName();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        String[] fields = Arrays.copyOf(groupBy, groupBy.length + aggregates.length);
+        for(int a = 0; a < aggregates.length; a++) {
+            fields[groupBy.length + a] = aggregates[a].getName();
+        }
+        return fields;
+    }
+
+    @Override
+    public FieldType[] getFieldTypes() {
+        return types.clone();
+    }
+
+    @Override
+    protected long estimateRows() {
+        if(groupFields.length == 0) return 1;
+
+        // one group for each combination of values, but not more than the rows
+        long rows = child.getEstimatedRows();
+        double groups = 1;
+        for(int field : groupFields) groups *= child.estimateDistinct(field);
+        return (long) Math.min(rows, groups);
+    }
+
+    @Override
+    public Statistics.Column getColumnStatistics(int field) {
+        return field < groupFields.length ? child.getColumnStatistics(groupFields[field]) : null;
+    }
+
+    @Override
+    public PlanNode[] getChildren() {
+        return new PlanNode[] {child};
+    }
+
+    @Override
+    protected String describe() {
+        String computed = String.join(", ", Arrays.stream(aggregates).map(Aggregate::getName).toList());
+        String grouping = groupBy.length == 0 ? "" : (aggregates.length == 0 ? "by " : " by ") + String.join(",", groupBy);
+        return "Aggregate " + computed + grouping
+                + " (hash aggregation, partial tables on " + Parallel.getParallelism() + " threads, spill over "
+                + (ExternalSorter.getMemoryBudget() >> 20) + " MB)";
+    }
+}
@@ -0,0 +1,249 @@
+package dbms.plan;
+
+import dbms.ExternalSorter;
+import dbms.FieldType;
+import dbms.Index;
+import dbms.JoinCondition;
+import dbms.Parallel;
+import dbms.Relation;
+import dbms.Statistics;
+import dbms.exec.HashJoinOperator;
+import dbms.exec.IndexJoinOperator;
+import dbms.exec.NestedLoopJoinOperator;
+import dbms.exec.Operator;
+import dbms.exec.ProjectOperator;
+import dbms.exec.SortMergeJoinOperator;
+
+/**
+ * Join of two subplans. The hash table is built on the side expected to have fewer rows and probed with the rows
+ * of the other one (when the right side is a base relation with an index on an equality field, the index is probed
+ * directly with the left rows). A sort-merge join replaces the hash table when both sides already come sorted
+ * on the equality fields, or when the build side would not fit in the memory budget of a sort (so it is sorted
+ * spilling to disk). The rows produced always have the fields of the left side first.
+ */
+public class JoinNode extends PlanNode {
+    private final PlanNode left;
+    private final PlanNode right;
+    private final String condition;
+
+    public JoinNode(PlanNode left, PlanNode right, String condition) {
+        this.left = left;
+        this.right = right;
+        this.condition = condition.trim();
+    }
+
+    @Override
+    protected Operator openOperator() throws Exception {
+        JoinCondition jc = parseCondition();
+
+        if(!jc.hasEqualities()) return new NestedLoopJoinOperator(left.open(), right.open(), jc);
+
+        boolean[] sorted = sortedSides(jc);
+        if(useMerge(jc, sorted)) return new SortMergeJoinOperator(left.open(), right.open(), jc, keyTypes(jc), sorted[0], sorted[1]);
+
+        int key = indexedKey(jc);
+        if(key != -1) {
+            Relation relation = ((ScanNode) right).getRelation();
+            Index index = relation.getIndex(right.getFieldNames()[jc.getRightKeys()[key]]);
+            return new IndexJoinOperator(left.open(), relation, index, jc.getLeftKeys()[key], jc);
+        }
+
+        if(buildsLeft(jc)) {
+            // table on the left rows probed by the right ones, then the fields are put back in order
+            int l = left.getFieldNames().length;
+            int r = right.getFieldNames().length;
+            int[] order = new int[l + r];
+            for(int i = 0; i < l; i++) order[i] = r + i;
+            for(int i = 0; i < r; i++) order[l + i] = i;
+            return new ProjectOperator(new HashJoinOperator(right.open(), left.open(), jc.swap()), order);
+        }
+
+        return new HashJoinOperator(left.open(), right.open(), jc);
+    }
+
+    /**
+     * Function to choose the build side of a hash join
+     * @return true if the left side is expected to have fewer rows, so the table is built on it
+     */
+    private boolean buildsLeft(JoinCondition jc) {
+        return jc.hasEqualities() && indexedKey(jc) == -1 && left.getEstimatedRows() < right.getEstimatedRows();
+    }
+
+    private JoinCondition parseCondition() throws Exception {
+        JoinCondition jc = JoinCondition.parse(left.getFieldNames(), right.getFieldNames(), condition);
+        if(jc == null) throw new Exception("join: field not found in condition " + condition);
+        return jc;
+    }
+
+    /**
+     * Function to find an equality field of the join with an index on the right relation
+     * @return the position of the field among the equality keys, or -1 if none can be used
+     */
+    private int indexedKey(JoinCondition jc) {
+        if(!(right instanceof ScanNode scan)) return -1;
+
+        int[] rightKeys = jc.getRightKeys();
+        for(int i = 0; i < rightKeys.length; i++) {
+            if(scan.getRelation().getIndex(right.getFieldNames()[rightKeys[i]]) != null) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Function to get the type each pair of equality fields is compared as by a sort-merge join:
+     * their type if equal, VARCHAR otherwise (so that equal keys are the equal strings, as in the other joins)
+     */
+    private FieldType[] keyTypes(JoinCondition jc) {
+        FieldType[] leftTypes = left.getFieldTypes();
+        FieldType[] rightTypes = right.getFieldTypes();
+        int[] leftKeys = jc.getLeftKeys();
+        int[] rightKeys = jc.getRightKeys();
+
+        FieldType[] types = new FieldType[leftKeys.length];
+        for(int k = 0; k < types.length; k++) {
+            FieldType type = leftTypes[leftKeys[k]];
+            types[k] = type == rightTypes[rightKeys[k]] ? type : FieldType.VARCHAR;
+        }
+        return types;
+    }
+
+    /**
+     * @return for the left and the right side, true if its rows already come sorted on the equality fields as keyTypes compares them
+     */
+    private boolean[] sortedSides(JoinCondition jc) {
+        FieldType[] types = keyTypes(jc);
+        FieldType[] leftTypes = left.getFieldTypes();
+        FieldType[] rightTypes = right.getFieldTypes();
+
+        boolean leftSorted = left.isSortedOn(jc.getLeftKeys());
+        boolean rightSorted = right.isSortedOn(jc.getRightKeys());
+        for(int k = 0; k < types.length; k++) {
+            leftSorted &= leftTypes[jc.getLeftKeys()[k]] == types[k];
+            rightSorted &= rightTypes[jc.getRightKeys()[k]] == types[k];
+        }
+        return new boolean[] {leftSorted, rightSorted};
+    }
+
+    /**
+     * Function to choose the sort-merge join: when both sides are already sorted,
+     * or when there is no index to probe and the build side is larger than the memory budget of a sort
+     */
+    private boolean useMerge(JoinCondition jc, boolean[] sorted) {
+        if(!jc.hasEqualities()) return false;
+        if(sorted[0] && sorted[1]) return true;
+
+        return indexedKey(jc) == -1 && estimatedBytes(buildsLeft(jc) ? left : right) > ExternalSorter.getMemoryBudget();
+    }
+
+    /**
+     * @return an upper bound of the memory taken by the rows of a subplan: the size of the base relation
+     * under a chain of selections and projections, 0 if unknown
+     */
+    private static long estimatedBytes(PlanNode node) {
+        while(!(node instanceof ScanNode)) {
+            if(node.getChildren().length != 1) return 0;
+            node = node.getChildren()[0];
+        }
+        return ((ScanNode) node).getRelation().getEstimatedBytes();
+    }
+
+    @Override
+    public boolean isSortedOn(int[] fields) {
+        // a sort-merge join produces the rows in the order of the left keys
+        try {
+            JoinCondition jc = parseCondition();
+            if(!useMerge(jc, sortedSides(jc)) || fields.length > jc.getLeftKeys().length) return false;
+
+            FieldType[] types = keyTypes(jc);
+            FieldType[] leftTypes = left.getFieldTypes();
+            for(int k = 0; k < fields.length; k++) {
+                if(fields[k] != jc.getLeftKeys()[k] || leftTypes[fields[k]] != types[k]) return false;
+            }
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    @Override
+    protected long estimateRows() {
+        long l = left.getEstimatedRows();
+        long r = right.getEstimatedRows();
+        double rows = (double) l * r;
+
+        // each equality keeps the pairs with the same value: 1 out of the distinct values of the side with more of them
+        try {
+            JoinCondition jc = parseCondition();
+            for(int k = 0; k < jc.getLeftKeys().length; k++) {
+                long distinct = Math.max(left.estimateDistinct(jc.getLeftKeys()[k]), right.estimateDistinct(jc.getRightKeys()[k]));
+                rows /= Math.max(1, distinct);
+            }
+        } catch (Exception ex) {
+            // no estimate better than all the pairs
+        }
+        return (long) Math.ceil(Math.min(rows, Long.MAX_VALUE));
+    }
+
+    @Override
+    public Statistics.Column getColumnStatistics(int field) {
+        int l = left.getFieldNames().length;
+        return field < l ? left.getColumnStatistics(field) : right.getColumnStatistics(field - l);
+    }
+
+    @Override
+    public String getName() {
+        return "xprod_" + left.getName() + "_" + right.getName();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        String[] l = left.getFieldNames();
+        String[] r = right.getFieldNames();
+        String[] fields = new String[l.length + r.length];
+
+        System.arraycopy(l, 0, fields, 0, l.length);
+        System.arraycopy(r, 0, fields, l.length, r.length);
+
+        return fields;
+    }
+
+    @Override
+    public FieldType[] getFieldTypes() {
+        FieldType[] l = left.getFieldTypes();
+        FieldType[] r = right.getFieldTypes();
+        FieldType[] types = new FieldType[l.length + r.length];
+
+        System.arraycopy(l, 0, types, 0, l.length);
+        System.arraycopy(r, 0, types, l.length, r.length);
+
+        return types;
+    }
+
+    @Override
+    public PlanNode[] getChildren() {
+        return new PlanNode[] {left, right};
+    }
+
+    @Override
+    protected String describe() throws Exception {
+        JoinCondition jc = parseCondition();
+        String strategy;
+
+        boolean[] sorted = sortedSides(jc);
+        if(!jc.hasEqualities()) {
+            strategy = "nested loop join";
+        } else if(useMerge(jc, sorted)) {
+            strategy = sorted[0] && sorted[1] ? "sort-merge join, inputs already sorted"
+                    : "sort-merge join, sorting " + (sorted[0] ? "right" : sorted[1] ? "left" : "both sides");
+        } else if(indexedKey(jc) != -1) {
+            String field = right.getFieldNames()[jc.getRightKeys()[indexedKey(jc)]];
+            strategy = "index join using " + right.getName() + "." + ((ScanNode) right).getRelation().getIndex(field);
+        } else {
+            PlanNode build = buildsLeft(jc) ? left : right;
+            strategy = "hash join, build on " + build.getName();
+            if(build instanceof ScanNode scan && Parallel.isParallel(scan.getRelation().size())) strategy += ", partitioned";
+        }
+
+        return "Join " + condition + " (" + strategy + ")";
+    }
+}
@@ -0,0 +1,61 @@
+package dbms.plan;
+
+import dbms.FieldType;
+import dbms.Statistics;
+import dbms.exec.LimitOperator;
+import dbms.exec.Operator;
+
+public class LimitNode extends PlanNode {
+    private final PlanNode child;
+    private final long limit;
+
+    public LimitNode(PlanNode child, long limit) {
+        this.child = child;
+        this.limit = limit;
+    }
+
+    @Override
+    protected Operator openOperator() throws Exception {
+        return new LimitOperator(child.open(), limit);
+    }
+
+    @Override
+    public String getName() {
+        return child.getName();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return child.getFieldNames();
+    }
+
+    @Override
+    public FieldType[] getFieldTypes() {
+        return child.getFieldTypes();
+    }
+
+    @Override
+    public boolean isSortedOn(int[] fields) {
+        return child.isSortedOn(fields);
+    }
+
+    @Override
+    protected long estimateRows() {
+        return Math.min(limit, child.getEstimatedRows());
+    }
+
+    @Override
+    public Statistics.Column getColumnStatistics(int field) {
+        return child.getColumnStatistics(field);
+    }
+
+    @Override
+    public PlanNode[] getChildren() {
+        return new PlanNode[] {child};
+    }
+
+    @Override
+    protected String describe() {
+        return "Limit " + limit;
+    }
+}
@@ -0,0 +1,210 @@
+package dbms.plan;
+
+import dbms.FieldType;
+import dbms.Relation;
+import dbms.RowStore;
+import dbms.Statistics;
+import dbms.exec.Operator;
+import dbms.exec.ProfiledOperator;
+import dbms.exec.ResultWriter;
+
+import java.io.Writer;
+
+/**
+ * Node of a logical query plan. Each node produces a relation from the ones produced by its children.
+ */
+public abstract class PlanNode {
+    private boolean profiled = false;
+    private ProfiledOperator profile = null; // the measures of the last execution, when profiled
+    private long estimatedRows = -1;
+
+    /**
+     * Function to build the pipeline of operators executing the subtree rooted in this node
+     * @return the root operator, rows are produced only when requested
+     * @throws Exception if the operators cannot be built
+     */
+    public Operator open() throws Exception {
+        if(!profiled) return openOperator();
+
+        long start = System.nanoTime();
+        long allocated = ProfiledOperator.allocatedBytes();
+        Operator op = openOperator();
+        profile = new ProfiledOperator(op, System.nanoTime() - start, ProfiledOperator.allocatedBytes() - allocated);
+        return profile;
+    }
+
+    /**
+     * Function to build the operator of this node, opening the children it reads
+     * @return the operator
+     * @throws Exception if the operators cannot be built
+     */
+    protected abstract Operator openOperator() throws Exception;
+
+    /**
+     * Function to execute the subtree rooted in this node, collecting all the rows
+     * @return the resulting relation
+     * @throws Exception if any operator fails
+     */
+    public Relation execute() throws Exception {
+        return Relation.materialize(getName(), open());
+    }
+
+    /**
+     * @return the name of the relation produced by this node
+     */
+    public abstract String getName();
+
+    /**
+     * @return the names of the fields produced by this node
+     */
+    public abstract String[] getFieldNames();
+
+    /**
+     * @return the types of the fields produced by this node
+     */
+    public abstract FieldType[] getFieldTypes();
+
+    /**
+     * Function to know if the rows produced are in ascending order on some fields, each one compared as its type
+     * @param fields the indexes of the fields, the first one is the most significant
+     * @return true if the order is guaranteed, false if unknown
+     */
+    public boolean isSortedOn(int[] fields) {
+        return false;
+    }
+
+    /**
+     * Function to estimate the number of rows produced, from the statistics of the relations
+     * The estimate is computed once, the plan does not change
+     * @return the estimated number of rows
+     */
+    public long getEstimatedRows() {
+        if(estimatedRows == -1) estimatedRows = estimateRows();
+        return estimatedRows;
+    }
+
+    /**
+     * @return the estimated number of rows produced, by default the ones of the only child
+     */
+    protected long estimateRows() {
+        PlanNode[] children = getChildren();
+        return children.length == 1 ? children[0].getEstimatedRows() : 0;
+    }
+
+    /**
+     * Function to get the statistics of a field of the rows produced
+     * @param field the index of the field
+     * @return the statistics of the field in its base relation, or null if unknown
+     */
+    public Statistics.Column getColumnStatistics(int field) {
+        return null;
+    }
+
+    /**
+     * Function to estimate the number of distinct values of a field of the rows produced
+     * @param field the index of the field
+     * @return the estimate, the number of rows when there are no statistics (every value different)
+     */
+    public long estimateDistinct(int field) {
+        Statistics.Column column = getColumnStatistics(field);
+        long rows = getEstimatedRows();
+        return column == null ? rows : Math.min(rows, column.getDistinct());
+    }
+
+    /**
+     * @return the children of this node
+     */
+    public abstract PlanNode[] getChildren();
+
+    /**
+     * @return a one line description of this node
+     */
+    protected abstract String describe() throws Exception;
+
+    /**
+     * Function to get a relation describing the output of this node without executing it
+     * Only base relations have indexes, so intermediate results are represented by an empty relation
+     * @return the relation
+     */
+    protected Relation describeRelation() {
+        return new Relation("intermediate", getFieldNames(), getFieldTypes(), RowStore.Layout.ROWS);
+    }
+
+    /**
+     * Function to print the plan as an indented tree
+     * @return the plan, one node per line
+     */
+    public String explain() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        explain(sb, 0);
+        return sb.toString();
+    }
+
+    private void explain(StringBuilder sb, int depth) throws Exception {
+        sb.append("  ".repeat(depth)).append(describe()).append(" (estimated rows=").append(getEstimatedRows()).append(")");
+        if(profiled) sb.append(" ").append(describeProfile());
+        sb.append("\n");
+
+        for(PlanNode child : getChildren()) {
+            child.explain(sb, depth + 1);
+        }
+    }
+
+    /**
+     * Function to execute the plan measuring each node (EXPLAIN ANALYZE)
+     * The rows are formatted as they would be for the client and then discarded,
+     * so that the time spent formatting them is measured as well
+     * @return the plan tree with the measures of each node, followed by the total times
+     */
+    public String analyze() throws Exception {
+        setProfiled();
+
+        long start = System.nanoTime();
+        long allocated = ProfiledOperator.allocatedBytes();
+        long rows = new ResultWriter(Writer.nullWriter()).write(getName(), open());
+        long nanos = System.nanoTime() - start;
+        long bytes = ProfiledOperator.allocatedBytes() - allocated;
+
+        return explain()
+                + "Execution: " + rows + " rows, " + formatTime(nanos) + ", allocated " + formatBytes(bytes) + "\n"
+                + "Rendering: " + formatTime(nanos - profile.getNanos()) + "\n";
+    }
+
+    private void setProfiled() {
+        profiled = true;
+        for(PlanNode child : getChildren()) child.setProfiled();
+    }
+
+    /**
+     * Function to describe the measures of this node: the rows read from the children
+     * (or from the stored relation), the rows produced, the time spent in the node and its
+     * children and in the node alone, and the bytes allocated by the node alone
+     */
+    private String describeProfile() {
+        if(profile == null) return "(read directly by the parent)";
+
+        long rowsIn = profile.getRowsScanned();
+        long childNanos = 0;
+        long childBytes = 0;
+        for(PlanNode child : getChildren()) {
+            if(child.profile == null) continue;
+            rowsIn += child.profile.getRows();
+            childNanos += child.profile.getNanos();
+            childBytes += child.profile.getBytes();
+        }
+
+        return "(actual rows in=" + rowsIn + " out=" + profile.getRows()
+                + ", time=" + formatTime(profile.getNanos()) + " self=" + formatTime(profile.getNanos() - childNanos)
+                + ", allocated=" + formatBytes(profile.getBytes() - childBytes) + ")";
+    }
+
+    private static String formatTime(long nanos) {
+        return String.format("%.3f ms", nanos / 1e6);
+    }
+
+    private static String formatBytes(long bytes) {
+        if(bytes < 1024) return bytes + " B";
+        if(bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
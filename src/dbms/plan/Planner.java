@@ -0,0 +1,335 @@
+package dbms.plan;
+
+import dbms.Aggregate;
+import dbms.Condition;
+import dbms.Predicate;
+import dbms.Relation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Rule based planner for SELECT statements.
+ *
+ * The plan gives the same result as applying the joins in the written order, then the WHERE
+ * conditions and finally the projection, but:
+ * <ul>
+ *     <li>WHERE conditions involving the fields of a single relation are pushed down onto its scan,
+ *     so they run before the joins (and can use the indexes of the relation)</li>
+ *     <li>when there are joins and an explicit field list, each relation is projected on the fields
+ *     that are used later before being joined</li>
+ *     <li>with three or more relations the joins are reordered when the statistics of the relations (or their sizes)
+ *     estimate smaller intermediate results for another order: each order adding one relation at a time and
+ *     joining it with a condition is considered, and the one with the fewest estimated intermediate rows wins</li>
+ *     <li>GROUP BY and the aggregates run after the joins and the WHERE conditions, the field list
+ *     is then a projection of the group fields and of the aggregates</li>
+ *     <li>ORDER BY sorts the output when it has all the sort fields (fewer fields to sort and spill),
+ *     otherwise the rows before the final projection; no sort is added when the rows already come in order,
+ *     and a LIMIT makes the sort keep only the first rows</li>
+ * </ul>
+ * Fields are resolved the same way the operators do: WHERE and the left side of a join take the first
+ * field with that name, the final projection the last one.
+ */
+public class Planner {
+    // most relations whose join orders are all considered
+    private static final int MAX_REORDERED = 10;
+
+    /**
+     * Comparison of a join condition between a field of a relation and a field of another one
+     */
+    private static class JoinTerm {
+        public final int leftTable;
+        public final String leftField;
+        public final int rightTable;
+        public final String rightField;
+        public final Condition.Operator operator;
+
+        public JoinTerm(int leftTable, String leftField, int rightTable, String rightField, Condition.Operator operator) {
+            this.leftTable = leftTable;
+            this.leftField = leftField;
+            this.rightTable = rightTable;
+            this.rightField = rightField;
+            this.operator = operator;
+        }
+
+        /**
+         * @return the comparison with the field of the given relation on the right
+         */
+        public String toString(int right) {
+            if(right == rightTable) return leftField + " " + operator.getSymbol() + " " + rightField;
+            return rightField + " " + operator.getSymbol() + " " + leftField;
+        }
+    }
+
+    private Planner() {}
+
+    /**
+     * Function to build the plan of a SELECT statement
+     * @param relations the relation in FROM followed by the joined ones
+     * @param joinConditions the condition of each join (one less than the relations)
+     * @param fields the fields to extract ("*" for all of them)
+     * @param conditions the WHERE conditions
+     * @param groupBy the GROUP BY fields, empty if the rows are not grouped
+     * @param order the ORDER BY fields, empty if the order does not matter
+     * @param limit the maximum number of rows, -1 for no limit
+     * @return the root of the plan
+     */
+    public static PlanNode plan(List<Relation> relations, List<String> joinConditions, List<String> fields, List<Predicate> conditions,
+                                List<String> groupBy, List<SortKey> order, long limit) throws Exception {
+        int n = relations.size();
+
+        // aggregation, and the fields it reads from the joined rows
+        ArrayList<Aggregate> aggregates = new ArrayList<>();
+        for(String field : fields) {
+            Aggregate aggregate = Aggregate.parse(field);
+            if(aggregate != null) aggregates.add(aggregate);
+        }
+        boolean aggregating = !groupBy.isEmpty() || !aggregates.isEmpty();
+
+        List<String> used = fields;
+        if(aggregating) {
+            if(fields.getFirst().equals("*")) throw new Exception("select: * cannot be used with GROUP BY or aggregates");
+            for(String field : fields) {
+                if(Aggregate.parse(field) == null && !groupBy.contains(field)) throw new Exception("select: field " + field + " must be in GROUP BY or in an aggregate");
+            }
+
+            used = new ArrayList<>(groupBy);
+            for(Aggregate aggregate : aggregates) {
+                if(aggregate.getField() != null) used.add(aggregate.getField());
+            }
+        }
+
+        // schema of the full join, and the first field of each relation in it
+        ArrayList<String> all = new ArrayList<>();
+        int[] offsets = new int[n + 1];
+        for(int t = 0; t < n; t++) {
+            offsets[t] = all.size();
+            all.addAll(List.of(relations.get(t).getFieldNames()));
+        }
+        offsets[n] = all.size();
+
+        // predicate pushdown
+        ArrayList<ArrayList<Predicate>> pushed = new ArrayList<>();
+        for(int t = 0; t < n; t++) pushed.add(new ArrayList<>());
+        ArrayList<Predicate> top = new ArrayList<>();
+
+        for(Predicate condition : conditions) {
+            int[] positions = conditionFields(condition, all);
+            int table = positions == null ? -1 : tableOf(positions[0], offsets);
+            if(table != -1 && table == tableOf(positions[1], offsets)) pushed.get(table).add(condition);
+            else top.add(condition);
+        }
+
+        // fields needed above the scans, null if pruning is not possible
+        boolean[] needed = null;
+        if(n > 1 && !fields.getFirst().equals("*")) needed = neededFields(relations, offsets, all, joinConditions, used, top, aggregating ? List.of() : order);
+
+        // building the tree
+        PlanNode[] inputs = new PlanNode[n];
+        for(int t = 0; t < n; t++) {
+            PlanNode node = new ScanNode(relations.get(t));
+            for(Predicate condition : pushed.get(t)) {
+                node = new SelectionNode(node, condition);
+            }
+
+            if(needed != null) {
+                ArrayList<String> kept = new ArrayList<>();
+                for(int p = offsets[t]; p < offsets[t + 1]; p++) {
+                    if(needed[p]) kept.add(all.get(p));
+                }
+                if(kept.size() < offsets[t + 1] - offsets[t]) node = new ProjectionNode(node, kept.toArray(new String[] {}));
+            }
+            inputs[t] = node;
+        }
+
+        PlanNode root = inputs[0];
+        for(int t = 1; t < n; t++) {
+            root = new JoinNode(root, inputs[t], joinConditions.get(t - 1));
+        }
+
+        PlanNode reordered = reorderJoins(inputs, root, offsets, all, joinConditions);
+        if(reordered != null) {
+            root = reordered;
+            // SELECT * gives the fields in the written order
+            if(fields.getFirst().equals("*")) root = new ProjectionNode(root, all.toArray(new String[] {}));
+        }
+
+        for(Predicate condition : top) {
+            root = new SelectionNode(root, condition);
+        }
+
+        if(aggregating) root = new AggregateNode(root, groupBy, aggregates);
+
+        boolean project = !fields.getFirst().equals("*") && !fields.equals(List.of(root.getFieldNames()));
+        boolean sortOutput = !project || order.stream().allMatch(key -> fields.contains(key.getField()));
+        if(!order.isEmpty() && !sortOutput) root = sort(root, order, limit);
+
+        if(project) {
+            root = new ProjectionNode(root, fields.toArray(new String[] {}));
+        }
+
+        if(!order.isEmpty() && sortOutput) root = sort(root, order, limit);
+        else if(order.isEmpty() && limit >= 0) root = new LimitNode(root, limit);
+
+        return root;
+    }
+
+    /**
+     * Function to find the cheapest order of the joins, adding one relation at a time (left-deep trees),
+     * by dynamic programming on the sets of relations joined so far. Only orders where each relation
+     * is joined with a condition are considered, the cost of an order is the sum of the estimated rows
+     * of its joins.
+     * @param inputs the subplan of each relation, with its pushed down selections
+     * @param written the joins in the written order
+     * @return the joins in a cheaper order, or null if the written order is the cheapest or cannot be changed
+     *         (fewer than three relations, repeated field names, conditions not resolvable)
+     */
+    private static PlanNode reorderJoins(PlanNode[] inputs, PlanNode written, int[] offsets, List<String> all,
+                                         List<String> joinConditions) throws Exception {
+        int n = inputs.length;
+        if(n < 3 || n > MAX_REORDERED || new HashSet<>(all).size() != all.size()) return null;
+
+        ArrayList<JoinTerm> terms = new ArrayList<>();
+        for(int t = 1; t < n; t++) {
+            for(String condStr : joinConditions.get(t - 1).replace(" ", "").split("AND")) {
+                Condition condition = Condition.evaluate(condStr);
+                if(condition == null) return null;
+                Condition.Operator operator = condition.getOperator();
+                if(operator != Condition.Operator.EQUAL && operator != Condition.Operator.NOT_EQUAL) return null;
+
+                int l = tableOf(all.indexOf(condition.getField()), offsets);
+                int r = tableOf(all.indexOf(condition.getValue()), offsets);
+                if(l == -1 || l >= t || r != t) return null;
+                terms.add(new JoinTerm(l, condition.getField(), r, condition.getValue(), operator));
+            }
+        }
+
+        // cheapest plan and its cost for each set of relations
+        PlanNode[] best = new PlanNode[1 << n];
+        double[] cost = new double[1 << n];
+        for(int t = 0; t < n; t++) best[1 << t] = inputs[t];
+
+        for(int set = 1; set < (1 << n); set++) {
+            if(Integer.bitCount(set) < 2) continue;
+
+            for(int t = 0; t < n; t++) {
+                int rest = set & ~(1 << t);
+                if((set & (1 << t)) == 0 || best[rest] == null) continue;
+
+                ArrayList<String> condition = new ArrayList<>();
+                for(JoinTerm term : terms) {
+                    boolean joins = (term.leftTable == t && (rest & (1 << term.rightTable)) != 0)
+                            || (term.rightTable == t && (rest & (1 << term.leftTable)) != 0);
+                    if(joins) condition.add(term.toString(t));
+                }
+                if(condition.isEmpty()) continue;
+
+                JoinNode join = new JoinNode(best[rest], inputs[t], String.join(" AND ", condition));
+                double joinCost = cost[rest] + join.getEstimatedRows();
+                if(best[set] == null || joinCost < cost[set]) {
+                    best[set] = join;
+                    cost[set] = joinCost;
+                }
+            }
+        }
+
+        // the written order, unless another one is estimated cheaper
+        double writtenCost = 0;
+        for(PlanNode node = written; node instanceof JoinNode; node = node.getChildren()[0]) writtenCost += node.getEstimatedRows();
+
+        PlanNode cheapest = best[(1 << n) - 1];
+        if(cheapest == null || cost[(1 << n) - 1] >= writtenCost) return null;
+        return cheapest;
+    }
+
+    /**
+     * Function to order the rows of a subplan, unless they already come in that order
+     * @return the sorted subplan, cut to the limit
+     */
+    private static PlanNode sort(PlanNode root, List<SortKey> order, long limit) throws Exception {
+        List<String> names = List.of(root.getFieldNames());
+        int[] positions = new int[order.size()];
+        boolean ascending = true;
+        for(int k = 0; k < positions.length; k++) {
+            positions[k] = names.lastIndexOf(order.get(k).getField());
+            if(positions[k] == -1) throw new Exception("select: ORDER BY field " + order.get(k).getField() + " not found");
+            ascending &= !order.get(k).isDescending();
+        }
+
+        if(ascending && root.isSortedOn(positions)) return limit >= 0 ? new LimitNode(root, limit) : root;
+        return new SortNode(root, order, limit);
+    }
+
+    /**
+     * Function to find which fields of the full join each field reference resolves to
+     * @return for each position, true if the field is used above the scans, or null if some reference cannot be resolved
+     */
+    private static boolean[] neededFields(List<Relation> relations, int[] offsets, ArrayList<String> all,
+                                          List<String> joinConditions, List<String> fields, List<Predicate> top,
+                                          List<SortKey> order) throws Exception {
+        boolean[] needed = new boolean[all.size()];
+
+        // relations with repeated field names are not pruned, projection would not know which one to keep
+        for(Relation relation : relations) {
+            String[] names = relation.getFieldNames();
+            if(new HashSet<>(List.of(names)).size() != names.length) return null;
+        }
+
+        for(String field : fields) {
+            int p = all.lastIndexOf(field);
+            if(p == -1) return null;
+            needed[p] = true;
+        }
+
+        for(SortKey key : order) {
+            int p = all.lastIndexOf(key.getField());
+            if(p == -1) return null;
+            needed[p] = true;
+        }
+
+        for(Predicate condition : top) {
+            int[] positions = conditionFields(condition, all);
+            if(positions == null) return null;
+            needed[positions[0]] = true;
+            needed[positions[1]] = true;
+        }
+
+        for(int j = 1; j < relations.size(); j++) {
+            List<String> left = all.subList(0, offsets[j]);
+            List<String> right = all.subList(offsets[j], offsets[j + 1]);
+
+            for(String condStr : joinConditions.get(j - 1).replace(" ", "").split("AND")) {
+                Condition condition = Condition.evaluate(condStr);
+                if(condition == null) return null;
+
+                int l = left.indexOf(condition.getField());
+                int r = right.indexOf(condition.getValue());
+                if(l == -1 || r == -1) return null;
+                needed[l] = true;
+                needed[offsets[j] + r] = true;
+            }
+        }
+
+        return needed;
+    }
+
+    /**
+     * Function to resolve the fields of a WHERE condition in the schema of the full join
+     * @return the positions of the two sides (the same one twice when comparing with a value), or null if not resolvable
+     */
+    private static int[] conditionFields(Predicate condition, List<String> all) {
+        int p1 = all.indexOf(condition.getField());
+        int p2 = condition.getOtherField() == null ? p1 : all.indexOf(condition.getOtherField());
+        if(p1 == -1 || p2 == -1) return null;
+
+        return new int[] {p1, p2};
+    }
+
+    private static int tableOf(int position, int[] offsets) {
+        for(int t = 0; t < offsets.length - 1; t++) {
+            if(position >= offsets[t] && position < offsets[t + 1]) return t;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,76 @@
+package dbms.plan;
+
+import dbms.FieldType;
+import dbms.Statistics;
+import dbms.exec.Operator;
+import dbms.exec.ProjectOperator;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ProjectionNode extends PlanNode {
+    private final PlanNode child;
+    private final String[] fields;
+
+    public ProjectionNode(PlanNode child, String[] fields) {
+        this.child = child;
+        this.fields = fields.clone();
+    }
+
+    @Override
+    protected Operator openOperator() throws Exception {
+        return new ProjectOperator(child.open(), fields);
+    }
+
+    @Override
+    public String getName() {
+        return "projection_" + child.getName();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return fields.clone();
+    }
+
+    @Override
+    public FieldType[] getFieldTypes() {
+        // same choice of ProjectOperator: the last child field with the name
+        String[] childFields = child.getFieldNames();
+        FieldType[] childTypes = child.getFieldTypes();
+        FieldType[] types = FieldType.varchar(fields.length);
+        for(int i = 0; i < fields.length; i++) {
+            for(int j = 0; j < childFields.length; j++) {
+                if(fields[i].equals(childFields[j])) types[i] = childTypes[j];
+            }
+        }
+        return types;
+    }
+
+    @Override
+    public boolean isSortedOn(int[] positions) {
+        // the same fields in the rows of the child
+        List<String> childFields = Arrays.asList(child.getFieldNames());
+        int[] childPositions = new int[positions.length];
+        for(int k = 0; k < positions.length; k++) {
+            childPositions[k] = childFields.lastIndexOf(fields[positions[k]]);
+            if(childPositions[k] == -1) return false;
+        }
+        return child.isSortedOn(childPositions);
+    }
+
+    @Override
+    public Statistics.Column getColumnStatistics(int field) {
+        int childField = Arrays.asList(child.getFieldNames()).lastIndexOf(fields[field]);
+        return childField == -1 ? null : child.getColumnStatistics(childField);
+    }
+
+    @Override
+    public PlanNode[] getChildren() {
+        return new PlanNode[] {child};
+    }
+
+    @Override
+    protected String describe() {
+        return "Projection " + String.join(",", fields);
+    }
+}
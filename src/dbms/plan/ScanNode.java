@@ -0,0 +1,76 @@
+package dbms.plan;
+
+import dbms.FieldType;
+import dbms.Relation;
+import dbms.Statistics;
+import dbms.exec.Operator;
+import dbms.exec.ScanOperator;
+
+/**
+ * Leaf of the plan: a relation loaded from the catalog
+ */
+public class ScanNode extends PlanNode {
+    private final Relation relation;
+
+    public ScanNode(Relation relation) {
+        this.relation = relation;
+    }
+
+    /**
+     * @return the scanned relation
+     */
+    public Relation getRelation() {
+        return relation;
+    }
+
+    @Override
+    protected Operator openOperator() {
+        return new ScanOperator(relation);
+    }
+
+    @Override
+    public Relation execute() {
+        return relation;
+    }
+
+    @Override
+    public String getName() {
+        return relation.getName();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return relation.getFieldNames();
+    }
+
+    @Override
+    public FieldType[] getFieldTypes() {
+        return relation.getFieldTypes();
+    }
+
+    @Override
+    protected long estimateRows() {
+        return relation.size();
+    }
+
+    @Override
+    public Statistics.Column getColumnStatistics(int field) {
+        Statistics statistics = relation.getStatistics();
+        return statistics == null ? null : statistics.getColumn(relation.getFieldNames()[field]);
+    }
+
+    @Override
+    public PlanNode[] getChildren() {
+        return new PlanNode[0];
+    }
+
+    @Override
+    protected String describe() {
+        return "Scan " + relation.getName();
+    }
+
+    @Override
+    protected Relation describeRelation() {
+        return relation;
+    }
+}
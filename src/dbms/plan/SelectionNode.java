@@ -0,0 +1,155 @@
+package dbms.plan;
+
+import dbms.BatchFilter;
+import dbms.ColumnStore;
+import dbms.Condition;
+import dbms.FieldType;
+import dbms.Index;
+import dbms.Parallel;
+import dbms.Predicate;
+import dbms.Relation;
+import dbms.Statistics;
+import dbms.exec.FilterOperator;
+import dbms.exec.IndexScanOperator;
+import dbms.exec.Operator;
+import dbms.exec.ScanFilterOperator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class SelectionNode extends PlanNode {
+    private final PlanNode child;
+    private final Predicate condition;
+
+    public SelectionNode(PlanNode child, Predicate condition) {
+        this.child = child;
+        this.condition = condition;
+    }
+
+    @Override
+    protected Operator openOperator() throws Exception {
+        List<SelectionNode> chain = scanChain();
+        if(chain != null) {
+            SelectionNode bottom = chain.getLast();
+            Relation relation = ((ScanNode) bottom.child).getRelation();
+
+            // directly on a base relation with an index on the field: no scan at all,
+            // the conditions above are tested on the rows found
+            Predicate resolved = relation.resolve(bottom.condition);
+            Index index = relation.getSelectionIndex(resolved);
+            if(index != null) {
+                if(bottom == this) return new IndexScanOperator(relation, index, resolved);
+                return new FilterOperator(child.open(), condition, child.getFieldTypes());
+            }
+
+            // the conditions of all the selections down to the scan are compiled against the storage of the
+            // relation (dictionary codes or primitive arrays for columns) and evaluated in a single scan,
+            // batch by batch, ANDing their bitmaps with the most selective first; large relations in parallel
+            chain.sort(Comparator.comparingDouble(SelectionNode::selectivity));
+            ArrayList<BatchFilter> kernels = new ArrayList<>();
+            for(SelectionNode selection : chain) kernels.add(relation.compileCondition(selection.condition));
+            return new ScanFilterOperator(relation, BatchFilter.and(kernels));
+        }
+
+        return new FilterOperator(child.open(), condition, child.getFieldTypes());
+    }
+
+    /**
+     * @return the selections from this one down to the scan of a base relation, or null if there is no scan below them
+     */
+    private List<SelectionNode> scanChain() {
+        ArrayList<SelectionNode> chain = new ArrayList<>();
+        PlanNode node = this;
+        while(node instanceof SelectionNode selection) {
+            chain.add(selection);
+            node = selection.child;
+        }
+        return node instanceof ScanNode ? chain : null;
+    }
+
+    /**
+     * @return the estimated fraction of the rows of the child satisfying the condition
+     */
+    private double selectivity() {
+        long rows = child.getEstimatedRows();
+        return rows == 0 ? 0 : (double) getEstimatedRows() / rows;
+    }
+
+    @Override
+    public String getName() {
+        return "selection_" + child.getName();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return child.getFieldNames();
+    }
+
+    @Override
+    public FieldType[] getFieldTypes() {
+        return child.getFieldTypes();
+    }
+
+    @Override
+    public boolean isSortedOn(int[] fields) {
+        return child.isSortedOn(fields);
+    }
+
+    @Override
+    protected long estimateRows() {
+        long rows = child.getEstimatedRows();
+        List<String> names = Arrays.asList(child.getFieldNames());
+        int field = names.indexOf(condition.getField());
+        int other = condition.getOtherField() == null ? -1 : names.indexOf(condition.getOtherField());
+        if(field == -1) return rows;
+
+        FieldType type = child.getFieldTypes()[field];
+        Predicate normalized;
+        try {
+            normalized = condition.normalize(type);
+        } catch (Exception ex) {
+            return rows;
+        }
+
+        double selectivity = Statistics.selectivity(normalized, type, child.getColumnStatistics(field),
+                other == -1 ? null : child.getColumnStatistics(other));
+        return (long) Math.ceil(rows * selectivity);
+    }
+
+    @Override
+    public Statistics.Column getColumnStatistics(int field) {
+        return child.getColumnStatistics(field);
+    }
+
+    @Override
+    public PlanNode[] getChildren() {
+        return new PlanNode[] {child};
+    }
+
+    @Override
+    protected String describe() {
+        List<SelectionNode> chain = scanChain();
+        if(chain == null) return "Selection " + condition + " (filter)";
+
+        SelectionNode bottom = chain.getLast();
+        Relation relation = bottom.child.describeRelation();
+        Index index = relation.getSelectionIndex(bottom.condition);
+        if(index != null) {
+            String lookup = condition.getOperator() == Condition.Operator.EQUAL ? "index lookup" : "index range scan";
+            return "Selection " + condition + (bottom == this ? " (" + lookup + " using " + index + ")" : " (filter)");
+        }
+
+        String scan = "full scan";
+        if(relation.getStore() instanceof ColumnStore) {
+            int field = Arrays.asList(relation.getFieldNames()).indexOf(condition.getField());
+            boolean numeric = field != -1 && condition.getOtherField() == null && relation.getFieldTypes()[field].isNumeric();
+            scan = numeric ? "vectorized primitive column scan" : "vectorized dictionary code scan";
+        }
+        if(bottom != this) return "Selection " + condition + " (" + scan + ", bitmap ANDed in the scan below)";
+
+        if(Parallel.isParallel(relation.size())) scan = "parallel " + scan + ", " + Parallel.getParallelism() + " threads";
+        return "Selection " + condition + " (" + scan + ")";
+    }
+}
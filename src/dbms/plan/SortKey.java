@@ -0,0 +1,46 @@
+package dbms.plan;
+
+import dbms.Aggregate;
+
+/**
+ * Field of an ORDER BY clause with its direction
+ */
+public class SortKey {
+    private final String field;
+    private final boolean descending;
+
+    public SortKey(String field, boolean descending) {
+        this.field = field;
+        this.descending = descending;
+    }
+
+    /**
+     * Function to parse a field of an ORDER BY clause
+     * @param key expressed as a string of type field [ASC|DESC]
+     * @return the parsed key
+     * @throws Exception if the key is not valid
+     */
+    public static SortKey parse(String key) throws Exception {
+        String[] tokens = key.trim().split(" +");
+        if(tokens[0].isEmpty() || tokens.length > 2) throw new Exception("select: invalid ORDER BY field " + key.trim());
+        // aggregates are named as in the field list
+        String field = Aggregate.canonical(tokens[0]);
+        if(tokens.length == 1 || tokens[1].equalsIgnoreCase("asc")) return new SortKey(field, false);
+        if(tokens[1].equalsIgnoreCase("desc")) return new SortKey(field, true);
+
+        throw new Exception("select: invalid ORDER BY direction " + tokens[1]);
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    @Override
+    public String toString() {
+        return descending ? field + " DESC" : field;
+    }
+}
@@ -0,0 +1,128 @@
+package dbms.plan;
+
+import dbms.ExternalSorter;
+import dbms.FieldType;
+import dbms.RowComparator;
+import dbms.Statistics;
+import dbms.exec.LimitOperator;
+import dbms.exec.Operator;
+import dbms.exec.SortOperator;
+import dbms.exec.TopKOperator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ordering of the rows of a subplan (ORDER BY), with the LIMIT of the statement if any.
+ * With a small enough limit only the best rows are kept in a bounded heap (top-k),
+ * otherwise all the rows go through an external merge sort that spills to disk over its memory budget.
+ */
+public class SortNode extends PlanNode {
+    // largest limit answered with a heap, larger ones are sorted and cut
+    private static final long TOP_K_MAX = 1 << 16;
+
+    private final PlanNode child;
+    private final List<SortKey> keys;
+    private final long limit;
+
+    /**
+     * @param child the subplan
+     * @param keys the fields to sort on, the first one is the most significant
+     * @param limit the number of rows to produce, -1 for all of them
+     */
+    public SortNode(PlanNode child, List<SortKey> keys, long limit) {
+        this.child = child;
+        this.keys = List.copyOf(keys);
+        this.limit = limit;
+    }
+
+    /**
+     * Function to resolve the sort fields in the rows of the child, as the final projection does (last field with the name)
+     * @return the indexes of the fields
+     * @throws Exception if a field is not found
+     */
+    private int[] positions() throws Exception {
+        List<String> fields = Arrays.asList(child.getFieldNames());
+        int[] positions = new int[keys.size()];
+        for(int k = 0; k < positions.length; k++) {
+            positions[k] = fields.lastIndexOf(keys.get(k).getField());
+            if(positions[k] == -1) throw new Exception("select: ORDER BY field " + keys.get(k).getField() + " not found");
+        }
+        return positions;
+    }
+
+    private RowComparator comparator() throws Exception {
+        int[] positions = positions();
+        FieldType[] childTypes = child.getFieldTypes();
+        FieldType[] types = new FieldType[positions.length];
+        boolean[] descending = new boolean[positions.length];
+        for(int k = 0; k < positions.length; k++) {
+            types[k] = childTypes[positions[k]];
+            descending[k] = keys.get(k).isDescending();
+        }
+        return new RowComparator(positions, types, descending);
+    }
+
+    @Override
+    protected Operator openOperator() throws Exception {
+        RowComparator comparator = comparator();
+        if(limit >= 0 && limit <= TOP_K_MAX) return new TopKOperator(child.open(), comparator, (int) limit);
+
+        Operator sort = new SortOperator(child.open(), comparator);
+        return limit >= 0 ? new LimitOperator(sort, limit) : sort;
+    }
+
+    @Override
+    public String getName() {
+        return child.getName();
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return child.getFieldNames();
+    }
+
+    @Override
+    public FieldType[] getFieldTypes() {
+        return child.getFieldTypes();
+    }
+
+    @Override
+    public boolean isSortedOn(int[] fields) {
+        if(fields.length > keys.size()) return false;
+        try {
+            int[] positions = positions();
+            for(int k = 0; k < fields.length; k++) {
+                if(positions[k] != fields[k] || keys.get(k).isDescending()) return false;
+            }
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    @Override
+    protected long estimateRows() {
+        long rows = child.getEstimatedRows();
+        return limit >= 0 ? Math.min(limit, rows) : rows;
+    }
+
+    @Override
+    public Statistics.Column getColumnStatistics(int field) {
+        return child.getColumnStatistics(field);
+    }
+
+    @Override
+    public PlanNode[] getChildren() {
+        return new PlanNode[] {child};
+    }
+
+    @Override
+    protected String describe() {
+        String order = "Sort " + String.join(", ", keys.stream().map(SortKey::toString).toList());
+        if(limit >= 0 && limit <= TOP_K_MAX) return order + " (top-" + limit + " heap)";
+
+        String sort = order + " (external merge sort, " + (ExternalSorter.getMemoryBudget() >> 20) + " MB in memory";
+        return limit >= 0 ? sort + ", first " + limit + " rows)" : sort + ")";
+    }
+}
@@ -0,0 +1,99 @@
+package dbms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Relations saved to CSV files and loaded again must keep every row as it was,
+ * whatever the values contain (empty values, commas, quotes, newlines)
+ */
+class CsvRoundTripTest {
+    private static int next = 0;
+    private final List<String> names = new ArrayList<>();
+
+    private String newName() {
+        String name = "csv_round_trip_test_" + ProcessHandle.current().pid() + "_" + next++;
+        names.add(name);
+        return name;
+    }
+
+    private static List<List<String>> rows(Relation relation) {
+        List<List<String>> rows = new ArrayList<>();
+        for(int i = 0; i < relation.size(); i++) rows.add(List.of(relation.getRow(i)));
+        return rows;
+    }
+
+    @AfterEach
+    void deleteFiles() {
+        for(String name : names) {
+            File[] files = Relation.getFile(name, ".csv").getParentFile().listFiles((dir, file) -> file.startsWith(name + "."));
+            if(files != null) {
+                for(File file : files) file.delete();
+            }
+        }
+    }
+
+    private static Relation saveAndLoad(Relation relation) {
+        Relation.getFile(relation.getName(), ".csv").getParentFile().mkdirs();
+        relation.save();
+        Relation loaded = Relation.load(relation.getName());
+        assertNotNull(loaded);
+        return loaded;
+    }
+
+    @ParameterizedTest
+    @EnumSource(RowStore.Layout.class)
+    void singleFieldKeepsEmptyValues(RowStore.Layout layout) throws Exception {
+        Relation relation = new Relation(newName(), new String[] {"v"}, layout);
+        relation.insert(new String[] {""});
+        relation.insert(new String[] {"x"});
+
+        Relation loaded = saveAndLoad(relation);
+        assertEquals(List.of(List.of(""), List.of("x")), rows(loaded));
+    }
+
+    @ParameterizedTest
+    @EnumSource(RowStore.Layout.class)
+    void valuesNeedingQuotesRoundTrip(RowStore.Layout layout) throws Exception {
+        Relation relation = new Relation(newName(), new String[] {"a", "b"}, layout);
+        relation.insert(new String[] {"", ""});
+        relation.insert(new String[] {"x,y", "say \"hi\""});
+        relation.insert(new String[] {"two\nlines", "crlf\r\n"});
+
+        Relation loaded = saveAndLoad(relation);
+        assertEquals(rows(relation), rows(loaded));
+    }
+
+    @ParameterizedTest
+    @EnumSource(RowStore.Layout.class)
+    void emptyLinesAreRowsOnlyForSingleTextField(RowStore.Layout layout) throws IOException {
+        RowStore.Layout previous = Relation.getDefaultLayout();
+        Relation.setDefaultLayout(layout);
+        try {
+            String text = newName();
+            Files.createDirectories(Relation.getFile(text, ".csv").getParentFile().toPath());
+            Files.writeString(Relation.getFile(text, ".csv").toPath(), "v\nx\n\ny", StandardCharsets.UTF_8);
+            assertEquals(List.of(List.of("x"), List.of(""), List.of("y")), rows(Relation.load(text)));
+
+            String number = newName();
+            Files.writeString(Relation.getFile(number, ".csv").toPath(), "v:INT\n1\n\n2\n", StandardCharsets.UTF_8);
+            assertEquals(List.of(List.of("1"), List.of("2")), rows(Relation.load(number)));
+
+            String pair = newName();
+            Files.writeString(Relation.getFile(pair, ".csv").toPath(), "a,b\n1,2\n\r\n3,4\n", StandardCharsets.UTF_8);
+            assertEquals(List.of(List.of("1", "2"), List.of("3", "4")), rows(Relation.load(pair)));
+        } finally {
+            Relation.setDefaultLayout(previous);
+        }
+    }
+}
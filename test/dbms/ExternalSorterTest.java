@@ -0,0 +1,103 @@
+package dbms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * External merge sort with a memory budget small enough to spill every few rows: the result must be
+ * the one of a stable sort in memory, also when the runs are more than a merge can read at once.
+ */
+class ExternalSorterTest {
+    private static final Comparator<String[]> BY_KEY = Comparator.comparing(row -> row[0]);
+
+    private long budget;
+
+    @BeforeEach
+    void saveBudget() {
+        budget = ExternalSorter.getMemoryBudget();
+    }
+
+    @AfterEach
+    void restoreBudget() {
+        ExternalSorter.setMemoryBudget(budget);
+    }
+
+    /**
+     * @return rows of a key with many duplicates and of their position, so that the order of the ties can be checked
+     */
+    private static List<String[]> rows(int count, int keys) {
+        Random random = new Random(42);
+        List<String[]> rows = new ArrayList<>();
+        for(int i = 0; i < count; i++) rows.add(new String[] {"k" + random.nextInt(keys), Integer.toString(i)});
+        return rows;
+    }
+
+    private static List<String[]> sort(List<String[]> rows, ExternalSorter sorter) throws Exception {
+        for(String[] row : rows) sorter.add(row);
+        sorter.finish();
+
+        List<String[]> sorted = new ArrayList<>();
+        for(String[] row = sorter.next(); row != null; row = sorter.next()) sorted.add(row);
+        return sorted;
+    }
+
+    private static void assertSameRows(List<String[]> expected, List<String[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) assertArrayEquals(expected.get(i), actual.get(i), "row " + i);
+    }
+
+    @Test
+    void inMemorySortIsStable() throws Exception {
+        List<String[]> rows = rows(5000, 20);
+        List<String[]> expected = new ArrayList<>(rows);
+        expected.sort(BY_KEY);
+
+        try(ExternalSorter sorter = new ExternalSorter(BY_KEY, 2)) {
+            assertSameRows(expected, sort(rows, sorter));
+            assertEquals(0, sorter.getSpilledRuns());
+        }
+    }
+
+    @Test
+    void spilledRunsMergeStably() throws Exception {
+        ExternalSorter.setMemoryBudget(20_000);
+        List<String[]> rows = rows(5000, 20);
+        List<String[]> expected = new ArrayList<>(rows);
+        expected.sort(BY_KEY);
+
+        try(ExternalSorter sorter = new ExternalSorter(BY_KEY, 2)) {
+            assertSameRows(expected, sort(rows, sorter));
+            assertTrue(sorter.getSpilledRuns() > 1);
+        }
+    }
+
+    @Test
+    void multiPassMergeKeepsOrderAndTies() throws Exception {
+        // a few rows per run: hundreds of runs, more than a single merge reads, so intermediate passes are needed
+        ExternalSorter.setMemoryBudget(1_000);
+        List<String[]> rows = rows(4000, 7);
+        List<String[]> expected = new ArrayList<>(rows);
+        expected.sort(BY_KEY);
+
+        try(ExternalSorter sorter = new ExternalSorter(BY_KEY, 2)) {
+            assertSameRows(expected, sort(rows, sorter));
+            assertTrue(sorter.getSpilledRuns() > 64 * 2, "spilled " + sorter.getSpilledRuns() + " runs");
+        }
+    }
+
+    @Test
+    void emptyInput() throws Exception {
+        ExternalSorter.setMemoryBudget(1_000);
+        try(ExternalSorter sorter = new ExternalSorter(BY_KEY, 2)) {
+            assertTrue(sort(List.of(), sorter).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package dbms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Durability of the insert log: every acknowledged row must be found again when the relation
+ * is reloaded, and an append interrupted by a crash must not swallow the rows appended after it.
+ */
+class InsertLogTest {
+    private static int next = 0;
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Function to create a relation file in the data directory, with a name used by no other test
+     * @param csv the content of the file, header included
+     * @return the name of the relation
+     */
+    private String create(String csv) throws IOException {
+        String name = "insert_log_test_" + ProcessHandle.current().pid() + "_" + next++;
+        names.add(name);
+        File file = Relation.getFile(name, ".csv");
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), csv, StandardCharsets.UTF_8);
+        return name;
+    }
+
+    private static String readLog(String name) throws IOException {
+        return Files.readString(Relation.getFile(name, ".log").toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static void writeLog(String name, String content) throws IOException {
+        Files.writeString(Relation.getFile(name, ".log").toPath(), content, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> values(Relation relation, int field) {
+        List<String> values = new ArrayList<>();
+        for(int i = 0; i < relation.size(); i++) values.add(relation.getRow(i)[field]);
+        return values;
+    }
+
+    @AfterEach
+    void deleteFiles() {
+        for(String name : names) {
+            File[] files = Relation.getFile(name, ".csv").getParentFile().listFiles((dir, file) -> file.startsWith(name + "."));
+            if(files != null) {
+                for(File file : files) file.delete();
+            }
+        }
+    }
+
+    @Test
+    void emptyValueOfSingleFieldSurvivesReplay() throws Exception {
+        String name = create("v\n");
+        InsertLog.append(name, List.of(new String[] {""}, new String[] {"x"}));
+
+        assertEquals("\"\"\nx\n", readLog(name));
+        Relation relation = Relation.load(name);
+        assertNotNull(relation);
+        assertEquals(List.of("", "x"), values(relation, 0));
+    }
+
+    @Test
+    void emptyLineOfSingleFieldLogIsReplayedAsEmptyValue() throws Exception {
+        // logs written before empty values were quoted
+        String name = create("v\n");
+        writeLog(name, "x\n\n");
+
+        Relation relation = Relation.load(name);
+        assertNotNull(relation);
+        assertEquals(List.of("x", ""), values(relation, 0));
+    }
+
+    @Test
+    void emptyLineOfSeveralFieldsLogIsSkipped() throws Exception {
+        String name = create("id:INT,name\n1,a\n");
+        writeLog(name, "2,b\n\n3,c\n");
+
+        Relation relation = Relation.load(name);
+        assertNotNull(relation);
+        assertEquals(List.of("1", "2", "3"), values(relation, 0));
+    }
+
+    @Test
+    void tornTailIsCutBeforeAppending() throws Exception {
+        String name = create("id:INT,name\n1,a\n");
+        // the last append was interrupted inside a quoted value
+        writeLog(name, "2,b\n3,\"c\nd");
+
+        InsertLog.append(name, new String[] {"4", "e"});
+
+        assertEquals("2,b\n4,e\n", readLog(name));
+        Relation relation = Relation.load(name);
+        assertNotNull(relation);
+        assertEquals(List.of("1", "2", "4"), values(relation, 0));
+        assertEquals(List.of("a", "b", "e"), values(relation, 1));
+    }
+
+    @Test
+    void tornTailIsNotReplayed() throws Exception {
+        String name = create("id:INT,name\n1,a\n");
+        writeLog(name, "2,b\n3,c");
+
+        Relation relation = Relation.load(name);
+        assertNotNull(relation);
+        assertEquals(List.of("1", "2"), values(relation, 0));
+    }
+}
@@ -0,0 +1,141 @@
+package dbms;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Snapshot isolation of the stores: readers work on snapshots while a writer appends and commits batches of rows.
+ * A snapshot must only see whole committed batches, keep the same rows however many are appended after it,
+ * and find with contains exactly the rows it holds.
+ */
+class SnapshotIsolationTest {
+    private static final FieldType[] TYPES = {FieldType.INT, FieldType.VARCHAR};
+    private static final int BATCH = 37;
+    private static final int BATCHES = 400;
+    private static final int READERS = 4;
+
+    private static String[] row(int i) {
+        return new String[] {Integer.toString(i), "v" + (i % 11)};
+    }
+
+    @ParameterizedTest
+    @EnumSource(RowStore.Layout.class)
+    void readersSeeOnlyCommittedBatches(RowStore.Layout layout) throws Exception {
+        RowStore store = RowStore.create(layout, TYPES);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+
+        Thread writer = new Thread(() -> {
+            try {
+                int next = 0;
+                for(int b = 0; b < BATCHES; b++) {
+                    for(int i = 0; i < BATCH; i++) store.add(row(next++));
+                    store.commit();
+                }
+            } catch (Throwable t) {
+                failures.add("writer: " + t);
+            } finally {
+                writing.set(false);
+            }
+        });
+
+        List<Thread> readers = new ArrayList<>();
+        for(int r = 0; r < READERS; r++) {
+            readers.add(new Thread(() -> {
+                try {
+                    while(writing.get() && failures.isEmpty()) check(store.snapshot(), failures);
+                    check(store.snapshot(), failures);
+                } catch (Throwable t) {
+                    failures.add("reader: " + t);
+                }
+            }));
+        }
+
+        writer.start();
+        for(Thread reader : readers) reader.start();
+        writer.join(TimeUnit.MINUTES.toMillis(2));
+        for(Thread reader : readers) reader.join(TimeUnit.MINUTES.toMillis(2));
+
+        assertTrue(failures.isEmpty(), () -> String.join("\n", failures));
+        assertEquals(BATCH * BATCHES, store.snapshot().size());
+    }
+
+    /**
+     * Function to check a snapshot: its size is a whole number of batches and stays the same,
+     * its rows are the first ones appended and contains finds them, but not the rows appended after it
+     */
+    private static void check(RowStore snapshot, ConcurrentLinkedQueue<String> failures) {
+        int size = snapshot.size();
+        if(size % BATCH != 0) failures.add("snapshot of " + size + " rows, not a whole number of batches");
+
+        for(int i = 0; i < size; i += 7) {
+            String[] expected = row(i);
+            String[] actual = snapshot.get(i);
+            if(!expected[0].equals(actual[0]) || !expected[1].equals(actual[1])) {
+                failures.add("row " + i + " of a snapshot of " + size + " rows is " + String.join(",", actual));
+            }
+            if(!expected[1].equals(snapshot.get(i, 1))) failures.add("value of row " + i + " is " + snapshot.get(i, 1));
+            if(!snapshot.contains(expected)) failures.add("snapshot of " + size + " rows does not contain row " + i);
+        }
+        if(snapshot.contains(row(size))) failures.add("snapshot of " + size + " rows contains row " + size);
+
+        int rows = 0;
+        for(String[] ignored : snapshot) rows++;
+        if(rows != size || snapshot.size() != size) failures.add("snapshot of " + size + " rows changed to " + snapshot.size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(RowStore.Layout.class)
+    void viewSeesUncommittedRowsAsOfCreation(RowStore.Layout layout) {
+        RowStore store = RowStore.create(layout, TYPES);
+        for(int i = 0; i < 10; i++) store.add(row(i));
+        store.commit();
+        store.add(row(10));
+
+        RowStore view = store.view();
+        RowStore snapshot = store.snapshot();
+        store.add(row(11));
+        store.commit();
+
+        assertEquals(11, view.size());
+        assertTrue(view.contains(row(10)));
+        assertFalse(view.contains(row(11)));
+        assertEquals(10, snapshot.size());
+        assertFalse(snapshot.contains(row(10)));
+        assertEquals(12, store.snapshot().size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(RowStore.Layout.class)
+    void snapshotsAreReadOnly(RowStore.Layout layout) {
+        RowStore store = RowStore.create(layout, TYPES);
+        store.add(row(0));
+        store.commit();
+
+        assertThrows(UnsupportedOperationException.class, () -> store.snapshot().add(row(1)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(RowStore.Layout.class)
+    void laterDuplicateDoesNotHideRowFromOlderSnapshot(RowStore.Layout layout) {
+        RowStore store = RowStore.create(layout, TYPES);
+        store.add(row(0));
+        store.commit();
+        RowStore snapshot = store.snapshot();
+
+        // the store does not check duplicates, the relation does
+        store.add(row(0));
+        store.commit();
+
+        assertTrue(snapshot.contains(row(0)));
+        assertTrue(store.snapshot().contains(row(0)));
+    }
+}
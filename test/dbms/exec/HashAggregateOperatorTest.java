@@ -0,0 +1,144 @@
+package dbms.exec;
+
+import dbms.Aggregate;
+import dbms.ExternalSorter;
+import dbms.FieldType;
+import dbms.Parallel;
+import dbms.Relation;
+import dbms.RowStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GROUP BY with a memory budget too small for the groups: the partial tables are spilled to partition files
+ * several times, and the groups merged from the partitions must be the ones of a group-by in memory.
+ */
+class HashAggregateOperatorTest {
+    private static final int ROWS = 200_000; // several batches, each one spilling
+    private static final int GROUPS = 3_000;
+    private static final String[] AGGREGATES = {"COUNT(*)", "SUM(v)", "MIN(s)", "MAX(v)", "AVG(d)"};
+
+    private long budget;
+    private int parallelism;
+
+    @BeforeEach
+    void saveSettings() {
+        budget = ExternalSorter.getMemoryBudget();
+        parallelism = Parallel.getParallelism();
+    }
+
+    @AfterEach
+    void restoreSettings() {
+        ExternalSorter.setMemoryBudget(budget);
+        Parallel.setParallelism(parallelism);
+    }
+
+    private static Relation relation() throws Exception {
+        Relation relation = new Relation("hash_aggregate_test", new String[] {"g", "v", "d", "s"},
+                new FieldType[] {FieldType.VARCHAR, FieldType.INT, FieldType.DOUBLE, FieldType.VARCHAR}, RowStore.Layout.ROWS);
+        List<String[]> rows = new ArrayList<>();
+        for(int i = 0; i < ROWS; i++) {
+            // halves, so that the sums are exact whatever the order of the additions
+            rows.add(new String[] {"g" + (i * 7919L % GROUPS), Integer.toString(i % 1000 - 500), Double.toString((i % 8) * 0.5), "s" + (i % 997)});
+        }
+        relation.insert(rows, false);
+        return relation;
+    }
+
+    private static HashAggregateOperator aggregate(Relation relation) throws Exception {
+        Aggregate[] aggregates = new Aggregate[AGGREGATES.length];
+        for(int a = 0; a < aggregates.length; a++) aggregates[a] = Aggregate.parse(AGGREGATES[a]);
+
+        String[] fields = new String[1 + AGGREGATES.length];
+        fields[0] = "g";
+        System.arraycopy(AGGREGATES, 0, fields, 1, AGGREGATES.length);
+
+        return new HashAggregateOperator(new ScanOperator(relation), new int[] {0}, aggregates, new int[] {-1, 1, 3, 1, 2},
+                new FieldType[] {FieldType.VARCHAR, FieldType.INT, FieldType.VARCHAR, FieldType.INT, FieldType.DOUBLE}, fields);
+    }
+
+    private static int spillFiles() {
+        File[] files = new File("data").listFiles((dir, name) -> name.startsWith("aggregate") && name.endsWith(".spill"));
+        return files == null ? 0 : files.length;
+    }
+
+    /**
+     * Function to run the operator
+     * @return the rows produced by group, and in position 0 of the map value the number of spill files seen after the first row
+     */
+    private static Map<String, List<String>> run(HashAggregateOperator operator, int[] spilled) throws Exception {
+        Map<String, List<String>> groups = new HashMap<>();
+        try {
+            for(String[] row = operator.next(); row != null; row = operator.next()) {
+                if(groups.isEmpty()) spilled[0] = spillFiles();
+                assertNull(groups.put(row[0], List.of(row)), "group " + row[0] + " produced twice");
+            }
+        } finally {
+            operator.close();
+        }
+        return groups;
+    }
+
+    /**
+     * @return the groups computed in memory, without the operator
+     */
+    private static Map<String, List<String>> expected(Relation relation) {
+        Map<String, long[]> state = new HashMap<>(); // count, sum of v, max of v, sum of d * 2
+        Map<String, String> minimum = new HashMap<>();
+        for(int i = 0; i < relation.size(); i++) {
+            String[] row = relation.getRow(i);
+            long v = Long.parseLong(row[1]);
+            long[] s = state.computeIfAbsent(row[0], k -> new long[] {0, 0, Long.MIN_VALUE, 0});
+            s[0]++;
+            s[1] += v;
+            s[2] = Math.max(s[2], v);
+            s[3] += Math.round(Double.parseDouble(row[2]) * 2);
+            minimum.merge(row[0], row[3], (a, b) -> a.compareTo(b) <= 0 ? a : b);
+        }
+
+        Map<String, List<String>> groups = new HashMap<>();
+        for(Map.Entry<String, long[]> entry : state.entrySet()) {
+            long[] s = entry.getValue();
+            groups.put(entry.getKey(), List.of(entry.getKey(), Long.toString(s[0]), Long.toString(s[1]), minimum.get(entry.getKey()),
+                    Long.toString(s[2]), Double.toString(s[3] / 2.0 / s[0])));
+        }
+        return groups;
+    }
+
+    @Test
+    void spilledPartitionsMatchInMemoryGroupBy() throws Exception {
+        Relation relation = relation();
+        Map<String, List<String>> expected = expected(relation);
+        assertEquals(GROUPS, expected.size());
+
+        int[] spilled = new int[1];
+        assertEquals(expected, run(aggregate(relation), spilled));
+        assertEquals(0, spilled[0]);
+
+        ExternalSorter.setMemoryBudget(64 * 1024);
+        assertEquals(expected, run(aggregate(relation), spilled));
+        assertTrue(spilled[0] > 0, "the groups were not spilled");
+        assertEquals(0, spillFiles(), "partition files left behind");
+    }
+
+    @Test
+    void spilledPartialTablesOfSeveralThreadsMatchInMemoryGroupBy() throws Exception {
+        Parallel.setParallelism(4);
+        Relation relation = relation();
+
+        int[] spilled = new int[1];
+        ExternalSorter.setMemoryBudget(64 * 1024);
+        assertEquals(expected(relation), run(aggregate(relation), spilled));
+        assertTrue(spilled[0] > 0, "the groups were not spilled");
+        assertEquals(0, spillFiles(), "partition files left behind");
+    }
+}
@@ -0,0 +1,67 @@
+package dbms.exec;
+
+import dbms.FieldType;
+import dbms.Relation;
+import dbms.RowStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ORDER BY with LIMIT k through the bounded heap: the rows produced must be the first k rows
+ * of a stable sort of the input, so among equal keys the rows read first win.
+ */
+class TopKOperatorTest {
+    private static final Comparator<String[]> BY_KEY = Comparator.comparing(row -> row[0]);
+
+    private static Relation relation(int rows, int keys) throws Exception {
+        Relation relation = new Relation("top_k_test", new String[] {"k", "position"},
+                new FieldType[] {FieldType.VARCHAR, FieldType.INT}, RowStore.Layout.ROWS);
+        List<String[]> list = new ArrayList<>();
+        for(int i = 0; i < rows; i++) list.add(new String[] {"k" + (i * 31 % keys), Integer.toString(i)});
+        relation.insert(list, false);
+        return relation;
+    }
+
+    private static List<List<String>> topK(Relation relation, int k) throws Exception {
+        List<List<String>> rows = new ArrayList<>();
+        Operator operator = new TopKOperator(new ScanOperator(relation), BY_KEY, k);
+        for(String[] row = operator.next(); row != null; row = operator.next()) rows.add(List.of(row));
+        operator.close();
+        return rows;
+    }
+
+    private static List<List<String>> stableSort(Relation relation, int k) {
+        List<String[]> rows = new ArrayList<>();
+        for(int i = 0; i < relation.size(); i++) rows.add(relation.getRow(i));
+        rows.sort(BY_KEY);
+
+        List<List<String>> first = new ArrayList<>();
+        for(String[] row : rows.subList(0, Math.min(k, rows.size()))) first.add(List.of(row));
+        return first;
+    }
+
+    @Test
+    void tiesKeepTheRowsReadFirst() throws Exception {
+        // 5 keys over 10000 rows: the limit always falls inside a run of equal keys
+        Relation relation = relation(10_000, 5);
+        for(int k : new int[] {1, 7, 2000, 2001, 4999}) {
+            assertEquals(stableSort(relation, k), topK(relation, k), "k = " + k);
+        }
+    }
+
+    @Test
+    void limitAboveRowsGivesAllRowsSorted() throws Exception {
+        Relation relation = relation(100, 3);
+        assertEquals(stableSort(relation, 100), topK(relation, 1000));
+    }
+
+    @Test
+    void limitZeroGivesNoRows() throws Exception {
+        assertTrue(topK(relation(100, 3), 0).isEmpty());
+    }
+}